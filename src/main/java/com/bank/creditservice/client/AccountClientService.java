@@ -1,6 +1,7 @@
 package com.bank.creditservice.client;
 
 import com.bank.creditservice.dto.BaseResponse;
+import com.bank.creditservice.dto.VipPymStatusBatchRequest;
 import com.bank.creditservice.model.account.Account;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
@@ -102,4 +103,49 @@ public class AccountClientService {
                 });
     }
 
+    /**
+     * Updates the VIP/PYM flag of several accounts in a single PUT to {@code /vip-pym/status}.
+     * Completes empty when the account service does not expose the batch endpoint yet, so callers
+     * can fall back to {@link #updateVipPymStatus(String, boolean, String)} per account.
+     */
+    public Mono<List<Account>> updateVipPymStatusBatch(List<String> accountIds, boolean isVipPym, String type) {
+        log.info("Sending batch PUT request to Account Service API for {} accounts", accountIds.size());
+        return webClient.put()
+                .uri("/vip-pym/status")
+                .bodyValue(VipPymStatusBatchRequest.builder()
+                        .accountIds(accountIds)
+                        .vipPym(isVipPym)
+                        .type(type)
+                        .build())
+                .retrieve()
+                .onStatus(status -> status == HttpStatus.NOT_FOUND || status == HttpStatus.METHOD_NOT_ALLOWED
+                                || status == HttpStatus.NOT_IMPLEMENTED, response ->
+                        Mono.error(new UnsupportedOperationException(
+                                "Batch VIP/PYM endpoint not available: " + response.statusCode()))
+                )
+                .onStatus(HttpStatus::is4xxClientError, response ->
+                        Mono.error(new RuntimeException("Client error: " + response.statusCode()))
+                )
+                .onStatus(HttpStatus::is5xxServerError, response ->
+                        Mono.error(new RuntimeException("Server error: " + response.statusCode()))
+                )
+                .bodyToMono(new ParameterizedTypeReference<BaseResponse<List<Account>>>() { })
+                .map(response -> response.getData() != null ? response.getData() : Collections.<Account>emptyList())
+                .doOnNext(result -> log.info("Account API batch response: {} accounts updated", result.size()))
+                .onErrorResume(UnsupportedOperationException.class, e -> {
+                    log.warn("{}, falling back to per-account updates", e.getMessage());
+                    return Mono.empty();
+                })
+                .doOnError(e -> log.error("Error while updating accounts in batch: {}", e.getMessage()))
+                .doOnTerminate(() -> log.info("Batch PUT request to Account API completed"))
+                .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorResume(throwable -> {
+                    log.error("FALLBACK TRIGGERED: Unable to update VIP/PYM status for accounts {}. Reason: {}",
+                            accountIds, throwable.getMessage());
+                    log.error("Exception type: {}", throwable.getClass().getName());
+                    return Mono.error(new RuntimeException(
+                            "Account service is not available to update VIP/PYM status. " +
+                                    "Cannot continue with the operation."));
+                });
+    }
 }
@@ -1,6 +1,8 @@
 package com.bank.creditservice.client;
 
 import com.bank.creditservice.dto.BaseResponse;
+import com.bank.creditservice.dto.CustomerBatchRequest;
+import com.bank.creditservice.exception.CustomerNotFoundException;
 import com.bank.creditservice.model.customer.Customer;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
@@ -10,11 +12,18 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 @Slf4j
 @Service
 public class CustomerClientService {
+    private static final int FALLBACK_LOOKUP_CONCURRENCY = 8;
     private final WebClient webClient;
     private final String customerServiceUrl;
     private final io.github.resilience4j.circuitbreaker.CircuitBreaker circuitBreaker;
@@ -33,6 +42,8 @@ public class CustomerClientService {
         return webClient.get()
                 .uri("/{id}", customerId)
                 .retrieve()
+                .onStatus(status -> status == HttpStatus.NOT_FOUND, response ->
+                        Mono.error(new CustomerNotFoundException(customerId)))
                 .onStatus(HttpStatus::is4xxClientError, response -> {
                     log.error("Client error: {}", response.statusCode());
                     return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
@@ -48,6 +59,9 @@ public class CustomerClientService {
                 .doOnTerminate(() -> log.info("Request to Customer API completed"))
                 .transform(CircuitBreakerOperator.of(circuitBreaker))
                 .onErrorResume(throwable -> {
+                    if (throwable instanceof CustomerNotFoundException) {
+                        return Mono.error(throwable);
+                    }
                     log.error("FALLBACK TRIGGERED: Unable to get customer {}. Reason: {}",
                             customerId, throwable.getMessage());
                     log.error("Exception type: {}", throwable.getClass().getName());
@@ -88,4 +102,53 @@ public class CustomerClientService {
                                     "Cannot continue with account creation."));
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * Resolves several customers with one POST to {@code /batch}. Unknown ids are simply missing from the result.
+     * Falls back to one {@link #getCustomerById(String)} per id when the customer service has no batch endpoint.
+     */
+    public Mono<List<Customer>> getCustomersByIds(Collection<String> customerIds) {
+        if (customerIds.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        log.info("Sending batch request to Customer Service API for {} customers", customerIds.size());
+        return webClient.post()
+                .uri("/batch")
+                .bodyValue(CustomerBatchRequest.builder().ids(new ArrayList<>(customerIds)).build())
+                .retrieve()
+                .onStatus(status -> status == HttpStatus.NOT_FOUND || status == HttpStatus.METHOD_NOT_ALLOWED
+                                || status == HttpStatus.NOT_IMPLEMENTED, response ->
+                        Mono.error(new UnsupportedOperationException(
+                                "Batch customer endpoint not available: " + response.statusCode())))
+                .onStatus(HttpStatus::is4xxClientError, response -> {
+                    log.error("Client error: {}", response.statusCode());
+                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
+                })
+                .onStatus(HttpStatus::is5xxServerError, response -> {
+                    log.error("Server error: {}", response.statusCode());
+                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
+                })
+                .bodyToMono(new ParameterizedTypeReference<BaseResponse<List<Customer>>>() { })
+                .map(response -> response.getData() != null ? response.getData() : Collections.<Customer>emptyList())
+                .doOnNext(result -> log.info("Customer API batch response: {} of {} customers found",
+                        result.size(), customerIds.size()))
+                .onErrorResume(UnsupportedOperationException.class, e -> {
+                    log.warn("{}, falling back to one request per customer", e.getMessage());
+                    return Mono.empty();
+                })
+                .doOnError(e -> log.error("Error while fetching customers in batch: {}", e.getMessage()))
+                .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorResume(throwable -> {
+                    log.error("FALLBACK TRIGGERED: Unable to get customers {}. Reason: {}",
+                            customerIds, throwable.getMessage());
+                    return Mono.error(new RuntimeException(
+                            "Customer service is unavailable for retrieving customer information. " +
+                                    "Cannot continue with the operation."));
+                })
+                .switchIfEmpty(Mono.defer(() -> Flux.fromIterable(customerIds)
+                        .flatMap(customerId -> getCustomerById(customerId)
+                                .onErrorResume(CustomerNotFoundException.class, notFound -> Mono.empty()),
+                                FALLBACK_LOOKUP_CONCURRENCY)
+                        .collectList()));
+    }
+}
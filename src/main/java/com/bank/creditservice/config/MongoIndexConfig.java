@@ -0,0 +1,36 @@
+package com.bank.creditservice.config;
+
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.creditcard.CardAuthorization;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.job.OverdueSweepCheckpoint;
+import com.bank.creditservice.model.outbox.OutboxEvent;
+import com.bank.creditservice.model.payment.PaymentLedgerEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import reactor.core.publisher.Flux;
+
+@Slf4j
+@Configuration
+public class MongoIndexConfig {
+    private final ReactiveMongoTemplate mongoTemplate;
+    public MongoIndexConfig(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        MongoPersistentEntityIndexResolver resolver =
+                new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        Flux.<Class<?>>just(Credit.class, CreditCard.class, CardAuthorization.class, OutboxEvent.class,
+                        PaymentLedgerEntry.class, OverdueSweepCheckpoint.class)
+                .flatMap(entityType -> Flux.fromIterable(resolver.resolveIndexFor(entityType))
+                        .flatMap(index -> mongoTemplate.indexOps(entityType).ensureIndex(index)))
+                .subscribe(
+                        indexName -> log.info("Ensured Mongo index: {}", indexName),
+                        error -> log.error("Error ensuring Mongo indexes: {}", error.getMessage()));
+    }
+}
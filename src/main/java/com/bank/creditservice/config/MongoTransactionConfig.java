@@ -0,0 +1,57 @@
+package com.bank.creditservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.time.Duration;
+
+/**
+ * Multi-document transactions, used to write an entity and its outbox events atomically.
+ * Requires Mongo to run as a replica set or behind mongos; a standalone mongod rejects every transactional
+ * write, so startup fails instead unless mongodb.require-transactions is turned off.
+ */
+@Slf4j
+@Configuration
+public class MongoTransactionConfig {
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final boolean requireTransactions;
+    public MongoTransactionConfig(ReactiveMongoTemplate mongoTemplate,
+                                  @Value("${mongodb.require-transactions:true}") boolean requireTransactions) {
+        this.mongoTemplate = mongoTemplate;
+        this.requireTransactions = requireTransactions;
+    }
+    @Bean
+    public ReactiveMongoTransactionManager reactiveTransactionManager(ReactiveMongoDatabaseFactory databaseFactory) {
+        return new ReactiveMongoTransactionManager(databaseFactory);
+    }
+    @Bean
+    public TransactionalOperator transactionalOperator(ReactiveTransactionManager reactiveTransactionManager) {
+        return TransactionalOperator.create(reactiveTransactionManager);
+    }
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkTransactionSupport() {
+        if (!requireTransactions) {
+            return;
+        }
+        Document hello = mongoTemplate.executeCommand(new Document("isMaster", 1)).block(Duration.ofSeconds(30));
+        if (!supportsTransactions(hello)) {
+            throw new IllegalStateException("MongoDB runs as a standalone server, but credit-service writes with "
+                    + "multi-document transactions and needs a replica set or a sharded cluster");
+        }
+        log.info("MongoDB supports transactions");
+    }
+
+    static boolean supportsTransactions(Document hello) {
+        return hello != null && (hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg")));
+    }
+}
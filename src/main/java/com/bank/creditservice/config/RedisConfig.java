@@ -2,9 +2,9 @@ package com.bank.creditservice.config;
 import io.lettuce.core.ClientOptions;
 import io.lettuce.core.SocketOptions;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.AbstractReactiveHealthIndicator;
 import org.springframework.boot.actuate.health.Health;
-import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -14,7 +14,9 @@ import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactor
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 
@@ -76,6 +78,16 @@ public class RedisConfig {
         return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, context);
     }
     @Bean
+    public ReactiveRedisTemplate<String, byte[]> binaryReactiveRedisTemplate(
+            ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+        RedisSerializationContext.RedisSerializationContextBuilder<String, byte[]> builder =
+                RedisSerializationContext.newSerializationContext(new StringRedisSerializer());
+        RedisSerializationContext<String, byte[]> context = builder
+                .value(RedisSerializer.byteArray())
+                .build();
+        return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, context);
+    }
+    @Bean
     public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
         RedisTemplate<String, String> template = new RedisTemplate<>();
         template.setConnectionFactory(redisConnectionFactory);
@@ -84,19 +96,16 @@ public class RedisConfig {
         return template;
     }
     @Bean
-    public HealthIndicator redisHealthIndicator(ReactiveRedisConnectionFactory redisConnectionFactory) {
-        return new AbstractHealthIndicator() {
+    public ReactiveHealthIndicator redisHealthIndicator(ReactiveRedisConnectionFactory redisConnectionFactory) {
+        return new AbstractReactiveHealthIndicator() {
             @Override
-            protected void doHealthCheck(Health.Builder builder) {
-                try {
-                    ReactiveRedisConnection connection = redisConnectionFactory.getReactiveConnection();
-                    connection.ping()
-                            .block(Duration.ofSeconds(1));
-                    builder.up();
-                    connection.close();
-                } catch (Exception e) {
-                    builder.down(e);
-                }
+            protected Mono<Health> doHealthCheck(Health.Builder builder) {
+                return Mono.usingWhen(
+                        Mono.fromSupplier(redisConnectionFactory::getReactiveConnection),
+                        connection -> connection.ping()
+                                .timeout(Duration.ofSeconds(1))
+                                .map(pong -> builder.up().build()),
+                        connection -> connection.closeLater());
             }
         };
     }
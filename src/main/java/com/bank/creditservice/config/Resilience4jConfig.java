@@ -1,5 +1,6 @@
 package com.bank.creditservice.config;
 
+import com.bank.creditservice.exception.CustomerNotFoundException;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
@@ -33,6 +34,7 @@ public class Resilience4jConfig {
                         TimeoutException.class,
                         RuntimeException.class
                 )
+                .ignoreExceptions(CustomerNotFoundException.class)
                 .build();
 
         CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(circuitBreakerConfig);
@@ -0,0 +1,64 @@
+package com.bank.creditservice.controller;
+
+import com.bank.creditservice.dto.BaseResponse;
+import com.bank.creditservice.dto.CardAuthorizationRequest;
+import com.bank.creditservice.model.creditcard.CardAuthorization;
+import com.bank.creditservice.service.CardAuthorizationService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/credit-cards")
+public class CardAuthorizationController {
+    private final CardAuthorizationService cardAuthorizationService;
+
+    public CardAuthorizationController(CardAuthorizationService cardAuthorizationService) {
+        this.cardAuthorizationService = cardAuthorizationService;
+    }
+    @PostMapping("/{creditCardId}/authorizations")
+    public Mono<ResponseEntity<BaseResponse<CardAuthorization>>> authorize(
+            @PathVariable String creditCardId, @RequestBody CardAuthorizationRequest request) {
+        return cardAuthorizationService.authorize(creditCardId, request.getAmount(), request.getReference())
+                .map(hold -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(BaseResponse.<CardAuthorization>builder()
+                                .status(HttpStatus.CREATED.value())
+                                .message("Authorization approved")
+                                .data(hold)
+                                .build()))
+                .onErrorResume(e -> badRequest(e.getMessage()));
+    }
+    @PostMapping("/authorizations/{authorizationId}/capture")
+    public Mono<ResponseEntity<BaseResponse<CardAuthorization>>> capture(
+            @PathVariable String authorizationId, @RequestBody(required = false) CardAuthorizationRequest request) {
+        return cardAuthorizationService.capture(authorizationId, request != null ? request.getAmount() : null)
+                .map(hold -> ok("Authorization captured", hold))
+                .onErrorResume(e -> badRequest(e.getMessage()));
+    }
+    @PostMapping("/authorizations/{authorizationId}/release")
+    public Mono<ResponseEntity<BaseResponse<CardAuthorization>>> release(@PathVariable String authorizationId) {
+        return cardAuthorizationService.release(authorizationId)
+                .map(hold -> ok("Authorization released", hold))
+                .onErrorResume(e -> badRequest(e.getMessage()));
+    }
+    private ResponseEntity<BaseResponse<CardAuthorization>> ok(String message, CardAuthorization hold) {
+        return ResponseEntity.ok(BaseResponse.<CardAuthorization>builder()
+                .status(HttpStatus.OK.value())
+                .message(message)
+                .data(hold)
+                .build());
+    }
+    private Mono<ResponseEntity<BaseResponse<CardAuthorization>>> badRequest(String message) {
+        return Mono.just(ResponseEntity.badRequest()
+                .body(BaseResponse.<CardAuthorization>builder()
+                        .status(HttpStatus.BAD_REQUEST.value())
+                        .message(message)
+                        .data(null)
+                        .build()));
+    }
+}
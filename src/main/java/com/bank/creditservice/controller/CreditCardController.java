@@ -1,25 +1,46 @@
 package com.bank.creditservice.controller;
 
 import com.bank.creditservice.dto.BaseResponse;
+import com.bank.creditservice.dto.BatchItemResult;
+import com.bank.creditservice.dto.BulkStatusUpdateRequest;
+import com.bank.creditservice.dto.BulkUpdateSummary;
+import com.bank.creditservice.dto.CreditCardSummary;
+import com.bank.creditservice.exception.RequestInProgressException;
 import com.bank.creditservice.model.creditcard.CreditCard;
 import com.bank.creditservice.service.CreditCardService;
+import com.bank.creditservice.service.IdempotencyService;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Set;
 @RestController
 @RequestMapping("/api/credit-cards")
 public class CreditCardController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
     private final CreditCardService creditCardService;
+    private final IdempotencyService idempotencyService;
 
-    public CreditCardController(CreditCardService creditCardService) {
+    public CreditCardController(CreditCardService creditCardService,
+                                IdempotencyService idempotencyService) {
         this.creditCardService = creditCardService;
+        this.idempotencyService = idempotencyService;
     }
     @PostMapping
-    public Mono<ResponseEntity<BaseResponse<CreditCard>>> createCreditCard(@RequestBody CreditCard creditCard) {
-        return creditCardService.createCreditCard(creditCard)
+    public Mono<ResponseEntity<BaseResponse<CreditCard>>> createCreditCard(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody CreditCard creditCard) {
+        return idempotencyService.execute("credit-card", idempotencyKey, creditCard, CreditCard.class,
+                        () -> creditCardService.createCreditCard(creditCard))
                 .map(savedCreditCard -> ResponseEntity.status(HttpStatus.CREATED)
                         .body(BaseResponse.<CreditCard>builder()
                                 .status(HttpStatus.CREATED.value())
@@ -27,6 +48,13 @@ public class CreditCardController {
                                 .data(savedCreditCard)
                                 .build()
                         ))
+                .onErrorResume(RequestInProgressException.class, e -> Mono.just(
+                        ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body(BaseResponse.<CreditCard>builder()
+                                        .status(HttpStatus.CONFLICT.value())
+                                        .message(e.getMessage())
+                                        .data(null)
+                                        .build())))
                 .onErrorResume(e -> {
                     return Mono.just(ResponseEntity.badRequest()
                             .body(BaseResponse.<CreditCard>builder()
@@ -36,9 +64,81 @@ public class CreditCardController {
                                     .build()));
                 });
     }
+    /**
+     * Creates up to {@value #MAX_BATCH_SIZE} credit cards in one request. Items are accepted or rejected individually;
+     * the response holds one result per item, in request order.
+     */
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<BaseResponse<List<BatchItemResult<CreditCard>>>>> createCreditCards(
+            @RequestBody List<CreditCard> creditCards) {
+        if (creditCards.isEmpty() || creditCards.size() > MAX_BATCH_SIZE) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body(BaseResponse.<List<BatchItemResult<CreditCard>>>builder()
+                            .status(HttpStatus.BAD_REQUEST.value())
+                            .message("Batch must contain between 1 and " + MAX_BATCH_SIZE + " credit cards")
+                            .data(null)
+                            .build()));
+        }
+        return creditCardService.createCreditCards(creditCards)
+                .map(results -> {
+                    long created = results.stream()
+                            .filter(result -> result.getStatus() == BatchItemResult.Status.CREATED)
+                            .count();
+                    return ResponseEntity.ok(
+                            BaseResponse.<List<BatchItemResult<CreditCard>>>builder()
+                                    .status(HttpStatus.OK.value())
+                                    .message(String.format("Credit cards batch processed: %d created, %d rejected",
+                                            created, results.size() - created))
+                                    .data(results)
+                                    .build());
+                })
+                .onErrorResume(e -> {
+                    return Mono.just(ResponseEntity.badRequest()
+                            .body(BaseResponse.<List<BatchItemResult<CreditCard>>>builder()
+                                    .status(HttpStatus.BAD_REQUEST.value())
+                                    .message(e.getMessage())
+                                    .data(null)
+                                    .build()));
+                });
+    }
+    /**
+     * Changes status and/or payment status of the credit cards listed in {@code ids} or matching the filter fields.
+     */
+    @PatchMapping("/batch/status")
+    public Mono<ResponseEntity<BaseResponse<BulkUpdateSummary>>> updateStatuses(
+            @RequestBody BulkStatusUpdateRequest request) {
+        return creditCardService.updateCreditCardStatuses(request)
+                .map(summary -> ResponseEntity.ok(
+                        BaseResponse.<BulkUpdateSummary>builder()
+                                .status(HttpStatus.OK.value())
+                                .message(String.format("Credit card statuses updated: %d matched, %d modified",
+                                        summary.getMatched(), summary.getModified()))
+                                .data(summary)
+                                .build()))
+                .onErrorResume(e -> {
+                    return Mono.just(ResponseEntity.badRequest()
+                            .body(BaseResponse.<BulkUpdateSummary>builder()
+                                    .status(HttpStatus.BAD_REQUEST.value())
+                                    .message(e.getMessage())
+                                    .data(null)
+                                    .build()));
+                });
+    }
+    /**
+     * Without {@code limit} or {@code after}, every card ordered by id, as before paging was added. With either,
+     * one keyset page ordered by id; when more cards follow, the id to pass as {@code after} for the next page
+     * is returned in the {@value #NEXT_CURSOR_HEADER} header.
+     */
     @GetMapping
-    public Mono<ResponseEntity<BaseResponse<List<CreditCard>>>> getAllCreditCards() {
-        return creditCardService.getAllCreditCards()
+    public Mono<ResponseEntity<BaseResponse<List<CreditCard>>>> getAllCreditCards(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        boolean paged = limit != null || after != null;
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Flux<CreditCard> rows = paged
+                ? creditCardService.getCreditCards(after, pageSize + 1)
+                : creditCardService.streamCreditCards(null);
+        return rows
                 .collectList()
                 .map(creditCards -> {
                     if (creditCards.isEmpty()) {
@@ -48,16 +148,24 @@ public class CreditCardController {
                                         .message("No credit cards found")
                                         .data(creditCards)
                                         .build());
-                    } else {
-                        return ResponseEntity.ok(
-                                BaseResponse.<List<CreditCard>>builder()
-                                        .status(HttpStatus.OK.value())
-                                        .message("Credit retrieved successfully")
-                                        .data(creditCards)
-                                        .build());
                     }
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    List<CreditCard> page = creditCards;
+                    if (paged && creditCards.size() > pageSize) {
+                        page = creditCards.subList(0, pageSize);
+                        response.header(NEXT_CURSOR_HEADER, page.get(pageSize - 1).getId());
+                    }
+                    return response.body(BaseResponse.<List<CreditCard>>builder()
+                            .status(HttpStatus.OK.value())
+                            .message("Credit retrieved successfully")
+                            .data(page)
+                            .build());
                 });
     }
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<CreditCard> streamCreditCards(@RequestParam(required = false) String after) {
+        return creditCardService.streamCreditCards(after);
+    }
     @GetMapping("/{creditCardId}")
     public Mono<ResponseEntity<BaseResponse<CreditCard>>> getCreditCardById(@PathVariable String creditCardId) {
         return creditCardService.getCreditCardById(creditCardId)
@@ -112,6 +220,28 @@ public class CreditCardController {
                                     .build()));
                 });
     }
+    @GetMapping(value = "/customer/{customerId}", params = "fields")
+    public Mono<ResponseEntity<BaseResponse<List<CreditCardSummary>>>> getCreditCardSummariesByCustomerId(
+            @PathVariable String customerId,
+            @RequestParam(required = false) Set<String> fields) {
+        return creditCardService.getCreditCardSummariesByCustomerId(customerId, fields != null ? fields : Set.of())
+                .collectList()
+                .map(creditCards -> ResponseEntity.ok(
+                        BaseResponse.<List<CreditCardSummary>>builder()
+                                .status(HttpStatus.OK.value())
+                                .message("Credit Cards for customer retrieved successfully")
+                                .data(creditCards)
+                                .build()
+                ))
+                .onErrorResume(e -> {
+                    return Mono.just(ResponseEntity.badRequest()
+                            .body(BaseResponse.<List<CreditCardSummary>>builder()
+                                    .status(HttpStatus.BAD_REQUEST.value())
+                                    .message(e.getMessage())
+                                    .data(null)
+                                    .build()));
+                });
+    }
     @PutMapping("/{creditCardId}")
     public Mono<ResponseEntity<BaseResponse<CreditCard>>> updateCreditCard(@PathVariable String creditCardId,
                                                                            @RequestBody CreditCard updatedCreditCard) {
@@ -130,6 +260,13 @@ public class CreditCardController {
                                 .data(null)
                                 .build()
                         ))
+                .onErrorResume(OptimisticLockingFailureException.class, e -> Mono.just(
+                        ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body(BaseResponse.<CreditCard>builder()
+                                        .status(HttpStatus.CONFLICT.value())
+                                        .message(e.getMessage())
+                                        .data(null)
+                                        .build())))
                 .onErrorResume(e -> {
                     return Mono.just(ResponseEntity.badRequest()
                             .body(BaseResponse.<CreditCard>builder()
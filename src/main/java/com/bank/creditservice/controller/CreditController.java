@@ -1,27 +1,48 @@
 package com.bank.creditservice.controller;
 
 import com.bank.creditservice.dto.BaseResponse;
+import com.bank.creditservice.dto.BatchItemResult;
+import com.bank.creditservice.dto.BulkStatusUpdateRequest;
+import com.bank.creditservice.dto.BulkUpdateSummary;
+import com.bank.creditservice.dto.CreditSummary;
+import com.bank.creditservice.exception.RequestInProgressException;
 import com.bank.creditservice.model.credit.Credit;
 import com.bank.creditservice.service.CreditService;
+import com.bank.creditservice.service.IdempotencyService;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/credits")
 public class CreditController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
     private final CreditService creditService;
+    private final IdempotencyService idempotencyService;
 
-    public CreditController(CreditService creditService) {
+    public CreditController(CreditService creditService,
+                            IdempotencyService idempotencyService) {
         this.creditService = creditService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping
-    public Mono<ResponseEntity<BaseResponse<Credit>>> createCredit(@RequestBody Credit credit) {
-        return creditService.createCredit(credit)
+    public Mono<ResponseEntity<BaseResponse<Credit>>> createCredit(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody Credit credit) {
+        return idempotencyService.execute("credit", idempotencyKey, credit, Credit.class,
+                        () -> creditService.createCredit(credit))
                 .map(savedCredit -> ResponseEntity.status(HttpStatus.CREATED)
                         .body(BaseResponse.<Credit>builder()
                                 .status(HttpStatus.CREATED.value())
@@ -29,6 +50,13 @@ public class CreditController {
                                 .data(savedCredit)
                                 .build()
                         ))
+                .onErrorResume(RequestInProgressException.class, e -> Mono.just(
+                        ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body(BaseResponse.<Credit>builder()
+                                        .status(HttpStatus.CONFLICT.value())
+                                        .message(e.getMessage())
+                                        .data(null)
+                                        .build())))
                 .onErrorResume(e -> {
                     return Mono.just(ResponseEntity.badRequest()
                             .body(BaseResponse.<Credit>builder()
@@ -38,9 +66,81 @@ public class CreditController {
                                     .build()));
                 });
     }
+    /**
+     * Creates up to {@value #MAX_BATCH_SIZE} credits in one request. Items are accepted or rejected individually;
+     * the response holds one result per item, in request order.
+     */
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<BaseResponse<List<BatchItemResult<Credit>>>>> createCredits(
+            @RequestBody List<Credit> credits) {
+        if (credits.isEmpty() || credits.size() > MAX_BATCH_SIZE) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body(BaseResponse.<List<BatchItemResult<Credit>>>builder()
+                            .status(HttpStatus.BAD_REQUEST.value())
+                            .message("Batch must contain between 1 and " + MAX_BATCH_SIZE + " credits")
+                            .data(null)
+                            .build()));
+        }
+        return creditService.createCredits(credits)
+                .map(results -> {
+                    long created = results.stream()
+                            .filter(result -> result.getStatus() == BatchItemResult.Status.CREATED)
+                            .count();
+                    return ResponseEntity.ok(
+                            BaseResponse.<List<BatchItemResult<Credit>>>builder()
+                                    .status(HttpStatus.OK.value())
+                                    .message(String.format("Credits batch processed: %d created, %d rejected",
+                                            created, results.size() - created))
+                                    .data(results)
+                                    .build());
+                })
+                .onErrorResume(e -> {
+                    return Mono.just(ResponseEntity.badRequest()
+                            .body(BaseResponse.<List<BatchItemResult<Credit>>>builder()
+                                    .status(HttpStatus.BAD_REQUEST.value())
+                                    .message(e.getMessage())
+                                    .data(null)
+                                    .build()));
+                });
+    }
+    /**
+     * Changes status and/or payment status of the credits listed in {@code ids} or matching the filter fields.
+     */
+    @PatchMapping("/batch/status")
+    public Mono<ResponseEntity<BaseResponse<BulkUpdateSummary>>> updateStatuses(
+            @RequestBody BulkStatusUpdateRequest request) {
+        return creditService.updateCreditStatuses(request)
+                .map(summary -> ResponseEntity.ok(
+                        BaseResponse.<BulkUpdateSummary>builder()
+                                .status(HttpStatus.OK.value())
+                                .message(String.format("Credit statuses updated: %d matched, %d modified",
+                                        summary.getMatched(), summary.getModified()))
+                                .data(summary)
+                                .build()))
+                .onErrorResume(e -> {
+                    return Mono.just(ResponseEntity.badRequest()
+                            .body(BaseResponse.<BulkUpdateSummary>builder()
+                                    .status(HttpStatus.BAD_REQUEST.value())
+                                    .message(e.getMessage())
+                                    .data(null)
+                                    .build()));
+                });
+    }
+    /**
+     * Without {@code limit} or {@code after}, every credit ordered by id, as before paging was added. With either,
+     * one keyset page ordered by id; when more credits follow, the id to pass as {@code after} for the next page
+     * is returned in the {@value #NEXT_CURSOR_HEADER} header.
+     */
     @GetMapping
-    public Mono<ResponseEntity<BaseResponse<List<Credit>>>> getAllCredits() {
-        return creditService.getAllCredits()
+    public Mono<ResponseEntity<BaseResponse<List<Credit>>>> getAllCredits(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        boolean paged = limit != null || after != null;
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Flux<Credit> rows = paged
+                ? creditService.getCredits(after, pageSize + 1)
+                : creditService.streamCredits(null);
+        return rows
                 .collectList()
                 .map(credits -> {
                     if (credits.isEmpty()) {
@@ -50,16 +150,24 @@ public class CreditController {
                                        .message("No credits found")
                                        .data(credits)
                                        .build());
-                    } else {
-                        return ResponseEntity.ok(
-                               BaseResponse.<List<Credit>>builder()
-                                       .status(HttpStatus.OK.value())
-                                       .message("Credits retrieved successfully")
-                                       .data(credits)
-                                       .build());
                     }
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    List<Credit> page = credits;
+                    if (paged && credits.size() > pageSize) {
+                        page = credits.subList(0, pageSize);
+                        response.header(NEXT_CURSOR_HEADER, page.get(pageSize - 1).getId());
+                    }
+                    return response.body(BaseResponse.<List<Credit>>builder()
+                            .status(HttpStatus.OK.value())
+                            .message("Credits retrieved successfully")
+                            .data(page)
+                            .build());
                 });
     }
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Credit> streamCredits(@RequestParam(required = false) String after) {
+        return creditService.streamCredits(after);
+    }
     @GetMapping("/{creditId}")
     public Mono<ResponseEntity<BaseResponse<Credit>>> getCreditById(@PathVariable String creditId) {
         return creditService.getCreditById(creditId)
@@ -113,6 +221,28 @@ public class CreditController {
                                     .build()));
                 });
     }
+    @GetMapping(value = "/customer/{customerId}", params = "fields")
+    public Mono<ResponseEntity<BaseResponse<List<CreditSummary>>>> getCreditSummariesByCustomerId(
+            @PathVariable String customerId,
+            @RequestParam(required = false) Set<String> fields) {
+        return creditService.getCreditSummariesByCustomerId(customerId, fields != null ? fields : Set.of())
+                .collectList()
+                .map(credits -> ResponseEntity.ok(
+                        BaseResponse.<List<CreditSummary>>builder()
+                                .status(HttpStatus.OK.value())
+                                .message("Credits for customer retrieved successfully")
+                                .data(credits)
+                                .build()
+                ))
+                .onErrorResume(e -> {
+                    return Mono.just(ResponseEntity.badRequest()
+                            .body(BaseResponse.<List<CreditSummary>>builder()
+                                    .status(HttpStatus.BAD_REQUEST.value())
+                                    .message(e.getMessage())
+                                    .data(null)
+                                    .build()));
+                });
+    }
     @PutMapping("/{creditId}")
     public Mono<ResponseEntity<BaseResponse<Credit>>> updateCredit(@PathVariable String creditId,
                                                                    @RequestBody Credit updatedCredit) {
@@ -131,6 +261,13 @@ public class CreditController {
                                 .data(null)
                                 .build()
                         ))
+                .onErrorResume(OptimisticLockingFailureException.class, e -> Mono.just(
+                        ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body(BaseResponse.<Credit>builder()
+                                        .status(HttpStatus.CONFLICT.value())
+                                        .message(e.getMessage())
+                                        .data(null)
+                                        .build())))
                 .onErrorResume(e -> {
                     return Mono.just(ResponseEntity.badRequest()
                             .body(BaseResponse.<Credit>builder()
@@ -1,12 +1,14 @@
 package com.bank.creditservice.controller;
 
 import com.bank.creditservice.dto.BaseResponse;
+import com.bank.creditservice.service.CustomerDebtStatusService;
 import com.bank.creditservice.service.CustomerEligibilityService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
@@ -16,6 +18,8 @@ import reactor.core.publisher.Mono;
 public class CustomerEligibilityController {
     @Autowired
     private CustomerEligibilityService customerEligibilityService;
+    @Autowired
+    private CustomerDebtStatusService customerDebtStatusService;
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CustomerEligibilityController.class);
 
     @GetMapping("/has-overdue-debt/{customerId}")
@@ -67,4 +71,26 @@ public class CustomerEligibilityController {
                             .body(errorResponse));
                 });
     }
+
+    @PostMapping("/debt-status/rebuild")
+    public Mono<ResponseEntity<BaseResponse<Long>>> rebuildDebtStatus() {
+        log.info("Received request to rebuild the customer debt status projection");
+        return customerDebtStatusService.rebuild()
+                .map(rebuiltCount -> {
+                    BaseResponse<Long> response = new BaseResponse<>();
+                    response.setData(rebuiltCount);
+                    response.setStatus(HttpStatus.OK.value());
+                    response.setMessage("Debt status projection rebuilt successfully");
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(e -> {
+                    log.error("Error rebuilding debt status projection: {}", e.getMessage());
+                    BaseResponse<Long> errorResponse = new BaseResponse<>();
+                    errorResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+                    errorResponse.setMessage("Error rebuilding debt status projection: " + e.getMessage());
+                    return Mono.just(ResponseEntity
+                            .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(errorResponse));
+                });
+    }
 }
@@ -0,0 +1,60 @@
+package com.bank.creditservice.controller;
+
+import com.bank.creditservice.dto.BaseResponse;
+import com.bank.creditservice.dto.PaymentRequest;
+import com.bank.creditservice.model.payment.PaymentLedgerEntry;
+import com.bank.creditservice.service.PaymentService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api")
+public class PaymentController {
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private final PaymentService paymentService;
+
+    public PaymentController(PaymentService paymentService) {
+        this.paymentService = paymentService;
+    }
+    @PostMapping("/credits/{creditId}/payments")
+    public Mono<ResponseEntity<BaseResponse<PaymentLedgerEntry>>> payCredit(
+            @PathVariable String creditId,
+            @RequestHeader(IDEMPOTENCY_KEY) String idempotencyKey,
+            @RequestBody PaymentRequest request) {
+        return paymentService.payCredit(creditId, idempotencyKey, request.getAmount())
+                .map(this::posted)
+                .onErrorResume(e -> badRequest(e.getMessage()));
+    }
+    @PostMapping("/credit-cards/{creditCardId}/payments")
+    public Mono<ResponseEntity<BaseResponse<PaymentLedgerEntry>>> payCreditCard(
+            @PathVariable String creditCardId,
+            @RequestHeader(IDEMPOTENCY_KEY) String idempotencyKey,
+            @RequestBody PaymentRequest request) {
+        return paymentService.payCreditCard(creditCardId, idempotencyKey, request.getAmount())
+                .map(this::posted)
+                .onErrorResume(e -> badRequest(e.getMessage()));
+    }
+    private ResponseEntity<BaseResponse<PaymentLedgerEntry>> posted(PaymentLedgerEntry entry) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(BaseResponse.<PaymentLedgerEntry>builder()
+                        .status(HttpStatus.CREATED.value())
+                        .message("Payment posted")
+                        .data(entry)
+                        .build());
+    }
+    private Mono<ResponseEntity<BaseResponse<PaymentLedgerEntry>>> badRequest(String message) {
+        return Mono.just(ResponseEntity.badRequest()
+                .body(BaseResponse.<PaymentLedgerEntry>builder()
+                        .status(HttpStatus.BAD_REQUEST.value())
+                        .message(message)
+                        .data(null)
+                        .build()));
+    }
+}
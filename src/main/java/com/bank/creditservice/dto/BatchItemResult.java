@@ -0,0 +1,34 @@
+package com.bank.creditservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a batch request; index is the item's position in the request.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult<T> {
+    private int index;
+    private Status status;
+    private T data;
+    private String error;
+
+    public static <T> BatchItemResult<T> created(int index, T data) {
+        return new BatchItemResult<>(index, Status.CREATED, data, null);
+    }
+    public static <T> BatchItemResult<T> rejected(int index, String error) {
+        return new BatchItemResult<>(index, Status.REJECTED, null, error);
+    }
+
+    public enum Status {
+        CREATED,
+        REJECTED
+    }
+}
@@ -0,0 +1,27 @@
+package com.bank.creditservice.dto;
+
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Sets status and/or paymentStatus on every product selected by the ids and filter fields; at least one of them
+ * is required. Products already in the target state are left alone.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusUpdateRequest {
+    private List<String> ids;
+    private String customerId;
+    private String currentStatus;
+    private PaymentStatus currentPaymentStatus;
+
+    private String status;
+    private PaymentStatus paymentStatus;
+}
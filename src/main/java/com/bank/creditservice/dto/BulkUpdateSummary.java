@@ -0,0 +1,19 @@
+package com.bank.creditservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUpdateSummary {
+    private long matched;
+    private long modified;
+
+    public BulkUpdateSummary plus(BulkUpdateSummary other) {
+        return new BulkUpdateSummary(matched + other.matched, modified + other.modified);
+    }
+}
@@ -0,0 +1,20 @@
+package com.bank.creditservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Amount to hold, or to capture of a hold (the whole hold when absent). reference is only used for new holds.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardAuthorizationRequest {
+    private BigDecimal amount;
+    private String reference;
+}
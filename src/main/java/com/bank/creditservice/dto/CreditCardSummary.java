@@ -0,0 +1,35 @@
+package com.bank.creditservice.dto;
+
+import com.bank.creditservice.model.creditcard.CreditCardType;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * The parts of a credit card dashboards poll for. Only the requested fields are read from Mongo, the rest stay
+ * null and are left out of the response.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CreditCardSummary {
+    public static final Set<String> FIELDS = Set.of("id", "cardType", "status", "paymentStatus", "creditLimit",
+            "availableBalance", "minimumPayment", "paymentDueDate");
+    private String id;
+    private CreditCardType cardType;
+    private String status;
+    private PaymentStatus paymentStatus;
+    private BigDecimal creditLimit;
+    private BigDecimal availableBalance;
+    private BigDecimal minimumPayment;
+    private LocalDateTime paymentDueDate;
+}
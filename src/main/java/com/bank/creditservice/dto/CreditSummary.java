@@ -0,0 +1,36 @@
+package com.bank.creditservice.dto;
+
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.credit.CreditType;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * The parts of a credit dashboards poll for. Only the requested fields are read from Mongo, the rest stay null
+ * and are left out of the response.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CreditSummary {
+    public static final Set<String> FIELDS = Set.of("id", "creditType", "creditStatus", "paymentStatus", "amount",
+            "remainingBalance", "minimumPayment", "nextPaymentDate");
+    private String id;
+    private CreditType creditType;
+    private CreditStatus creditStatus;
+    private PaymentStatus paymentStatus;
+    private BigDecimal amount;
+    private BigDecimal remainingBalance;
+    private BigDecimal minimumPayment;
+    private LocalDateTime nextPaymentDate;
+}
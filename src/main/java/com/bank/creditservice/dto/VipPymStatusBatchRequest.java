@@ -0,0 +1,18 @@
+package com.bank.creditservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VipPymStatusBatchRequest {
+    private List<String> accountIds;
+    private boolean vipPym;
+    private String type; //VIP for SAVINGS accounts, PYM for CHECKING accounts
+}
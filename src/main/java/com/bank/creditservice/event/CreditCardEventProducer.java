@@ -1,27 +1,138 @@
 package com.bank.creditservice.event;
 import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.outbox.OutboxEvent;
+import com.bank.creditservice.repository.OutboxEventRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records credit card events in the outbox. Call inside the transaction that saves the card;
+ * the outbox relay delivers them to Kafka.
+ * <p>
+ * While events.legacy-topics.enabled is on (the default), every save also records the whole card as JSON for
+ * the unversioned topics, so their consumers keep working until they have moved to the compact events.
+ */
 @Slf4j
 @Service
 public class CreditCardEventProducer {
-    private final KafkaTemplate<String, CreditCard> kafkaTemplate;
-    public CreditCardEventProducer(KafkaTemplate<String, CreditCard> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
-    }
-    public void publishCreditCardCreated(CreditCard creditCard) {
-        kafkaTemplate.send("creditcard-created", creditCard.getId(), creditCard)
-            .addCallback(
-                result -> log.info("Credit Card created event sent successfully: {}", creditCard.getId()),
-                ex -> log.error("Failed to send credit card created event", ex)
-            );
-    }
-    public void publishCreditCardUpdated(CreditCard creditCard) {
-        kafkaTemplate.send("creditcard-updated", creditCard.getId(), creditCard)
-            .addCallback(
-                result -> log.info("Credit Card updated event sent successfully: {}", creditCard.getId()),
-                ex -> log.error("Failed to send credit card updated event", ex)
-            );
+    static final String CREATED_TOPIC = "creditcard-created.v2";
+    static final String UPDATED_TOPIC = "creditcard-updated.v2";
+    static final String LEGACY_CREATED_TOPIC = "creditcard-created";
+    static final String LEGACY_UPDATED_TOPIC = "creditcard-updated";
+    private final OutboxEventRepository outboxEventRepository;
+    private final CreditProductEventMapper eventMapper;
+    private final CreditProductEventCodec eventCodec;
+    private final LegacyEntityEventCodec legacyCodec;
+    private final boolean legacyTopics;
+    public CreditCardEventProducer(OutboxEventRepository outboxEventRepository,
+                                   CreditProductEventMapper eventMapper,
+                                   CreditProductEventCodec eventCodec,
+                                   LegacyEntityEventCodec legacyCodec,
+                                   @Value("${events.legacy-topics.enabled:true}") boolean legacyTopics) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.eventMapper = eventMapper;
+        this.eventCodec = eventCodec;
+        this.legacyCodec = legacyCodec;
+        this.legacyTopics = legacyTopics;
+    }
+    public Mono<Void> publishCreditCardCreated(CreditCard creditCard) {
+        return append(CREATED_TOPIC, creditCard.getId(), eventMapper.created(creditCard))
+                .then(appendLegacy(LEGACY_CREATED_TOPIC, "CREATED", creditCard));
+    }
+    public Mono<Void> publishCreditCardUpdated(CreditCard previous, CreditCard creditCard) {
+        CreditProductEvent event = eventMapper.changed(previous, creditCard);
+        if (event == null) {
+            log.debug("Credit card {} saved without changes to publish", creditCard.getId());
+            return appendLegacy(LEGACY_UPDATED_TOPIC, "UPDATED", creditCard);
+        }
+        return append(UPDATED_TOPIC, creditCard.getId(), event)
+                .then(appendLegacy(LEGACY_UPDATED_TOPIC, "UPDATED", creditCard));
+    }
+
+    /**
+     * Records the CREATED events of a batch of credit cards with one insert.
+     */
+    public Mono<Void> publishCreditCardsCreated(List<CreditCard> creditCards) {
+        return Mono.fromCallable(() -> {
+                    List<OutboxEvent> outboxEvents = new ArrayList<>(creditCards.size());
+                    for (CreditCard creditCard : creditCards) {
+                        outboxEvents.add(outboxEvent(CREATED_TOPIC, creditCard.getId(),
+                                eventMapper.created(creditCard)));
+                        if (legacyTopics) {
+                            outboxEvents.add(legacyOutboxEvent(LEGACY_CREATED_TOPIC, "CREATED", creditCard));
+                        }
+                    }
+                    return outboxEvents;
+                })
+                .flatMapMany(outboxEvents -> outboxEventRepository.insert(outboxEvents))
+                .count()
+                .doOnNext(count -> log.debug("Recorded {} credit card created events in one insert", count))
+                .then();
+    }
+    /**
+     * Records the events of a batch of updated credit cards with one insert. previous and creditCards are matched by
+     * position; credit cards without changes to publish are skipped.
+     */
+    public Mono<Void> publishCreditCardsUpdated(List<CreditCard> previous, List<CreditCard> creditCards) {
+        return Mono.fromCallable(() -> {
+                    List<OutboxEvent> outboxEvents = new ArrayList<>(creditCards.size());
+                    for (int i = 0; i < creditCards.size(); i++) {
+                        CreditProductEvent event = eventMapper.changed(previous.get(i), creditCards.get(i));
+                        if (event != null) {
+                            outboxEvents.add(outboxEvent(UPDATED_TOPIC, creditCards.get(i).getId(), event));
+                        }
+                        if (legacyTopics) {
+                            outboxEvents.add(legacyOutboxEvent(LEGACY_UPDATED_TOPIC, "UPDATED", creditCards.get(i)));
+                        }
+                    }
+                    return outboxEvents;
+                })
+                .filter(outboxEvents -> !outboxEvents.isEmpty())
+                .flatMapMany(outboxEvents -> outboxEventRepository.insert(outboxEvents))
+                .count()
+                .doOnNext(count -> log.debug("Recorded {} credit card updated events in one insert", count))
+                .then();
+    }
+    private Mono<Void> append(String topic, String creditCardId, CreditProductEvent event) {
+        return Mono.fromCallable(() -> outboxEvent(topic, creditCardId, event))
+                .flatMap(outboxEvent -> outboxEventRepository.insert(outboxEvent))
+                .doOnNext(outboxEvent -> log.debug("Recorded {} event {} for credit card {} ({} bytes)",
+                        event.getType(), outboxEvent.getId(), creditCardId, outboxEvent.getPayload().length))
+                .then();
+    }
+    private Mono<Void> appendLegacy(String topic, String eventType, CreditCard creditCard) {
+        if (!legacyTopics) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> legacyOutboxEvent(topic, eventType, creditCard))
+                .flatMap(outboxEvent -> outboxEventRepository.insert(outboxEvent))
+                .then();
+    }
+    private OutboxEvent outboxEvent(String topic, String creditCardId, CreditProductEvent event) throws IOException {
+        return OutboxEvent.builder()
+                .aggregateType("CreditCard")
+                .aggregateId(creditCardId)
+                .topic(topic)
+                .eventType(event.getType().name())
+                .payload(eventCodec.encode(event))
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+    private OutboxEvent legacyOutboxEvent(String topic, String eventType, CreditCard creditCard) throws IOException {
+        return OutboxEvent.builder()
+                .aggregateType("CreditCard")
+                .aggregateId(creditCard.getId())
+                .topic(topic)
+                .eventType(eventType)
+                .payload(legacyCodec.encode(creditCard))
+                .createdAt(LocalDateTime.now())
+                .build();
     }
 }
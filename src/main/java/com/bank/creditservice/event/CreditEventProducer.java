@@ -1,27 +1,138 @@
 package com.bank.creditservice.event;
 
 import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.outbox.OutboxEvent;
+import com.bank.creditservice.repository.OutboxEventRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records credit events in the outbox. Call inside the transaction that saves the credit;
+ * the outbox relay delivers them to Kafka.
+ * <p>
+ * While events.legacy-topics.enabled is on (the default), every save also records the whole credit as JSON for
+ * the unversioned topics, so their consumers keep working until they have moved to the compact events.
+ */
 @Slf4j
 @Service
 public class CreditEventProducer {
-    private final KafkaTemplate<String, Credit> kafkaTemplate;
-    public CreditEventProducer(KafkaTemplate<String, Credit> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
-    }
-    public void publishCreditCreated(Credit credit) {
-        kafkaTemplate.send("credit-created", credit.getId(), credit)
-            .addCallback(
-                result -> log.info("Credit created event sent successfully: {}", credit.getId()),
-                ex -> log.error("Failed to send credit created event", ex));
-    }
-    public void publishCreditUpdated(Credit credit) {
-        kafkaTemplate.send("credit-updated", credit.getId(), credit)
-            .addCallback(
-                result -> log.info("Credit updated event sent successfully: {}", credit.getId()),
-                ex -> log.error("Failed to send credit updated event", ex)
-            );
-    }
-}
\ No newline at end of file
+    static final String CREATED_TOPIC = "credit-created.v2";
+    static final String UPDATED_TOPIC = "credit-updated.v2";
+    static final String LEGACY_CREATED_TOPIC = "credit-created";
+    static final String LEGACY_UPDATED_TOPIC = "credit-updated";
+    private final OutboxEventRepository outboxEventRepository;
+    private final CreditProductEventMapper eventMapper;
+    private final CreditProductEventCodec eventCodec;
+    private final LegacyEntityEventCodec legacyCodec;
+    private final boolean legacyTopics;
+    public CreditEventProducer(OutboxEventRepository outboxEventRepository,
+                               CreditProductEventMapper eventMapper,
+                               CreditProductEventCodec eventCodec,
+                               LegacyEntityEventCodec legacyCodec,
+                               @Value("${events.legacy-topics.enabled:true}") boolean legacyTopics) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.eventMapper = eventMapper;
+        this.eventCodec = eventCodec;
+        this.legacyCodec = legacyCodec;
+        this.legacyTopics = legacyTopics;
+    }
+    public Mono<Void> publishCreditCreated(Credit credit) {
+        return append(CREATED_TOPIC, credit.getId(), eventMapper.created(credit))
+                .then(appendLegacy(LEGACY_CREATED_TOPIC, "CREATED", credit));
+    }
+    public Mono<Void> publishCreditUpdated(Credit previous, Credit credit) {
+        CreditProductEvent event = eventMapper.changed(previous, credit);
+        if (event == null) {
+            log.debug("Credit {} saved without changes to publish", credit.getId());
+            return appendLegacy(LEGACY_UPDATED_TOPIC, "UPDATED", credit);
+        }
+        return append(UPDATED_TOPIC, credit.getId(), event)
+                .then(appendLegacy(LEGACY_UPDATED_TOPIC, "UPDATED", credit));
+    }
+
+    /**
+     * Records the CREATED events of a batch of credits with one insert.
+     */
+    public Mono<Void> publishCreditsCreated(List<Credit> credits) {
+        return Mono.fromCallable(() -> {
+                    List<OutboxEvent> outboxEvents = new ArrayList<>(credits.size());
+                    for (Credit credit : credits) {
+                        outboxEvents.add(outboxEvent(CREATED_TOPIC, credit.getId(), eventMapper.created(credit)));
+                        if (legacyTopics) {
+                            outboxEvents.add(legacyOutboxEvent(LEGACY_CREATED_TOPIC, "CREATED", credit));
+                        }
+                    }
+                    return outboxEvents;
+                })
+                .flatMapMany(outboxEvents -> outboxEventRepository.insert(outboxEvents))
+                .count()
+                .doOnNext(count -> log.debug("Recorded {} credit created events in one insert", count))
+                .then();
+    }
+    /**
+     * Records the events of a batch of updated credits with one insert. previous and credits are matched by
+     * position; credits without changes to publish are skipped.
+     */
+    public Mono<Void> publishCreditsUpdated(List<Credit> previous, List<Credit> credits) {
+        return Mono.fromCallable(() -> {
+                    List<OutboxEvent> outboxEvents = new ArrayList<>(credits.size());
+                    for (int i = 0; i < credits.size(); i++) {
+                        CreditProductEvent event = eventMapper.changed(previous.get(i), credits.get(i));
+                        if (event != null) {
+                            outboxEvents.add(outboxEvent(UPDATED_TOPIC, credits.get(i).getId(), event));
+                        }
+                        if (legacyTopics) {
+                            outboxEvents.add(legacyOutboxEvent(LEGACY_UPDATED_TOPIC, "UPDATED", credits.get(i)));
+                        }
+                    }
+                    return outboxEvents;
+                })
+                .filter(outboxEvents -> !outboxEvents.isEmpty())
+                .flatMapMany(outboxEvents -> outboxEventRepository.insert(outboxEvents))
+                .count()
+                .doOnNext(count -> log.debug("Recorded {} credit updated events in one insert", count))
+                .then();
+    }
+    private Mono<Void> append(String topic, String creditId, CreditProductEvent event) {
+        return Mono.fromCallable(() -> outboxEvent(topic, creditId, event))
+                .flatMap(outboxEvent -> outboxEventRepository.insert(outboxEvent))
+                .doOnNext(outboxEvent -> log.debug("Recorded {} event {} for credit {} ({} bytes)",
+                        event.getType(), outboxEvent.getId(), creditId, outboxEvent.getPayload().length))
+                .then();
+    }
+    private Mono<Void> appendLegacy(String topic, String eventType, Credit credit) {
+        if (!legacyTopics) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> legacyOutboxEvent(topic, eventType, credit))
+                .flatMap(outboxEvent -> outboxEventRepository.insert(outboxEvent))
+                .then();
+    }
+    private OutboxEvent outboxEvent(String topic, String creditId, CreditProductEvent event) throws IOException {
+        return OutboxEvent.builder()
+                .aggregateType("Credit")
+                .aggregateId(creditId)
+                .topic(topic)
+                .eventType(event.getType().name())
+                .payload(eventCodec.encode(event))
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+    private OutboxEvent legacyOutboxEvent(String topic, String eventType, Credit credit) throws IOException {
+        return OutboxEvent.builder()
+                .aggregateType("Credit")
+                .aggregateId(credit.getId())
+                .topic(topic)
+                .eventType(eventType)
+                .payload(legacyCodec.encode(credit))
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.bank.creditservice.event;
+
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Event published for credits and credit cards. CREATED carries the initial state; the other types carry only the
+ * fields that changed, everything else is null. Amounts are the credit amount or card limit ({@code limit}) and the
+ * remaining or available balance ({@code balance}); timestamps are epoch millis.
+ * The wire form is a positional array in the order below, so fields are only ever appended.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"type", "productId", "customerId", "occurredAt", "productType", "status", "paymentStatus",
+        "limit", "balance", "interestRate", "minimumPayment", "paymentDueAt"})
+public class CreditProductEvent {
+    private CreditProductEventType type;
+    private String productId;
+    private String customerId;
+    private long occurredAt;
+    private String productType;
+    private String status;
+    private PaymentStatus paymentStatus;
+    private BigDecimal limit;
+    private BigDecimal balance;
+    private BigDecimal interestRate;
+    private BigDecimal minimumPayment;
+    private Long paymentDueAt;
+}
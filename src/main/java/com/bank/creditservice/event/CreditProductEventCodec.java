@@ -0,0 +1,41 @@
+package com.bank.creditservice.event;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes events as a one-byte schema version followed by a CBOR array laid out as in {@link CreditProductEvent}.
+ * Field names are not written; enums go by name so consumers don't depend on declaration order. Decoding
+ * tolerates trailing fields added by newer writers of the same version.
+ */
+@Component
+public class CreditProductEventCodec {
+    static final byte SCHEMA_V1 = 0x01;
+    private final ObjectMapper cborMapper;
+    public CreditProductEventCodec() {
+        this.cborMapper = CBORMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(DeserializationFeature.FAIL_ON_NUMBERS_FOR_ENUMS)
+                .build();
+    }
+    public byte[] encode(CreditProductEvent event) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(SCHEMA_V1);
+        cborMapper.writeValue(out, event);
+        return out.toByteArray();
+    }
+    public CreditProductEvent decode(byte[] value) throws IOException {
+        if (value == null || value.length == 0) {
+            throw new IOException("Empty event payload");
+        }
+        if (value[0] != SCHEMA_V1) {
+            throw new IOException("Unsupported event schema version: " + value[0]);
+        }
+        return cborMapper.readValue(value, 1, value.length - 1, CreditProductEvent.class);
+    }
+}
@@ -0,0 +1,143 @@
+package com.bank.creditservice.event;
+
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * Builds {@link CreditProductEvent}s from credits and credit cards. For updates only the changed fields are set:
+ * a change limited to status fields is STATUS_CHANGED, one limited to balance fields is BALANCE_CHANGED,
+ * anything else is UPDATED.
+ */
+@Component
+public class CreditProductEventMapper {
+    private final ZoneId zone = ZoneId.systemDefault();
+    public CreditProductEvent created(Credit credit) {
+        return created(credit.getId(), credit.getCustomerId(),
+                credit.getCreditType() != null ? credit.getCreditType().name() : null, fieldsOf(credit));
+    }
+    public CreditProductEvent created(CreditCard creditCard) {
+        return created(creditCard.getId(), creditCard.getCustomerId(),
+                creditCard.getCardType() != null ? creditCard.getCardType().name() : null, fieldsOf(creditCard));
+    }
+
+    /**
+     * Returns null when none of the fields carried by events changed.
+     */
+    public CreditProductEvent changed(Credit before, Credit after) {
+        return changed(after.getId(), after.getCustomerId(), fieldsOf(before), fieldsOf(after));
+    }
+    public CreditProductEvent changed(CreditCard before, CreditCard after) {
+        return changed(after.getId(), after.getCustomerId(), fieldsOf(before), fieldsOf(after));
+    }
+
+    private CreditProductEvent created(String productId, String customerId, String productType, Fields fields) {
+        return CreditProductEvent.builder()
+                .type(CreditProductEventType.CREATED)
+                .productId(productId)
+                .customerId(customerId)
+                .occurredAt(System.currentTimeMillis())
+                .productType(productType)
+                .status(fields.status)
+                .paymentStatus(fields.paymentStatus)
+                .limit(fields.limit)
+                .balance(fields.balance)
+                .interestRate(fields.interestRate)
+                .minimumPayment(fields.minimumPayment)
+                .paymentDueAt(fields.paymentDueAt)
+                .build();
+    }
+
+    private CreditProductEvent changed(String productId, String customerId, Fields before, Fields after) {
+        CreditProductEvent event = CreditProductEvent.builder()
+                .productId(productId)
+                .customerId(customerId)
+                .occurredAt(System.currentTimeMillis())
+                .build();
+        boolean statusChanged = false;
+        boolean balanceChanged = false;
+        boolean termsChanged = false;
+        if (!Objects.equals(before.status, after.status)) {
+            event.setStatus(after.status);
+            statusChanged = true;
+        }
+        if (before.paymentStatus != after.paymentStatus) {
+            event.setPaymentStatus(after.paymentStatus);
+            statusChanged = true;
+        }
+        if (!sameAmount(before.balance, after.balance)) {
+            event.setBalance(after.balance);
+            balanceChanged = true;
+        }
+        if (!sameAmount(before.minimumPayment, after.minimumPayment)) {
+            event.setMinimumPayment(after.minimumPayment);
+            balanceChanged = true;
+        }
+        if (!sameAmount(before.limit, after.limit)) {
+            event.setLimit(after.limit);
+            termsChanged = true;
+        }
+        if (!sameAmount(before.interestRate, after.interestRate)) {
+            event.setInterestRate(after.interestRate);
+            termsChanged = true;
+        }
+        if (!Objects.equals(before.paymentDueAt, after.paymentDueAt)) {
+            event.setPaymentDueAt(after.paymentDueAt);
+            termsChanged = true;
+        }
+        if (!statusChanged && !balanceChanged && !termsChanged) {
+            return null;
+        }
+        if (termsChanged || (statusChanged && balanceChanged)) {
+            event.setType(CreditProductEventType.UPDATED);
+        } else if (statusChanged) {
+            event.setType(CreditProductEventType.STATUS_CHANGED);
+        } else {
+            event.setType(CreditProductEventType.BALANCE_CHANGED);
+        }
+        return event;
+    }
+
+    private Fields fieldsOf(Credit credit) {
+        return new Fields(credit.getCreditStatus() != null ? credit.getCreditStatus().name() : null,
+                credit.getPaymentStatus(), credit.getAmount(), credit.getRemainingBalance(),
+                credit.getInterestRate(), credit.getMinimumPayment(), epochMillis(credit.getNextPaymentDate()));
+    }
+    private Fields fieldsOf(CreditCard creditCard) {
+        return new Fields(creditCard.getStatus(), creditCard.getPaymentStatus(), creditCard.getCreditLimit(),
+                creditCard.getAvailableBalance(), null, creditCard.getMinimumPayment(),
+                epochMillis(creditCard.getPaymentDueDate()));
+    }
+    private Long epochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(zone).toInstant().toEpochMilli() : null;
+    }
+    private static boolean sameAmount(BigDecimal before, BigDecimal after) {
+        return before == null ? after == null : after != null && before.compareTo(after) == 0;
+    }
+
+    private static final class Fields {
+        private final String status;
+        private final PaymentStatus paymentStatus;
+        private final BigDecimal limit;
+        private final BigDecimal balance;
+        private final BigDecimal interestRate;
+        private final BigDecimal minimumPayment;
+        private final Long paymentDueAt;
+        Fields(String status, PaymentStatus paymentStatus, BigDecimal limit, BigDecimal balance,
+               BigDecimal interestRate, BigDecimal minimumPayment, Long paymentDueAt) {
+            this.status = status;
+            this.paymentStatus = paymentStatus;
+            this.limit = limit;
+            this.balance = balance;
+            this.interestRate = interestRate;
+            this.minimumPayment = minimumPayment;
+            this.paymentDueAt = paymentDueAt;
+        }
+    }
+}
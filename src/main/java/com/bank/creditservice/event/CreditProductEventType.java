@@ -0,0 +1,11 @@
+package com.bank.creditservice.event;
+
+/**
+ * Encoded by name, so constants are never renamed.
+ */
+public enum CreditProductEventType {
+    CREATED,
+    UPDATED,
+    STATUS_CHANGED,
+    BALANCE_CHANGED
+}
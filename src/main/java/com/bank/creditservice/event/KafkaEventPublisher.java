@@ -0,0 +1,135 @@
+package com.bank.creditservice.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reactive front end for {@link KafkaTemplate}. Events are queued in a bounded buffer and handed to the producer
+ * with at most {@code max-in-flight} unacknowledged sends, so the producer's linger/batch settings can group them.
+ * When the broker falls behind and the buffer is full, {@link #publish} fails fast instead of piling up memory.
+ */
+@Slf4j
+@Service
+public class KafkaEventPublisher {
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Sinks.Many<PendingEvent> queue;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    public KafkaEventPublisher(KafkaTemplate<String, byte[]> kafkaTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${event-publishing.buffer-size:1024}") int bufferSize,
+                               @Value("${event-publishing.max-in-flight:256}") int maxInFlight) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.queue = Sinks.many().unicast().onBackpressureBuffer(Queues.<PendingEvent>get(bufferSize).get());
+        Gauge.builder("kafka.publish.queued", queued, AtomicInteger::get)
+                .description("Events waiting to be handed to the Kafka producer")
+                .register(meterRegistry);
+        Gauge.builder("kafka.publish.failure.ratio", this, KafkaEventPublisher::getFailureRatio)
+                .description("Share of sends the broker did not acknowledge")
+                .register(meterRegistry);
+        queue.asFlux()
+                .flatMap(this::send, maxInFlight)
+                .subscribe();
+    }
+
+    /**
+     * Queues an event and completes once the broker has acknowledged it. Fails immediately when the buffer is full.
+     */
+    public Mono<SendResult<String, byte[]>> publish(String topic, String key, byte[] value) {
+        return Mono.defer(() -> {
+            PendingEvent event = new PendingEvent(topic, key, value, Timer.start(meterRegistry));
+            queued.incrementAndGet();
+            Sinks.EmitResult emitResult;
+            do {
+                emitResult = queue.tryEmitNext(event);
+            } while (emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+            if (emitResult.isFailure()) {
+                queued.decrementAndGet();
+                outcome(topic, "rejected").increment();
+                log.warn("Event queue is full ({}), rejecting event {} for topic {}", emitResult, key, topic);
+                return Mono.error(new RuntimeException("Event queue is full, cannot publish to " + topic));
+            }
+            return event.result.asMono();
+        });
+    }
+
+    public double getFailureRatio() {
+        double total = succeeded.sum() + failed.sum();
+        return total == 0 ? 0 : failed.sum() / total;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        queue.tryEmitComplete();
+    }
+
+    private Mono<Void> send(PendingEvent event) {
+        queued.decrementAndGet();
+        return Mono.defer(() -> Mono.fromFuture(kafkaTemplate.send(event.topic, event.key, event.value).completable()))
+                .doOnNext(result -> {
+                    event.sample.stop(latency(event.topic, "success"));
+                    outcome(event.topic, "success").increment();
+                    succeeded.increment();
+                    log.debug("Event {} sent to {}-{}@{}", event.key, event.topic,
+                            result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+                    event.result.tryEmitValue(result);
+                })
+                .doOnError(error -> {
+                    event.sample.stop(latency(event.topic, "failure"));
+                    outcome(event.topic, "failure").increment();
+                    failed.increment();
+                    log.error("Failed to send event {} to {}: {}", event.key, event.topic, error.getMessage());
+                    event.result.tryEmitError(error);
+                })
+                .then()
+                .onErrorResume(error -> Mono.empty());
+    }
+
+    private Timer latency(String topic, String result) {
+        return Timer.builder("kafka.publish.latency")
+                .description("Time from queueing an event to its acknowledgement by the broker")
+                .tag("topic", topic)
+                .tag("result", result)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    private Counter outcome(String topic, String result) {
+        return Counter.builder("kafka.publish.events")
+                .description("Events handed to the publisher, by outcome")
+                .tag("topic", topic)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static final class PendingEvent {
+        private final String topic;
+        private final String key;
+        private final byte[] value;
+        private final Timer.Sample sample;
+        private final Sinks.One<SendResult<String, byte[]>> result = Sinks.one();
+        PendingEvent(String topic, String key, byte[] value, Timer.Sample sample) {
+            this.topic = topic;
+            this.key = key;
+            this.value = value;
+            this.sample = sample;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.bank.creditservice.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Encodes the whole entity as JSON the way spring-kafka's JsonSerializer did, for consumers of the unversioned
+ * topics that have not moved to the compact events yet.
+ */
+@Component
+public class LegacyEntityEventCodec {
+    private final ObjectMapper jsonMapper = JacksonUtils.enhancedObjectMapper();
+    public byte[] encode(Object entity) throws IOException {
+        return jsonMapper.writeValueAsBytes(entity);
+    }
+}
@@ -0,0 +1,7 @@
+package com.bank.creditservice.exception;
+
+public class CustomerNotFoundException extends RuntimeException {
+    public CustomerNotFoundException(String customerId) {
+        super("Customer not found: " + customerId);
+    }
+}
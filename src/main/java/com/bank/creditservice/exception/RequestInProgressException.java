@@ -0,0 +1,7 @@
+package com.bank.creditservice.exception;
+
+public class RequestInProgressException extends RuntimeException {
+    public RequestInProgressException(String idempotencyKey) {
+        super("A request with Idempotency-Key " + idempotencyKey + " is still being processed");
+    }
+}
@@ -3,6 +3,9 @@ package com.bank.creditservice.model.credit;
 import com.bank.creditservice.model.creditcard.PaymentStatus;
 import lombok.*;
 import nonapi.io.github.classgraph.json.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
@@ -12,8 +15,14 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Document(collection = "credits")
+@CompoundIndexes({
+    @CompoundIndex(name = "customer_status_payment_idx",
+            def = "{'customerId': 1, 'creditStatus': 1, 'paymentStatus': 1}"),
+    @CompoundIndex(name = "status_payment_due_idx",
+            def = "{'creditStatus': 1, 'paymentStatus': 1, 'nextPaymentDate': 1}")
+})
 public class Credit {
     @Id
     private String id;
@@ -29,4 +38,10 @@ public class Credit {
     private CreditStatus creditStatus;
     private LocalDateTime nextPaymentDate;
     private BigDecimal minimumPayment;
+
+    /**
+     * Incremented by every write. Send it back with an update to apply the update only if nobody wrote in between.
+     */
+    @Version
+    private Long version;
 }
@@ -0,0 +1,7 @@
+package com.bank.creditservice.model.creditcard;
+
+public enum AuthorizationStatus {
+    HELD,
+    CAPTURED,
+    RELEASED
+}
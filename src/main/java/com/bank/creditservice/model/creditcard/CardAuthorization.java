@@ -0,0 +1,34 @@
+package com.bank.creditservice.model.creditcard;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Funds held on a credit card. The amount is taken off the card's availableBalance when the hold is created;
+ * capturing keeps capturedAmount of it spent and gives the rest back, releasing gives all of it back.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "card_authorizations")
+@CompoundIndex(name = "card_status_idx", def = "{'creditCardId': 1, 'status': 1}")
+public class CardAuthorization {
+    @Id
+    private String id;
+    private String creditCardId;
+    private BigDecimal amount;
+    private BigDecimal capturedAmount;
+    private AuthorizationStatus status;
+    private String reference; //Caller's purchase reference, for reconciliation
+    private LocalDateTime createdAt;
+    private LocalDateTime modifiedAt;
+}
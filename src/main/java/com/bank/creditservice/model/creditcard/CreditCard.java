@@ -2,6 +2,9 @@ package com.bank.creditservice.model.creditcard;
 
 import lombok.*;
 import nonapi.io.github.classgraph.json.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
@@ -11,8 +14,14 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 @Document(collection = "credit_cards")
+@CompoundIndexes({
+    @CompoundIndex(name = "customer_status_payment_idx",
+            def = "{'customerId': 1, 'status': 1, 'paymentStatus': 1}"),
+    @CompoundIndex(name = "status_payment_due_idx",
+            def = "{'status': 1, 'paymentStatus': 1, 'paymentDueDate': 1}")
+})
 public class CreditCard {
     @Id
     private String id;
@@ -28,4 +37,10 @@ public class CreditCard {
     private LocalDateTime cutoffDate;
     private LocalDateTime paymentDueDate;
     private BigDecimal minimumPayment;
+
+    /**
+     * Incremented by every write. Send it back with an update to apply the update only if nobody wrote in between.
+     */
+    @Version
+    private Long version;
 }
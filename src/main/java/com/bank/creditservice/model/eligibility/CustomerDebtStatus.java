@@ -0,0 +1,27 @@
+package com.bank.creditservice.model.eligibility;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "customer_debt_status")
+public class CustomerDebtStatus {
+    @Id
+    private String id; //Same as the customerId
+    private boolean overdueCredit;
+    private boolean overdueCreditCard;
+    private LocalDateTime updatedAt;
+
+    public boolean hasOverdueDebt() {
+        return overdueCredit || overdueCreditCard;
+    }
+}
@@ -0,0 +1,38 @@
+package com.bank.creditservice.model.job;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "overdue_sweep_checkpoints")
+public class OverdueSweepCheckpoint {
+    @Id
+    private String id; //runId:target:partition
+    @Indexed
+    private String runId;
+    private String target;
+    private int partition;
+    private LocalDateTime asOf;
+    private LocalDateTime dueFrom; //Null for the oldest, open-ended partition
+    private LocalDateTime dueTo;
+    private SweepPartitionStatus status;
+    private String owner;
+    private LocalDateTime leaseUntil;
+    private int attempts;
+    private long scanned;
+    private long updated;
+    private long elapsedMillis;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    private String lastError;
+}
@@ -0,0 +1,8 @@
+package com.bank.creditservice.model.job;
+
+public enum SweepPartitionStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,31 @@
+package com.bank.creditservice.model.outbox;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "outbox_events")
+@CompoundIndex(name = "outbox_relay_pending_order", def = "{'parkedAt': 1, 'createdAt': 1, '_id': 1}")
+public class OutboxEvent {
+    @Id
+    private String id;
+    private String aggregateType;
+    private String aggregateId; //Kafka record key, events of one aggregate are relayed in order
+    private String topic;
+    private String eventType;
+    private byte[] payload; //Encoded CreditProductEvent, sent as the record value unchanged
+    private LocalDateTime createdAt;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime parkedAt; //Set once max-attempts deliveries failed; the relay no longer picks it up
+}
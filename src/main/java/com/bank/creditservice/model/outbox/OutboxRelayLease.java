@@ -0,0 +1,22 @@
+package com.bank.creditservice.model.outbox;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "outbox_relay_leases")
+public class OutboxRelayLease {
+    @Id
+    private String id;
+    private String owner;
+    private LocalDateTime leaseUntil;
+}
@@ -0,0 +1,38 @@
+package com.bank.creditservice.model.payment;
+
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One payment posted to a credit or credit card. Entries are only ever appended, in the same transaction as the
+ * balance change; the unique index on productId and idempotencyKey is what keeps a retried payment from being
+ * posted twice.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "payment_ledger")
+@CompoundIndex(name = "product_idempotency_key_idx", def = "{'productId': 1, 'idempotencyKey': 1}", unique = true)
+public class PaymentLedgerEntry {
+    @Id
+    private String id;
+    private PaymentProductType productType;
+    private String productId;
+    private String customerId;
+    private String idempotencyKey;
+    private BigDecimal amount;
+    private BigDecimal balanceAfter; //remainingBalance of a credit, availableBalance of a card
+    private PaymentStatus paymentStatus;
+    private LocalDateTime nextDueDate;
+    private LocalDateTime postedAt;
+}
@@ -0,0 +1,6 @@
+package com.bank.creditservice.model.payment;
+
+public enum PaymentProductType {
+    CREDIT,
+    CREDIT_CARD
+}
@@ -0,0 +1,10 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.model.creditcard.CardAuthorization;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CardAuthorizationRepository extends ReactiveMongoRepository<CardAuthorization, String>,
+        CardAuthorizationRepositoryCustom {
+}
@@ -0,0 +1,20 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.model.creditcard.AuthorizationStatus;
+import com.bank.creditservice.model.creditcard.CardAuthorization;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+public interface CardAuthorizationRepositoryCustom {
+    /**
+     * Moves a HELD authorization to status in one findAndModify and returns it as updated. Empty when it does not
+     * exist or was already captured or released, so each hold is settled at most once.
+     */
+    Mono<CardAuthorization> settle(String id, AuthorizationStatus status, BigDecimal capturedAmount);
+    /**
+     * Total of the card's HELD authorizations, zero when there are none. Held funds are already off the
+     * availableBalance but are not owed until captured.
+     */
+    Mono<BigDecimal> sumHeldAmounts(String creditCardId);
+}
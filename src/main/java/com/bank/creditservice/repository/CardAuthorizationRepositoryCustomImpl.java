@@ -0,0 +1,39 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.model.creditcard.AuthorizationStatus;
+import com.bank.creditservice.model.creditcard.CardAuthorization;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class CardAuthorizationRepositoryCustomImpl implements CardAuthorizationRepositoryCustom {
+    private final ReactiveMongoTemplate mongoTemplate;
+    public CardAuthorizationRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    @Override
+    public Mono<CardAuthorization> settle(String id, AuthorizationStatus status, BigDecimal capturedAmount) {
+        Query query = new Query(Criteria.where("id").is(id).and("status").is(AuthorizationStatus.HELD));
+        Update update = new Update()
+                .set("status", status)
+                .set("capturedAmount", capturedAmount)
+                .set("modifiedAt", LocalDateTime.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                CardAuthorization.class);
+    }
+    @Override
+    public Mono<BigDecimal> sumHeldAmounts(String creditCardId) {
+        Query query = new Query(Criteria.where("creditCardId").is(creditCardId)
+                .and("status").is(AuthorizationStatus.HELD));
+        query.fields().include("amount");
+        return mongoTemplate.find(query, CardAuthorization.class)
+                .map(CardAuthorization::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
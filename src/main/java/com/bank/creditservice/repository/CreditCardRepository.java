@@ -1,9 +1,25 @@
 package com.bank.creditservice.repository;
 
 import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface CreditCardRepository extends ReactiveMongoRepository<CreditCard, String> {
+public interface CreditCardRepository extends ReactiveMongoRepository<CreditCard, String>,
+        CreditCardRepositoryCustom {
+    int STREAM_BATCH_SIZE = 256;
     Flux<CreditCard> findByCustomerId(String customerId);
+    Flux<CreditCard> findAllBy(Pageable pageable);
+    Flux<CreditCard> findByIdGreaterThan(String id, Pageable pageable);
+    @Meta(cursorBatchSize = STREAM_BATCH_SIZE)
+    Flux<CreditCard> findAllBy(Sort sort);
+    @Meta(cursorBatchSize = STREAM_BATCH_SIZE)
+    Flux<CreditCard> findByIdGreaterThan(String id, Sort sort);
+    Mono<Boolean> existsByCustomerIdAndStatusAndPaymentStatus(String customerId,
+                                                              String status,
+                                                              PaymentStatus paymentStatus);
 }
@@ -0,0 +1,70 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.dto.CreditCardSummary;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+public interface CreditCardRepositoryCustom {
+    /**
+     * Reads only the given fields of the customer's credit cards. The id is always returned.
+     */
+    Flux<CreditCardSummary> findSummariesByCustomerId(String customerId, Collection<String> fields);
+
+    /**
+     * Which of the given customers have a credit card in the given status, as one distinct query.
+     */
+    Flux<String> findCustomerIdsWithCreditCards(Collection<String> customerIds,
+                                                String status,
+                                                PaymentStatus paymentStatus);
+
+    /**
+     * Id, customer and status fields of up to limit credit cards matching the criteria, ordered by id and starting
+     * after the given id (from the start when null).
+     */
+    Flux<CreditCard> findStatusesMatching(Criteria criteria, String afterId, int limit);
+
+    /**
+     * Applies the update, as one updateMany, to those of the given credit cards that still match the criteria, and
+     * bumps their version.
+     */
+    Mono<UpdateResult> updateAllMatching(Collection<String> ids, Criteria criteria, Update update);
+
+    /**
+     * Applies the update and bumps the version in one findAndModify, returning the credit card as it was before.
+     * With an expectedVersion the update only applies while the stored version still equals it. Empty when nothing
+     * matched.
+     */
+    Mono<CreditCard> updateFields(String id, Long expectedVersion, Update update);
+
+    /**
+     * Like updateFields, and also sets the credit limit, moving the available balance by as much as the limit moves
+     * in the same update, so what is in use on the card (charges and held authorizations) stays in use. The update
+     * may only hold $set operations.
+     */
+    Mono<CreditCard> updateFieldsAndLimit(String id, Long expectedVersion, BigDecimal creditLimit, Update update);
+
+    /**
+     * Like updateFields, but always conditional: applies only while the stored version equals version, where null
+     * matches a credit card written before versioning.
+     */
+    Mono<CreditCard> compareAndUpdate(String id, Long version, Update update);
+
+    /**
+     * Takes amount off the available balance of an ACTIVE credit card, in one conditional update that only applies
+     * while the balance covers it. False when it does not, or the card is missing or not active.
+     */
+    Mono<Boolean> reserveBalance(String id, BigDecimal amount);
+
+    /**
+     * Puts amount back on the available balance of the credit card in one update.
+     */
+    Mono<Boolean> restoreBalance(String id, BigDecimal amount);
+}
@@ -0,0 +1,134 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.dto.CreditCardSummary;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public class CreditCardRepositoryCustomImpl implements CreditCardRepositoryCustom {
+    private final ReactiveMongoTemplate mongoTemplate;
+    public CreditCardRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    @Override
+    public Flux<CreditCardSummary> findSummariesByCustomerId(String customerId, Collection<String> fields) {
+        Query query = new Query(Criteria.where("customerId").is(customerId));
+        fields.forEach(query.fields()::include);
+        return mongoTemplate.find(query, CreditCardSummary.class, mongoTemplate.getCollectionName(CreditCard.class));
+    }
+    @Override
+    public Flux<String> findCustomerIdsWithCreditCards(Collection<String> customerIds,
+                                                       String status,
+                                                       PaymentStatus paymentStatus) {
+        Query query = new Query(Criteria.where("customerId").in(customerIds)
+                .and("status").is(status)
+                .and("paymentStatus").is(paymentStatus));
+        return mongoTemplate.findDistinct(query, "customerId", CreditCard.class, String.class);
+    }
+    @Override
+    public Flux<CreditCard> findStatusesMatching(Criteria criteria, String afterId, int limit) {
+        Query query = new Query(afterId == null
+                ? criteria
+                : new Criteria().andOperator(criteria, Criteria.where("id").gt(afterId)))
+                .with(Sort.by("id"))
+                .limit(limit);
+        query.fields().include("id", "customerId", "status", "paymentStatus");
+        return mongoTemplate.find(query, CreditCard.class);
+    }
+    @Override
+    public Mono<UpdateResult> updateAllMatching(Collection<String> ids, Criteria criteria, Update update) {
+        Query query = new Query(new Criteria().andOperator(Criteria.where("id").in(ids), criteria));
+        return mongoTemplate.updateMulti(query, update.inc("version", 1), CreditCard.class);
+    }
+    @Override
+    public Mono<CreditCard> updateFields(String id, Long expectedVersion, Update update) {
+        return findAndModify(byIdAndVersion(id, expectedVersion), update);
+    }
+    @Override
+    public Mono<CreditCard> updateFieldsAndLimit(String id, Long expectedVersion, BigDecimal creditLimit,
+                                                 Update update) {
+        //One $set stage per field: availableBalance is computed from the creditLimit stored before this update
+        Document previousLimit = new Document("$ifNull",
+                List.of(new Document("$toDecimal", "$creditLimit"), Decimal128.POSITIVE_ZERO));
+        Document limitChange = new Document("$subtract", List.of(new Decimal128(creditLimit), previousLimit));
+        AggregationUpdate pipeline = AggregationUpdate.update()
+                .set("availableBalance").toValueOf((AggregationExpression) context ->
+                        new Document("$toString", new Document("$add", List.of(availableBalance(), limitChange))))
+                .set("creditLimit").toValue(creditLimit.toString());
+        Document fields = (Document) update.getUpdateObject().get("$set");
+        if (fields != null) {
+            fields.forEach((field, value) -> pipeline.set(field).toValue(value));
+        }
+        pipeline.set("version").toValueOf((AggregationExpression) context -> nextVersion());
+        return mongoTemplate.findAndModify(new Query(byIdAndVersion(id, expectedVersion)), pipeline,
+                FindAndModifyOptions.options().returnNew(false), CreditCard.class);
+    }
+    private static Criteria byIdAndVersion(String id, Long expectedVersion) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (expectedVersion != null) {
+            criteria.and("version").is(expectedVersion);
+        }
+        return criteria;
+    }
+    @Override
+    public Mono<CreditCard> compareAndUpdate(String id, Long version, Update update) {
+        return findAndModify(Criteria.where("id").is(id).and("version").is(version), update);
+    }
+    private Mono<CreditCard> findAndModify(Criteria criteria, Update update) {
+        return mongoTemplate.findAndModify(new Query(criteria), update.inc("version", 1),
+                FindAndModifyOptions.options().returnNew(false), CreditCard.class);
+    }
+    @Override
+    public Mono<Boolean> reserveBalance(String id, BigDecimal amount) {
+        Query query = new Query(Criteria.where("id").is(id)
+                .and("status").is("ACTIVE")
+                .and("$expr").is(new Document("$gte", List.of(availableBalance(), new Decimal128(amount)))));
+        return adjustBalance(query, plus(amount.negate()));
+    }
+    @Override
+    public Mono<Boolean> restoreBalance(String id, BigDecimal amount) {
+        //Capped at the limit, so a restore replayed after a payment already freed the amount can't push past it
+        return adjustBalance(new Query(Criteria.where("id").is(id)),
+                new Document("$min", List.of(new Document("$toDecimal", "$creditLimit"), plus(amount))));
+    }
+
+    /**
+     * availableBalance is stored as a decimal string, so the arithmetic runs in an update pipeline on
+     * $toDecimal of it and the result is written back as a string.
+     */
+    private Mono<Boolean> adjustBalance(Query query, Document newBalance) {
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("availableBalance").toValueOf((AggregationExpression) context ->
+                        new Document("$toString", newBalance))
+                .set("version").toValueOf((AggregationExpression) context -> nextVersion())
+                .set("modifiedAt").toValue(new Date());
+        return mongoTemplate.updateFirst(query, update, CreditCard.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+    private static Document plus(BigDecimal delta) {
+        return new Document("$add", List.of(availableBalance(), new Decimal128(delta)));
+    }
+    private static Document nextVersion() {
+        return new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L));
+    }
+    private static Document availableBalance() {
+        return new Document("$toDecimal", "$availableBalance");
+    }
+}
@@ -1,11 +1,27 @@
 package com.bank.creditservice.repository;
 
 import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Repository
-public interface CreditRepository extends ReactiveMongoRepository<Credit, String> {
+public interface CreditRepository extends ReactiveMongoRepository<Credit, String>, CreditRepositoryCustom {
+    int STREAM_BATCH_SIZE = 256;
     Flux<Credit> findByCustomerId(String customerId);
+    Flux<Credit> findAllBy(Pageable pageable);
+    Flux<Credit> findByIdGreaterThan(String id, Pageable pageable);
+    @Meta(cursorBatchSize = STREAM_BATCH_SIZE)
+    Flux<Credit> findAllBy(Sort sort);
+    @Meta(cursorBatchSize = STREAM_BATCH_SIZE)
+    Flux<Credit> findByIdGreaterThan(String id, Sort sort);
+    Mono<Boolean> existsByCustomerIdAndCreditStatusAndPaymentStatus(String customerId,
+                                                                    CreditStatus creditStatus,
+                                                                    PaymentStatus paymentStatus);
 }
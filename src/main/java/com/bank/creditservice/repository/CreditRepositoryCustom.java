@@ -0,0 +1,52 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.dto.CreditSummary;
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface CreditRepositoryCustom {
+    /**
+     * Reads only the given fields of the customer's credits. The id is always returned.
+     */
+    Flux<CreditSummary> findSummariesByCustomerId(String customerId, Collection<String> fields);
+
+    /**
+     * Which of the given customers have at least one credit, as one distinct query.
+     */
+    Flux<String> findCustomerIdsWithCredits(Collection<String> customerIds);
+    Flux<String> findCustomerIdsWithCredits(Collection<String> customerIds,
+                                            CreditStatus creditStatus,
+                                            PaymentStatus paymentStatus);
+
+    /**
+     * Id, customer and status fields of up to limit credits matching the criteria, ordered by id and starting
+     * after the given id (from the start when null).
+     */
+    Flux<Credit> findStatusesMatching(Criteria criteria, String afterId, int limit);
+
+    /**
+     * Applies the update, as one updateMany, to those of the given credits that still match the criteria, and bumps
+     * their version.
+     */
+    Mono<UpdateResult> updateAllMatching(Collection<String> ids, Criteria criteria, Update update);
+
+    /**
+     * Applies the update and bumps the version in one findAndModify, returning the credit as it was before. With an
+     * expectedVersion the update only applies while the stored version still equals it. Empty when nothing matched.
+     */
+    Mono<Credit> updateFields(String id, Long expectedVersion, Update update);
+
+    /**
+     * Like updateFields, but always conditional: applies only while the stored version equals version, where null
+     * matches a credit written before versioning.
+     */
+    Mono<Credit> compareAndUpdate(String id, Long version, Update update);
+}
@@ -0,0 +1,76 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.dto.CreditSummary;
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public class CreditRepositoryCustomImpl implements CreditRepositoryCustom {
+    private final ReactiveMongoTemplate mongoTemplate;
+    public CreditRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    @Override
+    public Flux<CreditSummary> findSummariesByCustomerId(String customerId, Collection<String> fields) {
+        Query query = new Query(Criteria.where("customerId").is(customerId));
+        fields.forEach(query.fields()::include);
+        return mongoTemplate.find(query, CreditSummary.class, mongoTemplate.getCollectionName(Credit.class));
+    }
+    @Override
+    public Flux<String> findCustomerIdsWithCredits(Collection<String> customerIds) {
+        return findDistinctCustomerIds(Criteria.where("customerId").in(customerIds));
+    }
+    @Override
+    public Flux<String> findCustomerIdsWithCredits(Collection<String> customerIds,
+                                                   CreditStatus creditStatus,
+                                                   PaymentStatus paymentStatus) {
+        return findDistinctCustomerIds(Criteria.where("customerId").in(customerIds)
+                .and("creditStatus").is(creditStatus)
+                .and("paymentStatus").is(paymentStatus));
+    }
+    private Flux<String> findDistinctCustomerIds(Criteria criteria) {
+        return mongoTemplate.findDistinct(new Query(criteria), "customerId", Credit.class, String.class);
+    }
+    @Override
+    public Flux<Credit> findStatusesMatching(Criteria criteria, String afterId, int limit) {
+        Query query = new Query(afterId == null
+                ? criteria
+                : new Criteria().andOperator(criteria, Criteria.where("id").gt(afterId)))
+                .with(Sort.by("id"))
+                .limit(limit);
+        query.fields().include("id", "customerId", "creditStatus", "paymentStatus");
+        return mongoTemplate.find(query, Credit.class);
+    }
+    @Override
+    public Mono<UpdateResult> updateAllMatching(Collection<String> ids, Criteria criteria, Update update) {
+        Query query = new Query(new Criteria().andOperator(Criteria.where("id").in(ids), criteria));
+        return mongoTemplate.updateMulti(query, update.inc("version", 1), Credit.class);
+    }
+    @Override
+    public Mono<Credit> updateFields(String id, Long expectedVersion, Update update) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (expectedVersion != null) {
+            criteria.and("version").is(expectedVersion);
+        }
+        return findAndModify(criteria, update);
+    }
+    @Override
+    public Mono<Credit> compareAndUpdate(String id, Long version, Update update) {
+        return findAndModify(Criteria.where("id").is(id).and("version").is(version), update);
+    }
+    private Mono<Credit> findAndModify(Criteria criteria, Update update) {
+        return mongoTemplate.findAndModify(new Query(criteria), update.inc("version", 1),
+                FindAndModifyOptions.options().returnNew(false), Credit.class);
+    }
+}
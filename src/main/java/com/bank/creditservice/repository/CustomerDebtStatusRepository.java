@@ -0,0 +1,9 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.model.eligibility.CustomerDebtStatus;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CustomerDebtStatusRepository extends ReactiveMongoRepository<CustomerDebtStatus, String> {
+}
@@ -0,0 +1,9 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.model.outbox.OutboxEvent;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxEventRepository extends ReactiveMongoRepository<OutboxEvent, String> {
+}
@@ -0,0 +1,13 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.model.job.OverdueSweepCheckpoint;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface OverdueSweepCheckpointRepository extends ReactiveMongoRepository<OverdueSweepCheckpoint, String> {
+    Flux<OverdueSweepCheckpoint> findByRunIdOrderByTargetAscPartitionAsc(String runId);
+    Mono<OverdueSweepCheckpoint> findFirstByOrderByAsOfDesc();
+}
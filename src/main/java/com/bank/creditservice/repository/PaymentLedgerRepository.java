@@ -0,0 +1,11 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.model.payment.PaymentLedgerEntry;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface PaymentLedgerRepository extends ReactiveMongoRepository<PaymentLedgerEntry, String> {
+    Mono<PaymentLedgerEntry> findByProductIdAndIdempotencyKey(String productId, String idempotencyKey);
+}
@@ -0,0 +1,181 @@
+package com.bank.creditservice.scheduled;
+
+import com.bank.creditservice.event.KafkaEventPublisher;
+import com.bank.creditservice.model.outbox.OutboxEvent;
+import com.bank.creditservice.model.outbox.OutboxRelayLease;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the outbox to Kafka. Only the instance holding the relay lease polls, so events of one aggregate are
+ * published in the order they were recorded; different aggregates in a batch are published concurrently.
+ * Delivery is at-least-once: an event is removed from the outbox only after the broker acknowledged it, and
+ * a failed event holds back the later events of its aggregate until it goes through.
+ * <p>
+ * An event that still fails after max-attempts deliveries is parked: it stays in the outbox with parkedAt set,
+ * is left out of later batches so it can't block the head of the queue, and has to be replayed by hand. Later
+ * events of its aggregate are relayed without it.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+    private static final String LEASE_ID = "outbox-relay";
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final KafkaEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter relayed;
+    private final Counter failed;
+    private final Counter parked;
+    public OutboxRelay(ReactiveMongoTemplate mongoTemplate,
+                       KafkaEventPublisher eventPublisher,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.lease-ms:30000}") long leaseMillis,
+                       @Value("${outbox.relay.max-attempts:10}") int maxAttempts) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofMillis(leaseMillis);
+        TimeGauge.builder("outbox.lag", lagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Age of the oldest event still waiting in the outbox")
+                .register(meterRegistry);
+        this.relayed = Counter.builder("outbox.relayed")
+                .tag("result", "success")
+                .register(meterRegistry);
+        this.failed = Counter.builder("outbox.relayed")
+                .tag("result", "failure")
+                .register(meterRegistry);
+        this.parked = Counter.builder("outbox.parked")
+                .description("Events given up on after max-attempts failed deliveries")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-interval-ms:1000}")
+    public void poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        relay()
+                .doFinally(signal -> polling.set(false))
+                .subscribe(
+                        count -> {
+                            if (count > 0) {
+                                log.info("Relayed {} outbox events", count);
+                            }
+                        },
+                        error -> log.error("Error relaying outbox events: {}", error.getMessage()));
+    }
+
+    /**
+     * Relays one batch of the oldest outbox events, if this instance holds the relay lease.
+     */
+    public Mono<Long> relay() {
+        return acquireLease()
+                .flatMap(leaseHolder -> leaseHolder ? relayBatch() : Mono.just(0L));
+    }
+
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+
+    private Mono<Boolean> acquireLease() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(Criteria.where("_id").is(LEASE_ID).orOperator(
+                Criteria.where("owner").is(instanceId),
+                Criteria.where("leaseUntil").lt(now)));
+        Update update = new Update()
+                .set("owner", instanceId)
+                .set("leaseUntil", now.plus(lease));
+        return mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), OutboxRelayLease.class)
+                .map(acquired -> instanceId.equals(acquired.getOwner()))
+                .defaultIfEmpty(false)
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    log.debug("Outbox relay lease is held by another instance");
+                    return Mono.just(false);
+                });
+    }
+
+    private Mono<Long> relayBatch() {
+        Query oldestFirst = new Query(Criteria.where("parkedAt").is(null))
+                .with(Sort.by(Sort.Order.asc("createdAt"), Sort.Order.asc("_id")))
+                .limit(batchSize);
+        return mongoTemplate.find(oldestFirst, OutboxEvent.class)
+                .collectList()
+                .flatMap(batch -> {
+                    lagMillis.set(batch.isEmpty()
+                            ? 0
+                            : Duration.between(batch.get(0).getCreatedAt(), LocalDateTime.now()).toMillis());
+                    return Flux.fromIterable(batch.stream()
+                                    .collect(Collectors.groupingBy(OutboxEvent::getAggregateId, LinkedHashMap::new,
+                                            Collectors.toList()))
+                                    .values())
+                            .flatMap(this::relayInOrder)
+                            .reduce(0L, Long::sum);
+                });
+    }
+
+    private Mono<Long> relayInOrder(List<OutboxEvent> aggregateEvents) {
+        AtomicLong sent = new AtomicLong();
+        return Flux.fromIterable(aggregateEvents)
+                .concatMap(event -> relay(event).doOnSuccess(done -> sent.incrementAndGet()))
+                .then(Mono.fromCallable(sent::get))
+                .onErrorResume(error -> Mono.just(sent.get()));
+    }
+
+    private Mono<Void> relay(OutboxEvent event) {
+        Query byId = new Query(Criteria.where("_id").is(event.getId()));
+        return eventPublisher.publish(event.getTopic(), event.getAggregateId(), event.getPayload())
+                .then(Mono.defer(() -> mongoTemplate.remove(byId, OutboxEvent.class)))
+                .doOnSuccess(removed -> relayed.increment())
+                .then()
+                .onErrorResume(error -> {
+                    failed.increment();
+                    int attempt = event.getAttempts() + 1;
+                    Update failure = new Update()
+                            .inc("attempts", 1)
+                            .set("lastError", error.getMessage());
+                    if (attempt >= maxAttempts) {
+                        parked.increment();
+                        log.error("Parking outbox event {} ({} for {}) after {} failed attempts: {}", event.getId(),
+                                event.getTopic(), event.getAggregateId(), attempt, error.getMessage());
+                        failure.set("parkedAt", LocalDateTime.now());
+                    } else {
+                        log.warn("Failed to relay outbox event {} ({} for {}), attempt {}: {}", event.getId(),
+                                event.getTopic(), event.getAggregateId(), attempt, error.getMessage());
+                    }
+                    return mongoTemplate.updateFirst(byId, failure, OutboxEvent.class)
+                            .then(Mono.error(error));
+                });
+    }
+}
@@ -0,0 +1,26 @@
+package com.bank.creditservice.scheduled;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Component
+@Endpoint(id = "overduesweep")
+public class OverdueSweepEndpoint {
+    private final OverdueSweepJob overdueSweepJob;
+    public OverdueSweepEndpoint(OverdueSweepJob overdueSweepJob) {
+        this.overdueSweepJob = overdueSweepJob;
+    }
+    @ReadOperation
+    public Mono<OverdueSweepStatus> status() {
+        return overdueSweepJob.getLatestStatus();
+    }
+    @WriteOperation
+    public Mono<OverdueSweepStatus> run() {
+        return overdueSweepJob.run(LocalDateTime.now());
+    }
+}
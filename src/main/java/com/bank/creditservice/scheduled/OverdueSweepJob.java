@@ -0,0 +1,257 @@
+package com.bank.creditservice.scheduled;
+
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.bank.creditservice.model.job.OverdueSweepCheckpoint;
+import com.bank.creditservice.model.job.SweepPartitionStatus;
+import com.bank.creditservice.repository.OverdueSweepCheckpointRepository;
+import com.bank.creditservice.service.CustomerDebtStatusService;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Slf4j
+@Component
+public class OverdueSweepJob {
+    private static final int DEBT_STATUS_REFRESH_CONCURRENCY = 16;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OverdueSweepCheckpointRepository checkpointRepository;
+    private final CustomerDebtStatusService customerDebtStatusService;
+    private final int partitions;
+    private final long partitionDays;
+    private final int concurrency;
+    private final Duration lease;
+    private final Duration heartbeat;
+    private final int maxAttempts;
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName();
+    public OverdueSweepJob(ReactiveMongoTemplate mongoTemplate,
+                           OverdueSweepCheckpointRepository checkpointRepository,
+                           CustomerDebtStatusService customerDebtStatusService,
+                           @Value("${overdue-sweep.partitions:12}") int partitions,
+                           @Value("${overdue-sweep.partition-days:30}") long partitionDays,
+                           @Value("${overdue-sweep.concurrency:4}") int concurrency,
+                           @Value("${overdue-sweep.lease-ms:600000}") long leaseMillis,
+                           @Value("${overdue-sweep.max-attempts:3}") int maxAttempts) {
+        this.mongoTemplate = mongoTemplate;
+        this.checkpointRepository = checkpointRepository;
+        this.customerDebtStatusService = customerDebtStatusService;
+        this.partitions = partitions;
+        this.partitionDays = partitionDays;
+        this.concurrency = concurrency;
+        this.lease = Duration.ofMillis(leaseMillis);
+        this.heartbeat = lease.dividedBy(3);
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Mono<OverdueSweepStatus> run(LocalDateTime asOf) {
+        String runId = asOf.toLocalDate().toString();
+        log.info("Starting overdue sweep run {} as of {} on {}", runId, asOf, instanceId);
+        return plan(runId, asOf)
+                .thenMany(Flux.range(0, concurrency).flatMap(worker -> claimAndProcess(runId)))
+                .then(getStatus(runId))
+                .doOnNext(status -> log.info("Overdue sweep run {} finished: {}/{} partitions completed, "
+                                + "scanned={}, updated={}", runId, status.getCompletedPartitions(),
+                        status.getTotalPartitions(), status.getScanned(), status.getUpdated()));
+    }
+
+    public Mono<OverdueSweepStatus> getStatus(String runId) {
+        return checkpointRepository.findByRunIdOrderByTargetAscPartitionAsc(runId)
+                .collectList()
+                .map(checkpoints -> OverdueSweepStatus.from(runId, checkpoints));
+    }
+
+    public Mono<OverdueSweepStatus> getLatestStatus() {
+        return checkpointRepository.findFirstByOrderByAsOfDesc()
+                .flatMap(checkpoint -> getStatus(checkpoint.getRunId()));
+    }
+
+    private Mono<Void> plan(String runId, LocalDateTime asOf) {
+        return Flux.fromArray(OverdueSweepTarget.values())
+                .flatMap(target -> Flux.range(0, partitions)
+                        .map(partition -> newCheckpoint(runId, asOf, target, partition)))
+                .concatMap(checkpoint -> checkpointRepository.insert(checkpoint)
+                        .onErrorResume(DuplicateKeyException.class, e -> Mono.empty()))
+                .then();
+    }
+
+    OverdueSweepCheckpoint newCheckpoint(String runId, LocalDateTime asOf, OverdueSweepTarget target, int partition) {
+        LocalDateTime dueTo = asOf.minusDays(partition * partitionDays);
+        LocalDateTime dueFrom = partition == partitions - 1
+                ? null
+                : asOf.minusDays((partition + 1) * partitionDays);
+        return OverdueSweepCheckpoint.builder()
+                .id(runId + ":" + target.name() + ":" + partition)
+                .runId(runId)
+                .target(target.name())
+                .partition(partition)
+                .asOf(asOf)
+                .dueFrom(dueFrom)
+                .dueTo(dueTo)
+                .status(SweepPartitionStatus.PENDING)
+                .build();
+    }
+
+    private Flux<OverdueSweepCheckpoint> claimAndProcess(String runId) {
+        return claimNext(runId)
+                .flatMap(this::process)
+                .expand(processed -> claimNext(runId).flatMap(this::process));
+    }
+
+    private Mono<OverdueSweepCheckpoint> claimNext(String runId) {
+        LocalDateTime now = LocalDateTime.now();
+        //An expired lease counts as a failed attempt too, so a partition that keeps killing its worker is given up
+        Query claimable = new Query(Criteria.where("runId").is(runId).orOperator(
+                Criteria.where("status").in(SweepPartitionStatus.PENDING, SweepPartitionStatus.FAILED)
+                        .and("attempts").lt(maxAttempts),
+                Criteria.where("status").is(SweepPartitionStatus.RUNNING)
+                        .and("leaseUntil").lt(now)
+                        .and("attempts").lt(maxAttempts)));
+        Update claim = new Update()
+                .set("status", SweepPartitionStatus.RUNNING)
+                .set("owner", instanceId)
+                .set("leaseUntil", now.plus(lease))
+                .set("startedAt", now)
+                .unset("lastError")
+                .inc("attempts", 1);
+        return mongoTemplate.findAndModify(claimable, claim, FindAndModifyOptions.options().returnNew(true),
+                        OverdueSweepCheckpoint.class)
+                .doOnNext(checkpoint -> log.info("Claimed overdue sweep partition {} (attempt {})",
+                        checkpoint.getId(), checkpoint.getAttempts()));
+    }
+
+    private Mono<OverdueSweepCheckpoint> process(OverdueSweepCheckpoint checkpoint) {
+        OverdueSweepTarget target = OverdueSweepTarget.valueOf(checkpoint.getTarget());
+        return withLeaseHeartbeat(checkpoint, sweepPartition(target, checkpoint))
+                .map(result -> new Update()
+                        .set("status", SweepPartitionStatus.COMPLETED)
+                        .set("scanned", result.getScanned())
+                        .set("updated", result.getUpdated())
+                        .set("elapsedMillis", result.getElapsedMillis())
+                        .set("completedAt", LocalDateTime.now()))
+                .onErrorResume(error -> {
+                    log.error("Overdue sweep partition {} failed: {}", checkpoint.getId(), error.getMessage());
+                    return Mono.just(new Update()
+                            .set("status", SweepPartitionStatus.FAILED)
+                            .set("lastError", String.valueOf(error.getMessage())));
+                })
+                .flatMap(outcome -> release(checkpoint, outcome));
+    }
+
+    /**
+     * Keeps the partition's lease alive while work runs, however long the partition takes. If the lease can't be
+     * renewed any more, another instance has taken the partition over: work is cancelled and fails.
+     */
+    private <T> Mono<T> withLeaseHeartbeat(OverdueSweepCheckpoint checkpoint, Mono<T> work) {
+        Mono<T> leaseLost = Flux.interval(heartbeat)
+                .concatMap(tick -> renewLease(checkpoint))
+                .filter(renewed -> !renewed)
+                .next()
+                .flatMap(lost -> Mono.error(new IllegalStateException("Lease on overdue sweep partition "
+                        + checkpoint.getId() + " was lost")));
+        return Mono.firstWithSignal(work, leaseLost);
+    }
+
+    private Mono<Boolean> renewLease(OverdueSweepCheckpoint checkpoint) {
+        return mongoTemplate.findAndModify(heldByThisClaim(checkpoint),
+                        new Update().set("leaseUntil", LocalDateTime.now().plus(lease)),
+                        FindAndModifyOptions.options().returnNew(true), OverdueSweepCheckpoint.class)
+                .hasElement();
+    }
+
+    /**
+     * Matches the partition only while it is still held by the claim that returned checkpoint: every claim
+     * increments attempts, so a partition this instance lost and claimed again does not match either.
+     */
+    private Query heldByThisClaim(OverdueSweepCheckpoint checkpoint) {
+        return new Query(Criteria.where("_id").is(checkpoint.getId())
+                .and("runId").is(checkpoint.getRunId())
+                .and("owner").is(instanceId)
+                .and("attempts").is(checkpoint.getAttempts()));
+    }
+
+    private Mono<OverdueSweepCheckpoint> release(OverdueSweepCheckpoint checkpoint, Update outcome) {
+        return mongoTemplate.findAndModify(heldByThisClaim(checkpoint), outcome.unset("leaseUntil"),
+                        FindAndModifyOptions.options().returnNew(true), OverdueSweepCheckpoint.class)
+                .switchIfEmpty(Mono.fromCallable(() -> {
+                    log.warn("Lease on overdue sweep partition {} was taken over by another instance",
+                            checkpoint.getId());
+                    return checkpoint;
+                }));
+    }
+
+    private Mono<OverdueSweepResult> sweepPartition(OverdueSweepTarget target, OverdueSweepCheckpoint checkpoint) {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        Query overdue = pendingQuery(target, checkpoint, null);
+        Query severelyOverdue = pendingQuery(target, checkpoint,
+                checkpoint.getAsOf().minusDays(target.getSeverelyOverdueAfterDays() + 1));
+        Update markSeverelyOverdue = new Update()
+                .set("paymentStatus", PaymentStatus.OVERDUE)
+                .set(target.getStatusField(), target.getSeverelyOverdueStatus())
+                .set("modifiedAt", now)
+                .inc("version", 1);
+        Update markOverdue = new Update()
+                .set("paymentStatus", PaymentStatus.OVERDUE)
+                .set("modifiedAt", now)
+                .inc("version", 1);
+        return mongoTemplate.findDistinct(overdue, "customerId", target.getEntityClass(), String.class)
+                .collectList()
+                .flatMap(customerIds -> mongoTemplate
+                        .updateMulti(severelyOverdue, markSeverelyOverdue, target.getEntityClass())
+                        .flatMap(severeResult -> mongoTemplate
+                                .updateMulti(overdue, markOverdue, target.getEntityClass())
+                                .map(overdueResult -> toResult(checkpoint, start, severeResult, overdueResult)))
+                        .flatMap(result -> refreshDebtStatus(customerIds).thenReturn(result)))
+                .doOnNext(result -> log.info("Overdue sweep partition {} finished: scanned={}, updated={}, "
+                                + "elapsed={}ms", result.getPartitionId(), result.getScanned(),
+                        result.getUpdated(), result.getElapsedMillis()));
+    }
+
+    private Query pendingQuery(OverdueSweepTarget target, OverdueSweepCheckpoint checkpoint,
+                               LocalDateTime severelyOverdueCutoff) {
+        Criteria dueDate = Criteria.where(target.getDueDateField()).lt(checkpoint.getDueTo());
+        if (checkpoint.getDueFrom() != null) {
+            dueDate = dueDate.gte(checkpoint.getDueFrom());
+        }
+        if (severelyOverdueCutoff != null) {
+            dueDate = dueDate.lte(severelyOverdueCutoff);
+        }
+        return new Query(Criteria.where(target.getStatusField()).is(target.getActiveStatus())
+                .and("paymentStatus").is(PaymentStatus.PENDING))
+                .addCriteria(dueDate);
+    }
+
+    private OverdueSweepResult toResult(OverdueSweepCheckpoint checkpoint, long start,
+                                        UpdateResult severe, UpdateResult overdue) {
+        return OverdueSweepResult.builder()
+                .partitionId(checkpoint.getId())
+                .scanned(severe.getMatchedCount() + overdue.getMatchedCount())
+                .updated(severe.getModifiedCount() + overdue.getModifiedCount())
+                .elapsedMillis(System.currentTimeMillis() - start)
+                .build();
+    }
+
+    private Mono<Void> refreshDebtStatus(List<String> customerIds) {
+        return Flux.fromIterable(customerIds)
+                .flatMap(customerId -> customerDebtStatusService.refresh(customerId)
+                        .onErrorResume(error -> {
+                            log.error("Error refreshing debt status for customer {}: {}",
+                                    customerId, error.getMessage());
+                            return Mono.empty();
+                        }), DEBT_STATUS_REFRESH_CONCURRENCY)
+                .then();
+    }
+}
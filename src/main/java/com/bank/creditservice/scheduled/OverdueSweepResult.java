@@ -0,0 +1,17 @@
+package com.bank.creditservice.scheduled;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueSweepResult {
+    private String partitionId;
+    private long scanned;
+    private long updated;
+    private long elapsedMillis;
+}
@@ -0,0 +1,46 @@
+package com.bank.creditservice.scheduled;
+
+import com.bank.creditservice.model.job.OverdueSweepCheckpoint;
+import com.bank.creditservice.model.job.SweepPartitionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueSweepStatus {
+    private String runId;
+    private LocalDateTime asOf;
+    private long totalPartitions;
+    private long pendingPartitions;
+    private long runningPartitions;
+    private long completedPartitions;
+    private long failedPartitions;
+    private long scanned;
+    private long updated;
+    private List<OverdueSweepCheckpoint> partitions;
+
+    public static OverdueSweepStatus from(String runId, List<OverdueSweepCheckpoint> checkpoints) {
+        return OverdueSweepStatus.builder()
+                .runId(runId)
+                .asOf(checkpoints.isEmpty() ? null : checkpoints.get(0).getAsOf())
+                .totalPartitions(checkpoints.size())
+                .pendingPartitions(count(checkpoints, SweepPartitionStatus.PENDING))
+                .runningPartitions(count(checkpoints, SweepPartitionStatus.RUNNING))
+                .completedPartitions(count(checkpoints, SweepPartitionStatus.COMPLETED))
+                .failedPartitions(count(checkpoints, SweepPartitionStatus.FAILED))
+                .scanned(checkpoints.stream().mapToLong(OverdueSweepCheckpoint::getScanned).sum())
+                .updated(checkpoints.stream().mapToLong(OverdueSweepCheckpoint::getUpdated).sum())
+                .partitions(checkpoints)
+                .build();
+    }
+    private static long count(List<OverdueSweepCheckpoint> checkpoints, SweepPartitionStatus status) {
+        return checkpoints.stream().filter(checkpoint -> checkpoint.getStatus() == status).count();
+    }
+}
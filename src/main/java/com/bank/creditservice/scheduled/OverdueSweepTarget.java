@@ -0,0 +1,45 @@
+package com.bank.creditservice.scheduled;
+
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.creditcard.CreditCard;
+
+public enum OverdueSweepTarget {
+    CREDITS(Credit.class, "creditStatus", CreditStatus.ACTIVE, CreditStatus.DEFAULTED, "nextPaymentDate", 90),
+    CREDIT_CARDS(CreditCard.class, "status", "ACTIVE", "BLOCKED", "paymentDueDate", 60);
+
+    private final Class<?> entityClass;
+    private final String statusField;
+    private final Object activeStatus;
+    private final Object severelyOverdueStatus;
+    private final String dueDateField;
+    private final long severelyOverdueAfterDays;
+
+    OverdueSweepTarget(Class<?> entityClass, String statusField, Object activeStatus,
+                       Object severelyOverdueStatus, String dueDateField, long severelyOverdueAfterDays) {
+        this.entityClass = entityClass;
+        this.statusField = statusField;
+        this.activeStatus = activeStatus;
+        this.severelyOverdueStatus = severelyOverdueStatus;
+        this.dueDateField = dueDateField;
+        this.severelyOverdueAfterDays = severelyOverdueAfterDays;
+    }
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+    public String getStatusField() {
+        return statusField;
+    }
+    public Object getActiveStatus() {
+        return activeStatus;
+    }
+    public Object getSeverelyOverdueStatus() {
+        return severelyOverdueStatus;
+    }
+    public String getDueDateField() {
+        return dueDateField;
+    }
+    public long getSeverelyOverdueAfterDays() {
+        return severelyOverdueAfterDays;
+    }
+}
@@ -0,0 +1,95 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.account.Account;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+@Slf4j
+@Service
+public class AccountCacheService {
+    private static final String ACCOUNTS_KEY_PREFIX = "Accounts:";
+    private static final TypeReference<List<Account>> ACCOUNT_LIST = new TypeReference<List<Account>>() { };
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Counter hits;
+    private final Counter misses;
+    public AccountCacheService(ReactiveRedisTemplate<String, String> redisTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${account-cache.ttl-ms:60000}") long ttlMillis) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofMillis(ttlMillis);
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.hits = Counter.builder("cache.gets")
+                .tag("cache", "accounts")
+                .tag("result", "hit")
+                .description("Account list lookups served from Redis")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets")
+                .tag("cache", "accounts")
+                .tag("result", "miss")
+                .description("Account list lookups that had to call the account service")
+                .register(meterRegistry);
+        Gauge.builder("cache.hit.ratio", this, AccountCacheService::getHitRatio)
+                .tag("cache", "accounts")
+                .register(meterRegistry);
+    }
+    public Mono<List<Account>> getAccounts(String customerId) {
+        String key = ACCOUNTS_KEY_PREFIX + customerId;
+        return redisTemplate.opsForValue().get(key)
+                .flatMap(accountsJson -> Mono.fromCallable(() -> objectMapper.readValue(accountsJson, ACCOUNT_LIST)))
+                .doOnNext(accounts -> {
+                    hits.increment();
+                    log.debug("Accounts for customer {} served from cache ({} accounts)", customerId, accounts.size());
+                })
+                .switchIfEmpty(Mono.fromRunnable(misses::increment))
+                .timeout(Duration.ofSeconds(5))
+                .onErrorResume(e -> {
+                    log.error("Error retrieving accounts for customer {} from cache: {}", customerId, e.getMessage());
+                    misses.increment();
+                    return Mono.empty();
+                });
+    }
+    public Mono<Void> saveAccounts(String customerId, List<Account> accounts) {
+        String key = ACCOUNTS_KEY_PREFIX + customerId;
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(accounts))
+                .flatMap(accountsJson -> redisTemplate.opsForValue().set(key, accountsJson, ttl))
+                .doOnSuccess(result -> log.debug("Cached {} accounts for customer {} with ttl {}",
+                        accounts.size(), customerId, ttl))
+                .onErrorResume(e -> {
+                    log.error("Error caching accounts for customer {}: {}", customerId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+    public Mono<Void> evictAccounts(String customerId) {
+        return redisTemplate.delete(ACCOUNTS_KEY_PREFIX + customerId)
+                .doOnSuccess(deleted -> log.debug("Evicted cached accounts for customer {}", customerId))
+                .onErrorResume(e -> {
+                    log.error("Error evicting cached accounts for customer {}: {}", customerId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+    public double getHitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+}
@@ -0,0 +1,17 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.customer.Customer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+public class CachedCustomer {
+    private final Customer customer; //Null for a negative entry of a customer the customer service doesn't know
+    private final Instant writtenAt;
+    public boolean isNotFound() {
+        return customer == null;
+    }
+}
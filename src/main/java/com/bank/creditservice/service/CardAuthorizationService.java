@@ -0,0 +1,245 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.creditcard.AuthorizationStatus;
+import com.bank.creditservice.model.creditcard.CardAuthorization;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.repository.CardAuthorizationRepository;
+import com.bank.creditservice.repository.CreditCardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Holds funds on credit cards. A hold takes its amount off the card's availableBalance with one conditional
+ * update that only applies while the balance covers it, so each card goes through a single order of balance
+ * changes however many instances write to it. Capturing or releasing settles a hold exactly once.
+ * <p>
+ * Hot cards: authorizations for a card that arrive while earlier ones are still being written queue up behind
+ * them and are committed together, up to max-batch-size at a time: one conditional decrement of their total and
+ * one insert of their holds, in one transaction. When the total does not fit, the holds that fit the current
+ * balance in arrival order are approved and the rest declined.
+ */
+@Slf4j
+@Service
+public class CardAuthorizationService {
+    private static final String DECLINED = "Authorization declined: insufficient available balance or card not active";
+    private final CreditCardRepository creditCardRepository;
+    private final CardAuthorizationRepository cardAuthorizationRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final int maxBatchSize;
+    private final ConcurrentMap<String, CardQueue> queues = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSizes;
+    private final Counter approved;
+    private final Counter declined;
+    public CardAuthorizationService(CreditCardRepository creditCardRepository,
+                                    CardAuthorizationRepository cardAuthorizationRepository,
+                                    TransactionalOperator transactionalOperator,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${card-authorization.max-batch-size:200}") int maxBatchSize) {
+        this.creditCardRepository = creditCardRepository;
+        this.cardAuthorizationRepository = cardAuthorizationRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizes = DistributionSummary.builder("card.authorization.batch.size")
+                .description("Authorizations for one card committed together")
+                .register(meterRegistry);
+        this.approved = Counter.builder("card.authorizations")
+                .tag("result", "approved")
+                .register(meterRegistry);
+        this.declined = Counter.builder("card.authorizations")
+                .tag("result", "declined")
+                .register(meterRegistry);
+    }
+
+    public Mono<CardAuthorization> authorize(String creditCardId, BigDecimal amount, String reference) {
+        if (amount == null || amount.signum() <= 0) {
+            return Mono.error(new RuntimeException("Authorization amount must be positive"));
+        }
+        return Mono.defer(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            PendingAuthorization pending = new PendingAuthorization(CardAuthorization.builder()
+                    .creditCardId(creditCardId)
+                    .amount(amount)
+                    .status(AuthorizationStatus.HELD)
+                    .reference(reference)
+                    .createdAt(now)
+                    .modifiedAt(now)
+                    .build());
+            //Enqueued inside compute so it can't land in a queue that drain is removing from the map
+            CardQueue queue = queues.compute(creditCardId, (id, current) -> {
+                CardQueue target = current != null ? current : new CardQueue(id);
+                target.pending.add(pending);
+                return target;
+            });
+            drain(queue);
+            return pending.result.asMono();
+        });
+    }
+
+    /**
+     * Captures amount of a hold, or all of it when amount is null, and gives the rest back to the card.
+     */
+    public Mono<CardAuthorization> capture(String authorizationId, BigDecimal amount) {
+        return cardAuthorizationRepository.findById(authorizationId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Authorization not found")))
+                .flatMap(hold -> {
+                    BigDecimal captured = amount != null ? amount : hold.getAmount();
+                    if (captured.signum() < 0 || captured.compareTo(hold.getAmount()) > 0) {
+                        return Mono.error(new RuntimeException("Capture amount must be between 0 and "
+                                + hold.getAmount()));
+                    }
+                    return settle(authorizationId, AuthorizationStatus.CAPTURED, captured);
+                });
+    }
+
+    public Mono<CardAuthorization> release(String authorizationId) {
+        return settle(authorizationId, AuthorizationStatus.RELEASED, BigDecimal.ZERO);
+    }
+
+    private Mono<CardAuthorization> settle(String authorizationId, AuthorizationStatus status, BigDecimal captured) {
+        return transactionalOperator.transactional(cardAuthorizationRepository
+                .settle(authorizationId, status, captured)
+                .switchIfEmpty(Mono.error(new RuntimeException("Authorization not found or already settled")))
+                .flatMap(hold -> {
+                    BigDecimal remainder = hold.getAmount().subtract(captured);
+                    return remainder.signum() > 0
+                            ? creditCardRepository.restoreBalance(hold.getCreditCardId(), remainder).thenReturn(hold)
+                            : Mono.just(hold);
+                }))
+                .doOnNext(hold -> log.info("Authorization {} on credit card {} {}", hold.getId(),
+                        hold.getCreditCardId(), status));
+    }
+
+    /**
+     * Starts committing the card's queued authorizations unless a commit for the card is already running; that
+     * one picks them up when it finishes.
+     */
+    private void drain(CardQueue queue) {
+        if (!queue.committing.compareAndSet(false, true)) {
+            return;
+        }
+        List<PendingAuthorization> batch = new ArrayList<>();
+        PendingAuthorization next;
+        while (batch.size() < maxBatchSize && (next = queue.pending.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            //Removed while still committing and only if nothing was enqueued meanwhile, so a new queue for the
+            //card can't start committing next to this one
+            queues.computeIfPresent(queue.creditCardId,
+                    (id, current) -> current == queue && queue.pending.isEmpty() ? null : current);
+            queue.committing.set(false);
+            if (!queue.pending.isEmpty()) {
+                drain(queue);
+            }
+            return;
+        }
+        batchSizes.record(batch.size());
+        commit(queue.creditCardId, batch)
+                .doFinally(signal -> {
+                    queue.committing.set(false);
+                    drain(queue);
+                })
+                .subscribe(
+                        approvedCount -> log.debug("Committed {} of {} authorizations for credit card {}",
+                                approvedCount, batch.size(), queue.creditCardId),
+                        error -> log.error("Error committing authorizations for credit card {}: {}",
+                                queue.creditCardId, error.getMessage()));
+    }
+
+    private Mono<Integer> commit(String creditCardId, List<PendingAuthorization> batch) {
+        BigDecimal total = batch.stream()
+                .map(pending -> pending.hold.getAmount())
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return transactionalOperator.transactional(creditCardRepository.reserveBalance(creditCardId, total)
+                        .flatMap(reserved -> reserved || batch.size() == 1
+                                ? Mono.just(reserved ? batch : List.<PendingAuthorization>of())
+                                : reserveFitting(creditCardId, batch))
+                        .flatMap(accepted -> accepted.isEmpty()
+                                ? Mono.just(accepted)
+                                : cardAuthorizationRepository.insert(accepted.stream()
+                                                .map(pending -> pending.hold)
+                                                .collect(Collectors.toList()))
+                                        .then(Mono.just(accepted))))
+                .map(accepted -> {
+                    batch.forEach(pending -> {
+                        if (accepted.contains(pending)) {
+                            approved.increment();
+                            pending.result.tryEmitValue(pending.hold);
+                        } else {
+                            declined.increment();
+                            pending.result.tryEmitError(new RuntimeException(DECLINED));
+                        }
+                    });
+                    return accepted.size();
+                })
+                .doOnError(error -> batch.forEach(pending -> pending.result.tryEmitError(error)));
+    }
+
+    /**
+     * The total did not fit: approves the holds that fit the current balance, in arrival order, with one
+     * conditional decrement. If the balance moved in between, falls back to one decrement per hold.
+     */
+    private Mono<List<PendingAuthorization>> reserveFitting(String creditCardId, List<PendingAuthorization> batch) {
+        return creditCardRepository.findById(creditCardId)
+                .filter(creditCard -> "ACTIVE".equals(creditCard.getStatus())
+                        && creditCard.getAvailableBalance() != null)
+                .map(CreditCard::getAvailableBalance)
+                .flatMap(balance -> {
+                    List<PendingAuthorization> fitting = new ArrayList<>();
+                    BigDecimal left = balance;
+                    for (PendingAuthorization pending : batch) {
+                        if (pending.hold.getAmount().compareTo(left) <= 0) {
+                            fitting.add(pending);
+                            left = left.subtract(pending.hold.getAmount());
+                        }
+                    }
+                    if (fitting.isEmpty()) {
+                        return Mono.just(fitting);
+                    }
+                    return creditCardRepository.reserveBalance(creditCardId, balance.subtract(left))
+                            .flatMap(reserved -> reserved
+                                    ? Mono.just(fitting)
+                                    : Flux.fromIterable(batch)
+                                            .filterWhen(pending -> creditCardRepository
+                                                    .reserveBalance(creditCardId, pending.hold.getAmount()))
+                                            .collectList());
+                })
+                .defaultIfEmpty(List.of());
+    }
+
+    private static final class CardQueue {
+        private final String creditCardId;
+        private final Queue<PendingAuthorization> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean committing = new AtomicBoolean();
+        CardQueue(String creditCardId) {
+            this.creditCardId = creditCardId;
+        }
+    }
+
+    private static final class PendingAuthorization {
+        private final CardAuthorization hold;
+        private final Sinks.One<CardAuthorization> result = Sinks.one();
+        PendingAuthorization(CardAuthorization hold) {
+            this.hold = hold;
+        }
+    }
+}
@@ -2,7 +2,12 @@ package com.bank.creditservice.service;
 
 import com.bank.creditservice.client.AccountClientService;
 import com.bank.creditservice.client.CustomerClientService;
+import com.bank.creditservice.dto.BatchItemResult;
+import com.bank.creditservice.dto.BulkStatusUpdateRequest;
+import com.bank.creditservice.dto.BulkUpdateSummary;
+import com.bank.creditservice.dto.CreditCardSummary;
 import com.bank.creditservice.event.CreditCardEventProducer;
+import com.bank.creditservice.exception.CustomerNotFoundException;
 import com.bank.creditservice.model.account.Account;
 import com.bank.creditservice.model.account.AccountType;
 import com.bank.creditservice.model.creditcard.CreditCard;
@@ -12,51 +17,90 @@ import com.bank.creditservice.model.customer.Customer;
 import com.bank.creditservice.model.customer.CustomerType;
 import com.bank.creditservice.repository.CreditCardRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class CreditCardService {
+    private static final int BULK_CHUNK_SIZE = 1000;
     private final CreditCardRepository creditCardRepository;
     private final CustomerCacheService customerCacheService;
     private final CustomerClientService customerClientService;
     private final CreditCardEventProducer creditCardEventProducer;
     private final AccountClientService accountClientService;
+    private final AccountCacheService accountCacheService;
     private final CustomerEligibilityService customerEligibilityService;
+    private final CustomerRequestCoalescer customerRequestCoalescer;
+    private final CustomerDebtStatusService customerDebtStatusService;
+    private final TransactionalOperator transactionalOperator;
+    @Value("${account-service.vip-pym.max-concurrency:4}")
+    private int vipPymMaxConcurrency = 4;
     public CreditCardService(CreditCardRepository creditCardRepository,
                              CustomerClientService customerClientService,
                              CustomerCacheService customerCacheService,
                              CreditCardEventProducer creditCardEventProducer,
                              AccountClientService accountClientService,
-                             CustomerEligibilityService customerEligibilityService) {
+                             CustomerEligibilityService customerEligibilityService,
+                             CustomerRequestCoalescer customerRequestCoalescer,
+                             CustomerDebtStatusService customerDebtStatusService,
+                             AccountCacheService accountCacheService,
+                             TransactionalOperator transactionalOperator) {
         this.creditCardRepository = creditCardRepository;
         this.customerCacheService = customerCacheService;
         this.customerClientService = customerClientService;
         this.creditCardEventProducer = creditCardEventProducer;
         this.accountClientService = accountClientService;
         this.customerEligibilityService = customerEligibilityService;
+        this.customerRequestCoalescer = customerRequestCoalescer;
+        this.customerDebtStatusService = customerDebtStatusService;
+        this.accountCacheService = accountCacheService;
+        this.transactionalOperator = transactionalOperator;
     }
     private Mono<Customer> validateCustomer(String customerId) {
         log.info("Validating customer with ID: {}", customerId);
-        return customerCacheService.getCustomer(customerId)
+        return customerRequestCoalescer.coalesce(customerId, () -> customerCacheService.getCustomer(customerId)
                 .doOnNext(customer -> log.info("Customer found in cache: {}", customer.getId()))
                 .switchIfEmpty(Mono.defer(() -> {
                     log.info("Customer not found in cache, fetching from service: {}", customerId);
                     return fetchCustomerFromService(customerId);
                 }))
+                .onErrorResume(CustomerNotFoundException.class, e -> {
+                    log.info("Customer {} is known not to exist, skipping customer service", customerId);
+                    return Mono.empty();
+                })
                 .doOnError(e -> log.error("Error in customer validation: {}", e.getMessage()))
                 .onErrorResume(ex -> {
                     log.error("Final error handling in validateCustomer: {}", ex.getMessage());
                     return fetchCustomerFromService(customerId);
-                });
+                }));
     }
     private Mono<Customer> fetchCustomerFromService(String customerId) {
         return customerClientService.getCustomerById(customerId)
@@ -68,6 +112,8 @@ public class CreditCardService {
                         return Mono.error(new RuntimeException("Error serializing customer", e));
                     }
                 })
+                .onErrorResume(CustomerNotFoundException.class, e -> customerCacheService.saveNotFound(customerId)
+                        .then(Mono.empty()))
                 .onErrorResume(e -> Mono.empty());
     }
     public Mono<CreditCard> createCreditCard(CreditCard creditCard) {
@@ -86,60 +132,15 @@ public class CreditCardService {
                                     return Mono.error(new RuntimeException("Customer type does not match " +
                                         "credit card type"));
                                 }
-                                return accountClientService.getAccountsByCustomer(validateCustomer.getId())
-                                        .flatMapMany(accounts -> {
-                                            if (validateCustomer.getCustomerType() == CustomerType.PERSONAL
-                                                    && !accounts.isEmpty()) {
-                                                boolean hasSavings = accounts.stream()
-                                                        .anyMatch(account -> AccountType.SAVINGS.equals(
-                                                            account.getAccountType()));
-                                                if (hasSavings) {
-                                                    String accountId = accounts.stream()
-                                                            .filter(account -> AccountType.SAVINGS.equals(
-                                                                account.getAccountType()))
-                                                            .findFirst()
-                                                            .map(Account::getId)
-                                                            .orElse(null);
-                                                    if (accountId != null) {
-                                                        return accountClientService.updateVipPymStatus(accountId,
-                                                            true, "VIP")
-                                                                .thenMany(Flux.defer(() -> customerClientService
-                                                                        .updateVipPymStatus(creditCard.getCustomerId(),
-                                                                            true)
-                                                                        .thenMany(Flux.empty())));
-                                                    }
-                                                }
-                                            } else if (validateCustomer.getCustomerType() == CustomerType.BUSINESS
-                                                    && !accounts.isEmpty()) {
-                                                List<Mono<Void>> updateMonos = accounts.stream()
-                                                        .filter(account -> AccountType.CHECKING
-                                                                .equals(account.getAccountType()))
-                                                        .map(account -> accountClientService
-                                                                .updateVipPymStatus(account.getId(),
-                                                                    true, "PYM").then())
-                                                        .collect(Collectors.toList());
-                                                return Flux.concat(updateMonos)
-                                                        .thenMany(Flux.defer(() -> customerClientService
-                                                                .updateVipPymStatus(creditCard.getCustomerId(),
-                                                                        true).thenMany(Flux.empty())));
-                                            }
-                                            return Flux.empty();
-                                        })
+                                return grantVipPymStatus(validateCustomer)
                                         .then(Mono.defer(() -> {
-                                            creditCard.setCreatedAt(LocalDateTime.now());
-                                            creditCard.setAvailableBalance(creditCard.getCreditLimit());
-                                            creditCard.setModifiedAt(null);
-                                            creditCard.setStatus("ACTIVE");
-                                            creditCard.setPaymentStatus(PaymentStatus.PAID);
-                                            LocalDateTime nextMonth = LocalDateTime.now().plusMonths(1);
-                                            creditCard.setCutoffDate(nextMonth);
-                                            creditCard.setPaymentDueDate(nextMonth.plusDays(20));
-                                            creditCard.setMinimumPayment(BigDecimal.ZERO);
-                                            return creditCardRepository.save(creditCard);
+                                            initialize(creditCard);
+                                            return saveWithEvent(creditCard,
+                                                    creditCardEventProducer::publishCreditCardCreated);
                                         }));
                             });
                 })
-                .doOnSuccess(creditCardEventProducer::publishCreditCardCreated)
+                .doOnNext(savedCard -> customerDebtStatusService.scheduleRefresh(savedCard.getCustomerId()))
                 .doOnError(error -> {
                     if (error.getMessage() != null && error.getMessage().contains("overdue debt")) {
                         log.warn("Credit card creation rejected for customer {} due to overdue debt",
@@ -148,8 +149,228 @@ public class CreditCardService {
                 });
     }
 
-    public Flux<CreditCard> getAllCreditCards() {
-        return creditCardRepository.findAll();
+    /**
+     * Creates many credit cards at once. Overdue debt and the customers are looked up once for the whole batch,
+     * and the VIP/PYM update runs once per customer rather than once per card. The accepted cards and their
+     * events are then written with one bulk insert each, in one transaction.
+     * Returns one result per requested card, in request order.
+     */
+    public Mono<List<BatchItemResult<CreditCard>>> createCreditCards(List<CreditCard> creditCards) {
+        Set<String> customerIds = creditCards.stream()
+                .map(CreditCard::getCustomerId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return Mono.zip(customerEligibilityService.customersWithOverdueDebt(customerIds),
+                        customerCacheService.getCustomers(customerIds))
+                .flatMap(lookups -> {
+                    List<BatchItemResult<CreditCard>> results = new ArrayList<>(creditCards.size());
+                    Map<String, Customer> eligibleCustomers = new LinkedHashMap<>();
+                    for (int i = 0; i < creditCards.size(); i++) {
+                        CreditCard creditCard = creditCards.get(i);
+                        Customer customer = creditCard.getCustomerId() != null
+                                ? lookups.getT2().get(creditCard.getCustomerId())
+                                : null;
+                        String rejection = rejectionReason(creditCard, customer, lookups.getT1());
+                        if (rejection != null) {
+                            results.add(BatchItemResult.rejected(i, rejection));
+                        } else {
+                            results.add(null);
+                            eligibleCustomers.put(creditCard.getCustomerId(), customer);
+                        }
+                    }
+                    Map<String, String> vipPymFailures = new ConcurrentHashMap<>();
+                    return Flux.fromIterable(eligibleCustomers.entrySet())
+                            .flatMap(entry -> grantVipPymStatus(entry.getValue())
+                                    .onErrorResume(e -> {
+                                        log.error("Error updating VIP/PYM status for customer {}: {}",
+                                                entry.getKey(), e.getMessage());
+                                        vipPymFailures.put(entry.getKey(), String.valueOf(e.getMessage()));
+                                        return Mono.empty();
+                                    }), vipPymMaxConcurrency)
+                            .then(Mono.defer(() -> saveCreditCards(creditCards, results, vipPymFailures)));
+                });
+    }
+    private Mono<List<BatchItemResult<CreditCard>>> saveCreditCards(List<CreditCard> creditCards,
+                                                                    List<BatchItemResult<CreditCard>> results,
+                                                                    Map<String, String> vipPymFailures) {
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            CreditCard creditCard = creditCards.get(i);
+            String vipPymFailure = vipPymFailures.get(creditCard.getCustomerId());
+            if (vipPymFailure != null) {
+                results.set(i, BatchItemResult.rejected(i, "Error updating VIP/PYM status: " + vipPymFailure));
+            } else {
+                initialize(creditCard);
+                accepted.add(i);
+            }
+        }
+        log.info("Credit card batch of {}: {} accepted, {} rejected before saving",
+                creditCards.size(), accepted.size(), creditCards.size() - accepted.size());
+        if (accepted.isEmpty()) {
+            return Mono.just(results);
+        }
+        List<CreditCard> toInsert = accepted.stream().map(creditCards::get).collect(Collectors.toList());
+        return transactionalOperator.transactional(creditCardRepository.insert(toInsert)
+                        .collectList()
+                        .flatMap(saved -> creditCardEventProducer.publishCreditCardsCreated(saved)
+                                .thenReturn(saved)))
+                .map(saved -> {
+                    for (int i = 0; i < saved.size(); i++) {
+                        results.set(accepted.get(i), BatchItemResult.created(accepted.get(i), saved.get(i)));
+                    }
+                    saved.stream()
+                            .map(CreditCard::getCustomerId)
+                            .distinct()
+                            .forEach(customerDebtStatusService::scheduleRefresh);
+                    return results;
+                })
+                .onErrorResume(e -> {
+                    log.error("Error saving credit card batch of {}: {}", toInsert.size(), e.getMessage());
+                    accepted.forEach(index -> results.set(index, BatchItemResult.rejected(index,
+                            "Error saving credit card: " + e.getMessage())));
+                    return Mono.just(results);
+                });
+    }
+    private String rejectionReason(CreditCard creditCard, Customer customer, Set<String> customersWithOverdueDebt) {
+        if (customer == null) {
+            return "Customer not found";
+        }
+        if (customersWithOverdueDebt.contains(creditCard.getCustomerId())) {
+            return "Customer has overdue debt and cannot create a new credit card";
+        }
+        if ((customer.getCustomerType() == CustomerType.PERSONAL
+                && CreditCardType.BUSINESS_CREDIT_CARD == creditCard.getCardType())
+                || (customer.getCustomerType() == CustomerType.BUSINESS
+                        && CreditCardType.PERSONAL_CREDIT_CARD == creditCard.getCardType())) {
+            return "Customer type does not match credit card type";
+        }
+        return null;
+    }
+
+    /**
+     * A new card makes a personal customer VIP on their savings account and a business customer PYM on their
+     * checking accounts; the customer is flagged afterwards.
+     */
+    private Mono<Void> grantVipPymStatus(Customer customer) {
+        return getAccountsByCustomer(customer.getId())
+                .flatMap(accounts -> {
+                    if (customer.getCustomerType() == CustomerType.PERSONAL && !accounts.isEmpty()) {
+                        String accountId = accounts.stream()
+                                .filter(account -> AccountType.SAVINGS.equals(account.getAccountType()))
+                                .findFirst()
+                                .map(Account::getId)
+                                .orElse(null);
+                        if (accountId != null) {
+                            return accountClientService.updateVipPymStatus(accountId, true, "VIP")
+                                    .then(accountCacheService.evictAccounts(customer.getId()))
+                                    .then(Mono.defer(() -> customerClientService
+                                            .updateVipPymStatus(customer.getId(), true)))
+                                    .then();
+                        }
+                    } else if (customer.getCustomerType() == CustomerType.BUSINESS && !accounts.isEmpty()) {
+                        return updateAccountsVipPymStatus(customer.getId(), accounts, AccountType.CHECKING, true,
+                                "PYM")
+                                .then(Mono.defer(() -> customerClientService
+                                        .updateVipPymStatus(customer.getId(), true)))
+                                .then();
+                    }
+                    return Mono.<Void>empty();
+                });
+    }
+    private void initialize(CreditCard creditCard) {
+        creditCard.setCreatedAt(LocalDateTime.now());
+        creditCard.setAvailableBalance(creditCard.getCreditLimit());
+        creditCard.setModifiedAt(null);
+        creditCard.setStatus("ACTIVE");
+        creditCard.setPaymentStatus(PaymentStatus.PAID);
+        LocalDateTime nextMonth = LocalDateTime.now().plusMonths(1);
+        creditCard.setCutoffDate(nextMonth);
+        creditCard.setPaymentDueDate(nextMonth.plusDays(20));
+        creditCard.setMinimumPayment(BigDecimal.ZERO);
+    }
+
+    private Mono<List<Account>> getAccountsByCustomer(String customerId) {
+        return accountCacheService.getAccounts(customerId)
+                .switchIfEmpty(Mono.defer(() -> accountClientService.getAccountsByCustomer(customerId)
+                        .flatMap(accounts -> accountCacheService.saveAccounts(customerId, accounts)
+                                .thenReturn(accounts))));
+    }
+
+    private Mono<Void> updateAccountsVipPymStatus(String customerId, List<Account> accounts, AccountType accountType,
+                                                  boolean isVipPym, String type) {
+        List<String> accountIds = accounts.stream()
+                .filter(account -> accountType.equals(account.getAccountType()))
+                .map(Account::getId)
+                .collect(Collectors.toList());
+        Mono<Void> update = accountIds.size() < 2
+                ? fanOutVipPymStatus(accountIds, isVipPym, type)
+                : accountClientService.updateVipPymStatusBatch(accountIds, isVipPym, type)
+                        .flatMap(updated -> fanOutVipPymStatus(notUpdated(accountIds, updated, type),
+                                isVipPym, type))
+                        .switchIfEmpty(Mono.defer(() -> fanOutVipPymStatus(accountIds, isVipPym, type)));
+        return update
+                .then(accountCacheService.evictAccounts(customerId))
+                .onErrorResume(error -> accountCacheService.evictAccounts(customerId).then(Mono.error(error)));
+    }
+
+    /**
+     * The accounts of a batch request the account service did not report back as updated, so they get
+     * individual updates instead of silently keeping their old flag.
+     */
+    private static List<String> notUpdated(List<String> accountIds, List<Account> updated, String type) {
+        Set<String> updatedIds = updated.stream().map(Account::getId).collect(Collectors.toSet());
+        List<String> missing = accountIds.stream()
+                .filter(accountId -> !updatedIds.contains(accountId))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            log.warn("Batch {} update skipped {} of {} account(s), updating them one by one", type, missing.size(),
+                    accountIds.size());
+        }
+        return missing;
+    }
+
+    private Mono<Void> fanOutVipPymStatus(List<String> accountIds, boolean isVipPym, String type) {
+        return Flux.fromIterable(accountIds)
+                .flatMapDelayError(accountId -> accountClientService.updateVipPymStatus(accountId, isVipPym, type)
+                        .onErrorMap(e -> new RuntimeException("Account " + accountId + ": " + e.getMessage(), e)),
+                        vipPymMaxConcurrency, 1)
+                .then()
+                .onErrorMap(error -> {
+                    List<Throwable> failures = Exceptions.unwrapMultiple(error);
+                    RuntimeException aggregated = new RuntimeException(String.format(
+                            "Failed to update %s status for %d account(s): %s", type, failures.size(),
+                            failures.stream().map(Throwable::getMessage).collect(Collectors.joining("; "))));
+                    failures.forEach(aggregated::addSuppressed);
+                    return aggregated;
+                });
+    }
+
+    private Mono<CreditCard> saveWithEvent(CreditCard creditCard, Function<CreditCard, Mono<Void>> event) {
+        return transactionalOperator.transactional(creditCardRepository.save(creditCard)
+                .flatMap(savedCard -> event.apply(savedCard).thenReturn(savedCard)));
+    }
+
+    /**
+     * Keyset page ordered by id: the cards after the given id (from the start when null), at most limit of them.
+     */
+    public Flux<CreditCard> getCreditCards(String after, int limit) {
+        PageRequest page = PageRequest.of(0, limit, Sort.by("id"));
+        return after == null
+                ? creditCardRepository.findAllBy(page)
+                : creditCardRepository.findByIdGreaterThan(after, page);
+    }
+
+    /**
+     * Every card after the given id, ordered by id and read from a cursor as the subscriber requests them.
+     */
+    public Flux<CreditCard> streamCreditCards(String after) {
+        Sort byId = Sort.by("id");
+        return after == null
+                ? creditCardRepository.findAllBy(byId)
+                : creditCardRepository.findByIdGreaterThan(after, byId);
     }
     public Mono<CreditCard> getCreditCardById(String creditCardId) {
         return creditCardRepository.findById(creditCardId)
@@ -159,6 +380,99 @@ public class CreditCardService {
         return creditCardRepository.findByCustomerId(customerId)
                 .switchIfEmpty(Mono.error(new RuntimeException("This customer doesnt have credit cards")));
     }
+
+    /**
+     * The customer's cards with only the requested summary fields; all of them when none are requested.
+     */
+    public Flux<CreditCardSummary> getCreditCardSummariesByCustomerId(String customerId, Set<String> fields) {
+        Set<String> projection = fields.isEmpty() ? CreditCardSummary.FIELDS : fields;
+        Optional<String> unknown = projection.stream()
+                .filter(field -> !CreditCardSummary.FIELDS.contains(field))
+                .findFirst();
+        if (unknown.isPresent()) {
+            return Flux.error(new RuntimeException("Unknown credit card field: " + unknown.get()));
+        }
+        return creditCardRepository.findSummariesByCustomerId(customerId, projection)
+                .switchIfEmpty(Mono.error(new RuntimeException("This customer doesnt have credit cards")));
+    }
+    /**
+     * Sets the status and/or payment status of every credit card the request selects. Cards are processed in id
+     * order, BULK_CHUNK_SIZE at a time; each chunk is one updateMany plus one insert of its STATUS_CHANGED events,
+     * in one transaction.
+     */
+    public Mono<BulkUpdateSummary> updateCreditCardStatuses(BulkStatusUpdateRequest request) {
+        if (request.getStatus() == null && request.getPaymentStatus() == null) {
+            return Mono.error(new RuntimeException("status or paymentStatus is required"));
+        }
+        if ((request.getIds() == null || request.getIds().isEmpty()) && request.getCustomerId() == null
+                && request.getCurrentStatus() == null && request.getCurrentPaymentStatus() == null) {
+            return Mono.error(new RuntimeException("ids or at least one filter field is required"));
+        }
+        List<Criteria> conditions = new ArrayList<>();
+        if (request.getIds() != null && !request.getIds().isEmpty()) {
+            conditions.add(Criteria.where("id").in(request.getIds()));
+        }
+        if (request.getCustomerId() != null) {
+            conditions.add(Criteria.where("customerId").is(request.getCustomerId()));
+        }
+        if (request.getCurrentStatus() != null) {
+            conditions.add(Criteria.where("status").is(request.getCurrentStatus()));
+        }
+        if (request.getCurrentPaymentStatus() != null) {
+            conditions.add(Criteria.where("paymentStatus").is(request.getCurrentPaymentStatus()));
+        }
+        List<Criteria> pending = new ArrayList<>();
+        Update update = new Update().set("modifiedAt", LocalDateTime.now());
+        if (request.getStatus() != null) {
+            pending.add(Criteria.where("status").ne(request.getStatus()));
+            update.set("status", request.getStatus());
+        }
+        if (request.getPaymentStatus() != null) {
+            pending.add(Criteria.where("paymentStatus").ne(request.getPaymentStatus()));
+            update.set("paymentStatus", request.getPaymentStatus());
+        }
+        conditions.add(new Criteria().orOperator(pending.toArray(new Criteria[0])));
+        Criteria criteria = new Criteria().andOperator(conditions.toArray(new Criteria[0]));
+        UnaryOperator<CreditCard> applyStatus = creditCard -> creditCard.toBuilder()
+                .status(request.getStatus() != null ? request.getStatus() : creditCard.getStatus())
+                .paymentStatus(request.getPaymentStatus() != null
+                        ? request.getPaymentStatus()
+                        : creditCard.getPaymentStatus())
+                .build();
+        return updateStatusChunk(criteria, update, applyStatus, null)
+                .expand(chunk -> chunk.getT1().size() < BULK_CHUNK_SIZE
+                        ? Mono.empty()
+                        : updateStatusChunk(criteria, update, applyStatus,
+                                chunk.getT1().get(chunk.getT1().size() - 1).getId()))
+                .map(chunk -> new BulkUpdateSummary(chunk.getT1().size(), chunk.getT2()))
+                .reduce(new BulkUpdateSummary(), BulkUpdateSummary::plus)
+                .doOnNext(summary -> log.info("Bulk credit card status update matched {} and modified {} cards",
+                        summary.getMatched(), summary.getModified()));
+    }
+    private Mono<Tuple2<List<CreditCard>, Long>> updateStatusChunk(Criteria criteria, Update update,
+                                                                  UnaryOperator<CreditCard> applyStatus,
+                                                                  String afterId) {
+        return transactionalOperator.transactional(creditCardRepository
+                        .findStatusesMatching(criteria, afterId, BULK_CHUNK_SIZE)
+                        .collectList()
+                        .flatMap(previous -> {
+                            if (previous.isEmpty()) {
+                                return Mono.just(Tuples.of(previous, 0L));
+                            }
+                            List<String> ids = previous.stream().map(CreditCard::getId).collect(Collectors.toList());
+                            List<CreditCard> updated = previous.stream()
+                                    .map(applyStatus)
+                                    .collect(Collectors.toList());
+                            return creditCardRepository.updateAllMatching(ids, criteria, update)
+                                    .flatMap(result -> creditCardEventProducer
+                                            .publishCreditCardsUpdated(previous, updated)
+                                            .thenReturn(Tuples.of(previous, result.getModifiedCount())));
+                        }))
+                .doOnNext(chunk -> chunk.getT1().stream()
+                        .map(CreditCard::getCustomerId)
+                        .distinct()
+                        .forEach(customerDebtStatusService::scheduleRefresh));
+    }
     public Mono<Void> deleteCreditCard(String creditCardId) {
         AtomicReference<String> customerIdRef = new AtomicReference<>();
         AtomicReference<CustomerType> customerTypeRef = new AtomicReference<>();
@@ -171,6 +485,8 @@ public class CreditCardService {
                             .flatMap(validateCustomer -> {
                                 customerTypeRef.set(validateCustomer.getCustomerType());
                                 return creditCardRepository.deleteById(creditCardId)
+                                        .doOnSuccess(deleted -> customerDebtStatusService
+                                                .scheduleRefresh(existingCredit.getCustomerId()))
                                         .thenMany(creditCardRepository.findByCustomerId(existingCredit.getCustomerId()))
                                         .collectList();
                             });
@@ -183,29 +499,15 @@ public class CreditCardService {
                         Mono<Customer> updateCustomerVipPymStatus = customerClientService
                             .updateVipPymStatus(customerId, false);
                         if (customerType == CustomerType.PERSONAL) {
-                            return accountClientService.getAccountsByCustomer(customerId)
-                                    .flatMapMany(accounts -> {
-                                        List<Mono<Void>> updateMonos = accounts.stream()
-                                                .filter(account -> AccountType.SAVINGS
-                                                    .equals(account.getAccountType()))
-                                                .map(account -> accountClientService
-                                                    .updateVipPymStatus(account.getId(), false, "VIP").then())
-                                                .collect(Collectors.toList());
-                                        return Flux.concat(updateMonos);
-                                    })
+                            return getAccountsByCustomer(customerId)
+                                    .flatMap(accounts -> updateAccountsVipPymStatus(customerId, accounts,
+                                            AccountType.SAVINGS, false, "VIP"))
                                     .then(updateCustomerVipPymStatus)
                                     .then(Mono.empty());
                         } else if (customerType == CustomerType.BUSINESS) {
-                            return accountClientService.getAccountsByCustomer(customerId)
-                                    .flatMapMany(accounts -> {
-                                        List<Mono<Void>> updateMonos = accounts.stream()
-                                            .filter(account -> AccountType.CHECKING
-                                                .equals(account.getAccountType()))
-                                            .map(account -> accountClientService
-                                                .updateVipPymStatus(account.getId(), false, "PYM").then())
-                                            .collect(Collectors.toList());
-                                        return Flux.concat(updateMonos);
-                                    })
+                            return getAccountsByCustomer(customerId)
+                                    .flatMap(accounts -> updateAccountsVipPymStatus(customerId, accounts,
+                                            AccountType.CHECKING, false, "PYM"))
                                     .then(updateCustomerVipPymStatus)
                                     .then(Mono.empty());
                         }
@@ -216,15 +518,66 @@ public class CreditCardService {
                 })
                 .then();
     }
+    /**
+     * Sets the non-null limit and status of updatedCreditCard with one findAndModify, leaving the other fields as
+     * stored. The available balance is not taken from the request: it only moves with charges, payments and
+     * authorization holds, and by as much as the limit changes, so amounts in use stay in use. When
+     * updatedCreditCard carries a version the update only applies if the card has not been written since;
+     * otherwise it fails with an OptimisticLockingFailureException.
+     */
     public Mono<CreditCard> updateCreditCard(String creditCardId, CreditCard updatedCreditCard) {
-        return creditCardRepository.findById(creditCardId)
-                .flatMap(existingcredit -> {
-                    existingcredit.setCreditLimit(updatedCreditCard.getCreditLimit());
-                    existingcredit.setAvailableBalance(updatedCreditCard.getAvailableBalance());
-                    existingcredit.setStatus(updatedCreditCard.getStatus());
-                    existingcredit.setModifiedAt(LocalDateTime.now());
-                    return creditCardRepository.save(existingcredit);
-                })
-                .doOnSuccess(creditCardEventProducer::publishCreditCardUpdated);
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update().set("modifiedAt", now);
+        if (updatedCreditCard.getStatus() != null) {
+            update.set("status", updatedCreditCard.getStatus());
+        }
+        if (updatedCreditCard.getAvailableBalance() != null) {
+            log.debug("Ignoring availableBalance in the update of credit card {}", creditCardId);
+        }
+        BigDecimal creditLimit = updatedCreditCard.getCreditLimit();
+        Long expectedVersion = updatedCreditCard.getVersion();
+        Mono<CreditCard> updated = creditLimit == null
+                ? creditCardRepository.updateFields(creditCardId, expectedVersion, update)
+                : creditCardRepository.updateFieldsAndLimit(creditCardId, expectedVersion, creditLimit, update);
+        return transactionalOperator.transactional(updated
+                        .switchIfEmpty(Mono.defer(() -> updateMissed(creditCardId, expectedVersion)))
+                        .flatMap(previous -> {
+                            CreditCard savedCard = previous.toBuilder()
+                                    .creditLimit(creditLimit != null ? creditLimit : previous.getCreditLimit())
+                                    .availableBalance(creditLimit != null
+                                            ? balanceAfterLimitChange(previous, creditLimit)
+                                            : previous.getAvailableBalance())
+                                    .status(updatedCreditCard.getStatus() != null
+                                            ? updatedCreditCard.getStatus()
+                                            : previous.getStatus())
+                                    .modifiedAt(now)
+                                    .version(previous.getVersion() != null ? previous.getVersion() + 1 : 1L)
+                                    .build();
+                            return creditCardEventProducer.publishCreditCardUpdated(previous, savedCard)
+                                    .thenReturn(savedCard);
+                        }))
+                .doOnNext(savedCard -> customerDebtStatusService.scheduleRefresh(savedCard.getCustomerId()));
+    }
+    /**
+     * Mirrors the balance computed by updateFieldsAndLimit.
+     */
+    private static BigDecimal balanceAfterLimitChange(CreditCard previous, BigDecimal creditLimit) {
+        if (previous.getAvailableBalance() == null) {
+            return null;
+        }
+        BigDecimal previousLimit = previous.getCreditLimit() != null ? previous.getCreditLimit() : BigDecimal.ZERO;
+        return previous.getAvailableBalance().add(creditLimit.subtract(previousLimit));
+    }
+    /**
+     * Not found stays empty; a card that exists but no longer has the expected version is a conflict.
+     */
+    private Mono<CreditCard> updateMissed(String creditCardId, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.empty();
+        }
+        return creditCardRepository.existsById(creditCardId)
+                .filter(exists -> exists)
+                .flatMap(exists -> Mono.error(new OptimisticLockingFailureException("Credit card " + creditCardId
+                        + " was modified after version " + expectedVersion)));
     }
-}
\ No newline at end of file
+}
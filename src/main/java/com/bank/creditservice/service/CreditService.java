@@ -1,7 +1,12 @@
 package com.bank.creditservice.service;
 
 import com.bank.creditservice.client.CustomerClientService;
+import com.bank.creditservice.dto.BatchItemResult;
+import com.bank.creditservice.dto.BulkStatusUpdateRequest;
+import com.bank.creditservice.dto.BulkUpdateSummary;
+import com.bank.creditservice.dto.CreditSummary;
 import com.bank.creditservice.event.CreditEventProducer;
+import com.bank.creditservice.exception.CustomerNotFoundException;
 import com.bank.creditservice.model.credit.CreditStatus;
 import com.bank.creditservice.model.creditcard.PaymentStatus;
 import com.bank.creditservice.model.customer.Customer;
@@ -10,46 +15,78 @@ import com.bank.creditservice.repository.CreditRepository;
 import com.bank.creditservice.model.credit.Credit;
 import com.bank.creditservice.model.credit.CreditType;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class CreditService {
+    private static final int BULK_CHUNK_SIZE = 1000;
     private final CreditRepository creditRepository;
     private final CustomerCacheService customerCacheService;
     private final CustomerClientService customerClientService;
     private final CreditEventProducer creditEventProducer;
     private final CustomerEligibilityService customerEligibilityService;
+    private final CustomerRequestCoalescer customerRequestCoalescer;
+    private final CustomerDebtStatusService customerDebtStatusService;
+    private final TransactionalOperator transactionalOperator;
     public CreditService(CreditRepository creditRepository,
                          CustomerClientService customerClientService,
                          CustomerCacheService customerCacheService,
                          CreditEventProducer creditEventProducer,
-                         CustomerEligibilityService customerEligibilityService) {
+                         CustomerEligibilityService customerEligibilityService,
+                         CustomerRequestCoalescer customerRequestCoalescer,
+                         CustomerDebtStatusService customerDebtStatusService,
+                         TransactionalOperator transactionalOperator) {
         this.creditRepository = creditRepository;
         this.customerCacheService = customerCacheService;
         this.customerClientService = customerClientService;
         this.creditEventProducer = creditEventProducer;
         this.customerEligibilityService = customerEligibilityService;
+        this.customerRequestCoalescer = customerRequestCoalescer;
+        this.customerDebtStatusService = customerDebtStatusService;
+        this.transactionalOperator = transactionalOperator;
     }
 
     private Mono<Customer> validateCustomer(String customerId) {
         log.info("Validating customer with ID: {}", customerId);
-        return customerCacheService.getCustomer(customerId)
+        return customerRequestCoalescer.coalesce(customerId, () -> customerCacheService.getCustomer(customerId)
                 .doOnNext(customer -> log.info("Customer found in cache: {}", customer.getId()))
                 .switchIfEmpty(Mono.defer(() -> {
                     log.info("Customer not found in cache, fetching from service: {}", customerId);
                     return fetchCustomerFromService(customerId);
                 }))
+                .onErrorResume(CustomerNotFoundException.class, e -> {
+                    log.info("Customer {} is known not to exist, skipping customer service", customerId);
+                    return Mono.empty();
+                })
                 .doOnError(e -> log.error("Error in customer validation: {}", e.getMessage()))
                 .onErrorResume(ex -> {
                     log.error("Final error handling in validateCustomer: {}", ex.getMessage());
                     return fetchCustomerFromService(customerId);
-                });
+                }));
     }
     private Mono<Customer> fetchCustomerFromService(String customerId) {
         return customerClientService.getCustomerById(customerId)
@@ -61,6 +98,8 @@ public class CreditService {
                         return Mono.error(new RuntimeException("Error serializing customer", e));
                     }
                 })
+                .onErrorResume(CustomerNotFoundException.class, e -> customerCacheService.saveNotFound(customerId)
+                        .then(Mono.empty()))
                 .onErrorResume(e -> Mono.empty());
     }
     public Mono<Credit> createCredit(Credit credit) {
@@ -86,70 +125,300 @@ public class CreditService {
                                                     return Mono.error(new RuntimeException("Personal customer " +
                                                         "can only have one active credit"));
                                                 }
-                                                credit.setRemainingBalance(credit.getAmount());
-                                                credit.setCreatedAt(LocalDateTime.now());
-                                                credit.setModifiedAt(LocalDateTime.now());
-                                                credit.setCreditStatus(CreditStatus.ACTIVE);
-                                                credit.setPaymentStatus(PaymentStatus.PENDING);
-                                                BigDecimal minimumPayment = credit.getAmount()
-                                                    .multiply(new BigDecimal("0.10"));
-                                                credit.setMinimumPayment(minimumPayment);
-                                                credit.setNextPaymentDate(LocalDateTime.now().plusDays(30));
-                                                return creditRepository.save(credit);
+                                                initialize(credit);
+                                                return saveWithEvent(credit, creditEventProducer::publishCreditCreated);
                                             });
                                 }
-                                credit.setRemainingBalance(credit.getAmount());
-                                credit.setCreatedAt(LocalDateTime.now());
-                                credit.setModifiedAt(LocalDateTime.now());
-                                credit.setCreditStatus(CreditStatus.ACTIVE);
-                                credit.setPaymentStatus(PaymentStatus.PENDING);
-                                BigDecimal minimumPayment = credit.getAmount().multiply(new BigDecimal("0.10"));
-                                credit.setMinimumPayment(minimumPayment);
-                                credit.setNextPaymentDate(LocalDateTime.now().plusDays(30));
-                                return creditRepository.save(credit);
+                                initialize(credit);
+                                return saveWithEvent(credit, creditEventProducer::publishCreditCreated);
+                            })
+                            .doOnNext(savedCredit -> customerDebtStatusService
+                                    .scheduleRefresh(savedCredit.getCustomerId()));
+                });
+    }
+    /**
+     * Creates many credits at once. Overdue debt, existing credits and the customers are looked up once for the
+     * whole batch, and the accepted credits and their events are written with one bulk insert each, in one
+     * transaction. Returns one result per requested credit, in request order.
+     */
+    public Mono<List<BatchItemResult<Credit>>> createCredits(List<Credit> credits) {
+        Set<String> customerIds = credits.stream()
+                .map(Credit::getCustomerId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return Mono.zip(customerEligibilityService.customersWithOverdueDebt(customerIds),
+                        customerCacheService.getCustomers(customerIds),
+                        creditRepository.findCustomerIdsWithCredits(customerIds).collect(Collectors.toSet()))
+                .flatMap(lookups -> {
+                    Set<String> customersWithCredit = new HashSet<>(lookups.getT3());
+                    List<BatchItemResult<Credit>> results = new ArrayList<>(credits.size());
+                    List<Integer> accepted = new ArrayList<>();
+                    for (int i = 0; i < credits.size(); i++) {
+                        Credit credit = credits.get(i);
+                        Customer customer = credit.getCustomerId() != null
+                                ? lookups.getT2().get(credit.getCustomerId())
+                                : null;
+                        String rejection = rejectionReason(credit, customer, lookups.getT1(), customersWithCredit);
+                        if (rejection != null) {
+                            results.add(BatchItemResult.rejected(i, rejection));
+                        } else {
+                            initialize(credit);
+                            results.add(null);
+                            accepted.add(i);
+                        }
+                    }
+                    log.info("Credit batch of {}: {} accepted, {} rejected before saving",
+                            credits.size(), accepted.size(), credits.size() - accepted.size());
+                    if (accepted.isEmpty()) {
+                        return Mono.just(results);
+                    }
+                    List<Credit> toInsert = accepted.stream().map(credits::get).collect(Collectors.toList());
+                    return transactionalOperator.transactional(creditRepository.insert(toInsert)
+                                    .collectList()
+                                    .flatMap(saved -> creditEventProducer.publishCreditsCreated(saved)
+                                            .thenReturn(saved)))
+                            .map(saved -> {
+                                for (int i = 0; i < saved.size(); i++) {
+                                    results.set(accepted.get(i), BatchItemResult.created(accepted.get(i),
+                                            saved.get(i)));
+                                }
+                                saved.stream()
+                                        .map(Credit::getCustomerId)
+                                        .distinct()
+                                        .forEach(customerDebtStatusService::scheduleRefresh);
+                                return results;
                             })
-                            .doOnSuccess(creditEventProducer::publishCreditCreated);
+                            .onErrorResume(e -> {
+                                log.error("Error saving credit batch of {}: {}", toInsert.size(), e.getMessage());
+                                accepted.forEach(index -> results.set(index, BatchItemResult.rejected(index,
+                                        "Error saving credit: " + e.getMessage())));
+                                return Mono.just(results);
+                            });
                 });
     }
-    public Flux<Credit> getAllCredits() {
-        return creditRepository.findAll();
+    private String rejectionReason(Credit credit, Customer customer, Set<String> customersWithOverdueDebt,
+                                   Set<String> customersWithCredit) {
+        if (customer == null) {
+            return "Customer not found";
+        }
+        if (credit.getAmount() == null) {
+            return "Credit amount is required";
+        }
+        if (customersWithOverdueDebt.contains(credit.getCustomerId())) {
+            return "Customer has overdue debt and cannot create a new credit";
+        }
+        if ((customer.getCustomerType() == CustomerType.PERSONAL && credit.getCreditType() == CreditType.BUSINESS)
+                || (customer.getCustomerType() == CustomerType.BUSINESS
+                        && credit.getCreditType() == CreditType.PERSONAL)) {
+            return "Customer type does not match credit type";
+        }
+        if (customer.getCustomerType() == CustomerType.PERSONAL && !customersWithCredit.add(credit.getCustomerId())) {
+            return "Personal customer can only have one active credit";
+        }
+        return null;
+    }
+    private void initialize(Credit credit) {
+        credit.setRemainingBalance(credit.getAmount());
+        credit.setCreatedAt(LocalDateTime.now());
+        credit.setModifiedAt(LocalDateTime.now());
+        credit.setCreditStatus(CreditStatus.ACTIVE);
+        credit.setPaymentStatus(PaymentStatus.PENDING);
+        BigDecimal minimumPayment = credit.getAmount().multiply(new BigDecimal("0.10"));
+        credit.setMinimumPayment(minimumPayment);
+        credit.setNextPaymentDate(LocalDateTime.now().plusDays(30));
+    }
+    private Mono<Credit> saveWithEvent(Credit credit, Function<Credit, Mono<Void>> event) {
+        return transactionalOperator.transactional(creditRepository.save(credit)
+                .flatMap(savedCredit -> event.apply(savedCredit).thenReturn(savedCredit)));
+    }
+
+    /**
+     * Keyset page ordered by id: the credits after the given id (from the start when null), at most limit of them.
+     */
+    public Flux<Credit> getCredits(String after, int limit) {
+        PageRequest page = PageRequest.of(0, limit, Sort.by("id"));
+        return after == null ? creditRepository.findAllBy(page) : creditRepository.findByIdGreaterThan(after, page);
+    }
+
+    /**
+     * Every credit after the given id, ordered by id and read from a cursor as the subscriber requests them.
+     */
+    public Flux<Credit> streamCredits(String after) {
+        Sort byId = Sort.by("id");
+        return after == null ? creditRepository.findAllBy(byId) : creditRepository.findByIdGreaterThan(after, byId);
     }
     public Flux<Credit> getCreditsByCustomerId(String customerId) {
         return creditRepository.findByCustomerId(customerId)
                 .switchIfEmpty(Mono.error(new RuntimeException("This customer doesnt have credits")));
     }
+
+    /**
+     * The customer's credits with only the requested summary fields; all of them when none are requested.
+     */
+    public Flux<CreditSummary> getCreditSummariesByCustomerId(String customerId, Set<String> fields) {
+        Set<String> projection = fields.isEmpty() ? CreditSummary.FIELDS : fields;
+        Optional<String> unknown = projection.stream()
+                .filter(field -> !CreditSummary.FIELDS.contains(field))
+                .findFirst();
+        if (unknown.isPresent()) {
+            return Flux.error(new RuntimeException("Unknown credit field: " + unknown.get()));
+        }
+        return creditRepository.findSummariesByCustomerId(customerId, projection)
+                .switchIfEmpty(Mono.error(new RuntimeException("This customer doesnt have credits")));
+    }
     public Mono<Credit> getCreditById(String creditId) {
         return creditRepository.findById(creditId)
                 .switchIfEmpty(Mono.error(new RuntimeException("Credit not found")));
     }
+    /**
+     * Sets the non-null amount, interest rate, balance, status and payment fields of updatedCredit with one
+     * findAndModify, leaving the other fields as stored. When updatedCredit carries a version the update only
+     * applies if the credit has not been written since; otherwise it fails with an OptimisticLockingFailureException.
+     */
     public Mono<Credit> updateCredit(String creditId, Credit updatedCredit) {
-        return creditRepository.findById(creditId)
-                .switchIfEmpty(Mono.error(new RuntimeException("Credit not found")))
-                .flatMap(existingCredit -> {
-                    existingCredit.setAmount(updatedCredit.getAmount());
-                    existingCredit.setInterestRate(updatedCredit.getInterestRate());
-                    existingCredit.setRemainingBalance(updatedCredit.getRemainingBalance());
-                    existingCredit.setModifiedAt(LocalDateTime.now());
-                    if (updatedCredit.getPaymentStatus() != null) {
-                        existingCredit.setPaymentStatus(updatedCredit.getPaymentStatus());
-                    }
-                    if (updatedCredit.getCreditStatus() != null) {
-                        existingCredit.setCreditStatus(updatedCredit.getCreditStatus());
-                    }
-                    if (updatedCredit.getNextPaymentDate() != null) {
-                        existingCredit.setNextPaymentDate(updatedCredit.getNextPaymentDate());
-                    }
-                    if (updatedCredit.getMinimumPayment() != null) {
-                        existingCredit.setMinimumPayment(updatedCredit.getMinimumPayment());
-                    }
-                    return creditRepository.save(existingCredit);
-                })
-                .doOnSuccess(creditEventProducer::publishCreditUpdated);
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update().set("modifiedAt", now);
+        setIfPresent(update, "amount", updatedCredit.getAmount());
+        setIfPresent(update, "interestRate", updatedCredit.getInterestRate());
+        setIfPresent(update, "remainingBalance", updatedCredit.getRemainingBalance());
+        setIfPresent(update, "paymentStatus", updatedCredit.getPaymentStatus());
+        setIfPresent(update, "creditStatus", updatedCredit.getCreditStatus());
+        setIfPresent(update, "nextPaymentDate", updatedCredit.getNextPaymentDate());
+        setIfPresent(update, "minimumPayment", updatedCredit.getMinimumPayment());
+        return transactionalOperator.transactional(creditRepository
+                        .updateFields(creditId, updatedCredit.getVersion(), update)
+                        .switchIfEmpty(Mono.defer(() -> updateMissed(creditId, updatedCredit.getVersion())))
+                        .flatMap(previous -> {
+                            Credit savedCredit = applyUpdate(previous, updatedCredit, now);
+                            return creditEventProducer.publishCreditUpdated(previous, savedCredit)
+                                    .thenReturn(savedCredit);
+                        }))
+                .doOnNext(savedCredit -> customerDebtStatusService.scheduleRefresh(savedCredit.getCustomerId()));
+    }
+    private Mono<Credit> updateMissed(String creditId, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.error(new RuntimeException("Credit not found"));
+        }
+        return creditRepository.existsById(creditId)
+                .flatMap(exists -> Mono.error(exists
+                        ? new OptimisticLockingFailureException("Credit " + creditId
+                                + " was modified after version " + expectedVersion)
+                        : new RuntimeException("Credit not found")));
+    }
+    /**
+     * The credit as updateFields left it: previous with the same fields set and the version bumped.
+     */
+    private Credit applyUpdate(Credit previous, Credit updatedCredit, LocalDateTime now) {
+        return previous.toBuilder()
+                .amount(valueOrElse(updatedCredit.getAmount(), previous.getAmount()))
+                .interestRate(valueOrElse(updatedCredit.getInterestRate(), previous.getInterestRate()))
+                .remainingBalance(valueOrElse(updatedCredit.getRemainingBalance(), previous.getRemainingBalance()))
+                .paymentStatus(valueOrElse(updatedCredit.getPaymentStatus(), previous.getPaymentStatus()))
+                .creditStatus(valueOrElse(updatedCredit.getCreditStatus(), previous.getCreditStatus()))
+                .nextPaymentDate(valueOrElse(updatedCredit.getNextPaymentDate(), previous.getNextPaymentDate()))
+                .minimumPayment(valueOrElse(updatedCredit.getMinimumPayment(), previous.getMinimumPayment()))
+                .modifiedAt(now)
+                .version(previous.getVersion() != null ? previous.getVersion() + 1 : 1L)
+                .build();
+    }
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        }
+    }
+    private static <T> T valueOrElse(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+    /**
+     * Sets the status and/or payment status of every credit the request selects. Credits are processed in id
+     * order, BULK_CHUNK_SIZE at a time; each chunk is one updateMany plus one insert of its STATUS_CHANGED events,
+     * in one transaction.
+     */
+    public Mono<BulkUpdateSummary> updateCreditStatuses(BulkStatusUpdateRequest request) {
+        if (request.getStatus() == null && request.getPaymentStatus() == null) {
+            return Mono.error(new RuntimeException("status or paymentStatus is required"));
+        }
+        if ((request.getIds() == null || request.getIds().isEmpty()) && request.getCustomerId() == null
+                && request.getCurrentStatus() == null && request.getCurrentPaymentStatus() == null) {
+            return Mono.error(new RuntimeException("ids or at least one filter field is required"));
+        }
+        CreditStatus creditStatus;
+        CreditStatus currentStatus;
+        try {
+            creditStatus = request.getStatus() != null ? CreditStatus.valueOf(request.getStatus()) : null;
+            currentStatus = request.getCurrentStatus() != null
+                    ? CreditStatus.valueOf(request.getCurrentStatus())
+                    : null;
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new RuntimeException("Unknown credit status", e));
+        }
+        List<Criteria> conditions = new ArrayList<>();
+        if (request.getIds() != null && !request.getIds().isEmpty()) {
+            conditions.add(Criteria.where("id").in(request.getIds()));
+        }
+        if (request.getCustomerId() != null) {
+            conditions.add(Criteria.where("customerId").is(request.getCustomerId()));
+        }
+        if (currentStatus != null) {
+            conditions.add(Criteria.where("creditStatus").is(currentStatus));
+        }
+        if (request.getCurrentPaymentStatus() != null) {
+            conditions.add(Criteria.where("paymentStatus").is(request.getCurrentPaymentStatus()));
+        }
+        List<Criteria> pending = new ArrayList<>();
+        Update update = new Update().set("modifiedAt", LocalDateTime.now());
+        if (creditStatus != null) {
+            pending.add(Criteria.where("creditStatus").ne(creditStatus));
+            update.set("creditStatus", creditStatus);
+        }
+        if (request.getPaymentStatus() != null) {
+            pending.add(Criteria.where("paymentStatus").ne(request.getPaymentStatus()));
+            update.set("paymentStatus", request.getPaymentStatus());
+        }
+        conditions.add(new Criteria().orOperator(pending.toArray(new Criteria[0])));
+        Criteria criteria = new Criteria().andOperator(conditions.toArray(new Criteria[0]));
+        UnaryOperator<Credit> applyStatus = credit -> credit.toBuilder()
+                .creditStatus(creditStatus != null ? creditStatus : credit.getCreditStatus())
+                .paymentStatus(request.getPaymentStatus() != null
+                        ? request.getPaymentStatus()
+                        : credit.getPaymentStatus())
+                .build();
+        return updateStatusChunk(criteria, update, applyStatus, null)
+                .expand(chunk -> chunk.getT1().size() < BULK_CHUNK_SIZE
+                        ? Mono.empty()
+                        : updateStatusChunk(criteria, update, applyStatus,
+                                chunk.getT1().get(chunk.getT1().size() - 1).getId()))
+                .map(chunk -> new BulkUpdateSummary(chunk.getT1().size(), chunk.getT2()))
+                .reduce(new BulkUpdateSummary(), BulkUpdateSummary::plus)
+                .doOnNext(summary -> log.info("Bulk credit status update matched {} and modified {} credits",
+                        summary.getMatched(), summary.getModified()));
+    }
+    private Mono<Tuple2<List<Credit>, Long>> updateStatusChunk(Criteria criteria, Update update,
+                                                              UnaryOperator<Credit> applyStatus, String afterId) {
+        return transactionalOperator.transactional(creditRepository
+                        .findStatusesMatching(criteria, afterId, BULK_CHUNK_SIZE)
+                        .collectList()
+                        .flatMap(previous -> {
+                            if (previous.isEmpty()) {
+                                return Mono.just(Tuples.of(previous, 0L));
+                            }
+                            List<String> ids = previous.stream().map(Credit::getId).collect(Collectors.toList());
+                            List<Credit> updated = previous.stream().map(applyStatus).collect(Collectors.toList());
+                            return creditRepository.updateAllMatching(ids, criteria, update)
+                                    .flatMap(result -> creditEventProducer.publishCreditsUpdated(previous, updated)
+                                            .thenReturn(Tuples.of(previous, result.getModifiedCount())));
+                        }))
+                .doOnNext(chunk -> chunk.getT1().stream()
+                        .map(Credit::getCustomerId)
+                        .distinct()
+                        .forEach(customerDebtStatusService::scheduleRefresh));
     }
     public Mono<Void> deleteCredit(String creditId) {
         return creditRepository.findById(creditId)
                 .switchIfEmpty(Mono.error(new RuntimeException("Credit not found")))
-                .flatMap(existingCredit -> creditRepository.deleteById(creditId));
+                .flatMap(existingCredit -> creditRepository.deleteById(creditId)
+                        .doOnSuccess(deleted -> customerDebtStatusService
+                                .scheduleRefresh(existingCredit.getCustomerId())));
     }
 
 }
@@ -0,0 +1,81 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.customer.Customer;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * Encodes cached customers as a one-byte format version, the write time in epoch millis and a CBOR payload.
+ * Negative entries carry only the version and the write time. Values written by earlier versions
+ * (CBOR without a write time, or JSON starting with '{') are still readable and report {@link Instant#EPOCH}.
+ */
+@Component
+public class CustomerCacheCodec {
+    static final byte FORMAT_CBOR_V1 = 0x01;
+    static final byte FORMAT_CBOR_V2 = 0x02;
+    static final byte FORMAT_NOT_FOUND = 0x03;
+    private static final byte LEGACY_JSON = '{';
+    private static final int HEADER_LENGTH = 1 + Long.BYTES;
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper jsonMapper;
+    public CustomerCacheCodec() {
+        this.cborMapper = CBORMapper.builder()
+                .addModule(new JavaTimeModule())
+                .enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        this.jsonMapper = new ObjectMapper();
+        this.jsonMapper.registerModule(new JavaTimeModule());
+        this.jsonMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+    public byte[] encode(Customer customer, Instant writtenAt) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeByte(FORMAT_CBOR_V2);
+        header.writeLong(writtenAt.toEpochMilli());
+        cborMapper.writeValue(out, customer);
+        return out.toByteArray();
+    }
+    public byte[] encodeNotFound(Instant writtenAt) {
+        return ByteBuffer.allocate(HEADER_LENGTH)
+                .put(FORMAT_NOT_FOUND)
+                .putLong(writtenAt.toEpochMilli())
+                .array();
+    }
+    public CachedCustomer decode(byte[] value) throws IOException {
+        if (value == null || value.length == 0) {
+            throw new IOException("Empty cached customer value");
+        }
+        switch (value[0]) {
+            case FORMAT_CBOR_V2:
+                return new CachedCustomer(
+                        cborMapper.readValue(value, HEADER_LENGTH, value.length - HEADER_LENGTH, Customer.class),
+                        readWrittenAt(value));
+            case FORMAT_NOT_FOUND:
+                return new CachedCustomer(null, readWrittenAt(value));
+            case FORMAT_CBOR_V1:
+                return new CachedCustomer(cborMapper.readValue(value, 1, value.length - 1, Customer.class),
+                        Instant.EPOCH);
+            case LEGACY_JSON:
+                return new CachedCustomer(jsonMapper.readValue(value, Customer.class), Instant.EPOCH);
+            default:
+                throw new IOException("Unsupported cached customer format: " + value[0]);
+        }
+    }
+    private Instant readWrittenAt(byte[] value) throws IOException {
+        if (value.length < HEADER_LENGTH) {
+            throw new IOException("Truncated cached customer value");
+        }
+        return Instant.ofEpochMilli(ByteBuffer.wrap(value, 1, Long.BYTES).getLong());
+    }
+}
@@ -1,69 +1,132 @@
 package com.bank.creditservice.service;
 
+import com.bank.creditservice.client.CustomerClientService;
+import com.bank.creditservice.exception.CustomerNotFoundException;
 import com.bank.creditservice.model.customer.Customer;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReactiveStringCommands.SetCommand;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class CustomerCacheService {
-    private final ReactiveRedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+    private final CustomerCacheCodec customerCacheCodec;
+    private final CustomerNearCache customerNearCache;
+    private final CustomerClientService customerClientService;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
     private static final String CUSTOMER_KEY_PREFIX = "Customer:";
-    public CustomerCacheService(ReactiveRedisTemplate<String, String> redisTemplate) {
+    @Value("${customer-cache.ttl-ms:3600000}")
+    private long ttlMillis = 3_600_000;
+    @Value("${customer-cache.ttl-jitter:0.1}")
+    private double ttlJitter = 0.1;
+    @Value("${customer-cache.negative-ttl-ms:30000}")
+    private long negativeTtlMillis = 30_000;
+    @Value("${customer-cache.refresh-ahead:0.8}")
+    private double refreshAhead = 0.8;
+    public CustomerCacheService(ReactiveRedisTemplate<String, byte[]> redisTemplate,
+                                CustomerCacheCodec customerCacheCodec,
+                                CustomerNearCache customerNearCache,
+                                CustomerClientService customerClientService) {
         this.redisTemplate = redisTemplate;
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.customerCacheCodec = customerCacheCodec;
+        this.customerNearCache = customerNearCache;
+        this.customerClientService = customerClientService;
     }
     public Mono<Void> saveCustomer(String id, Customer customer) {
         if (id == null) {
             return Mono.error(new IllegalArgumentException("Customer ID cannot be null"));
         }
-        return Mono.fromCallable(() -> objectMapper.writeValueAsString(customer))
-                .flatMap(customerJson -> {
+        Duration ttl = jitteredTtl();
+        return Mono.fromCallable(() -> customerCacheCodec.encode(customer, Instant.now()))
+                .flatMap(encoded -> {
                     String key = CUSTOMER_KEY_PREFIX + id;
-                    log.info("Saving customer to cache with key: {}", key);
-                    return redisTemplate.opsForValue().set(key, customerJson);
+                    log.info("Saving customer to cache with key: {} ({} bytes, ttl {})", key, encoded.length, ttl);
+                    return redisTemplate.opsForValue().set(key, encoded, ttl);
+                })
+                .flatMap(result -> {
+                    customerNearCache.put(id, customer);
+                    return customerNearCache.publishInvalidation(id).thenReturn(result);
                 })
                 .doOnSuccess(result -> log.info("Successfully cached customer with ID: {}", id))
                 .doOnError(error -> log.error("Error caching customer: {}", error.getMessage()))
                 .then();
     }
 
+    /**
+     * Remembers for a short while that the customer service doesn't know this id,
+     * so repeated lookups fail fast with {@link CustomerNotFoundException}.
+     */
+    public Mono<Void> saveNotFound(String id) {
+        if (id == null) {
+            return Mono.error(new IllegalArgumentException("Customer ID cannot be null"));
+        }
+        String key = CUSTOMER_KEY_PREFIX + id;
+        log.info("Caching not-found marker for customer {} with ttl {}ms", id, negativeTtlMillis);
+        return redisTemplate.opsForValue()
+                .set(key, customerCacheCodec.encodeNotFound(Instant.now()), Duration.ofMillis(negativeTtlMillis))
+                .flatMap(result -> {
+                    customerNearCache.invalidate(id);
+                    return customerNearCache.publishInvalidation(id);
+                })
+                .doOnError(error -> log.error("Error caching not-found marker for customer {}: {}",
+                        id, error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Emits the cached customer, completes empty on a miss and fails with {@link CustomerNotFoundException}
+     * when a not-found marker is cached. Entries older than the refresh-ahead threshold are served as they are
+     * and reloaded from the customer service in the background.
+     */
     public Mono<Customer> getCustomer(String id) {
         if (id == null) {
             return Mono.error(new IllegalArgumentException("Customer ID cannot be null"));
         }
+        Customer nearCached = customerNearCache.get(id);
+        if (nearCached != null) {
+            log.debug("Customer {} served from near cache", id);
+            return Mono.just(nearCached);
+        }
         String key = CUSTOMER_KEY_PREFIX + id;
         log.info("Attempting to retrieve customer from Redis with key: {}", key);
         return redisTemplate.opsForValue().get(key)
-                .subscribeOn(Schedulers.boundedElastic())
                 .doOnSubscribe(s -> log.info("Subscribe to get customer from Redis with key: {}", key))
                 .doOnNext(value -> {
                     if (value == null) {
                         log.warn("Null value retrieved from Redis for key: {}", key);
                     } else {
-                        log.info("Retrieved from cache for key {}: value length={}", key, value.length());
+                        log.info("Retrieved from cache for key {}: value length={}", key, value.length);
                     }
                 })
-                .flatMap(customerJson -> {
-                    log.info("Processing JSON for customer: {} (length: {})", key, customerJson.length());
+                .flatMap(encoded -> {
                     try {
-                        Customer customer = objectMapper.readValue(customerJson, Customer.class);
-                        log.info("Successfully deserialized customer: {}", customer.getId());
-                        return Mono.just(customer);
+                        return Mono.just(customerCacheCodec.decode(encoded));
                     } catch (Exception e) {
-                        log.error("Error deserializing customer JSON: {}", e.getMessage(), e);
+                        log.error("Error decoding cached customer: {}", e.getMessage(), e);
                         return Mono.empty();
                     }
                 })
@@ -78,6 +141,138 @@ public class CustomerCacheService {
                 .onErrorResume(ex -> {
                     log.error("Final error handling for retrieving customer: {}", ex.getMessage());
                     return Mono.empty();
+                })
+                .flatMap(cached -> {
+                    if (cached.isNotFound()) {
+                        log.info("Customer {} is cached as not found", id);
+                        return Mono.error(new CustomerNotFoundException(id));
+                    }
+                    customerNearCache.put(id, cached.getCustomer());
+                    refreshAheadIfStale(id, cached);
+                    return Mono.just(cached.getCustomer());
+                });
+    }
+
+    /**
+     * Resolves many customers with one MGET. Only the misses go to the customer service, as one batch request,
+     * and are written back (customers and not-found markers alike) in a single pipelined batch of SETs.
+     * Customers the customer service doesn't know are left out of the result.
+     */
+    public Mono<Map<String, Customer>> getCustomers(Collection<String> ids) {
+        Map<String, Customer> resolved = new ConcurrentHashMap<>();
+        List<String> remote = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            Customer nearCached = customerNearCache.get(id);
+            if (nearCached != null) {
+                resolved.put(id, nearCached);
+            } else {
+                remote.add(id);
+            }
+        }
+        if (remote.isEmpty()) {
+            return Mono.just(resolved);
+        }
+        List<String> keys = remote.stream().map(id -> CUSTOMER_KEY_PREFIX + id).collect(Collectors.toList());
+        return redisTemplate.opsForValue().multiGet(keys)
+                .timeout(Duration.ofSeconds(5))
+                .onErrorResume(e -> {
+                    log.error("Error reading {} customers from cache, treating all as misses: {}",
+                            keys.size(), e.getMessage());
+                    return Mono.just(Collections.<byte[]>nCopies(keys.size(), null));
+                })
+                .flatMap(values -> {
+                    List<String> misses = new ArrayList<>();
+                    for (int i = 0; i < remote.size(); i++) {
+                        String id = remote.get(i);
+                        CachedCustomer cached = decodeOrNull(values.get(i));
+                        if (cached == null) {
+                            misses.add(id);
+                        } else if (!cached.isNotFound()) {
+                            customerNearCache.put(id, cached.getCustomer());
+                            refreshAheadIfStale(id, cached);
+                            resolved.put(id, cached.getCustomer());
+                        }
+                    }
+                    log.info("Resolved {} of {} customers from cache, fetching {} misses",
+                            resolved.size(), ids.size(), misses.size());
+                    if (misses.isEmpty()) {
+                        return Mono.just(resolved);
+                    }
+                    return customerClientService.getCustomersByIds(misses)
+                            .flatMap(fetched -> {
+                                fetched.forEach(customer -> resolved.put(customer.getId(), customer));
+                                return writeBack(misses, resolved);
+                            })
+                            .thenReturn(resolved);
+                });
+    }
+
+    private Mono<Void> writeBack(List<String> misses, Map<String, Customer> resolved) {
+        Instant now = Instant.now();
+        return redisTemplate.execute(connection -> connection.stringCommands().set(Flux.fromIterable(misses)
+                        .map(id -> {
+                            Customer customer = resolved.get(id);
+                            Duration ttl = customer != null ? jitteredTtl() : Duration.ofMillis(negativeTtlMillis);
+                            return SetCommand.set(redisTemplate.getSerializationContext()
+                                            .getKeySerializationPair().write(CUSTOMER_KEY_PREFIX + id))
+                                    .value(ByteBuffer.wrap(encodeEntry(customer, now)))
+                                    .expiring(Expiration.milliseconds(ttl.toMillis()));
+                        })))
+                .then()
+                .doOnSuccess(done -> {
+                    misses.stream()
+                            .filter(resolved::containsKey)
+                            .forEach(id -> customerNearCache.put(id, resolved.get(id)));
+                    log.info("Wrote back {} customers to cache in one pipeline", misses.size());
+                })
+                .onErrorResume(e -> {
+                    log.error("Error writing back {} customers to cache: {}", misses.size(), e.getMessage());
+                    return Mono.empty();
                 });
     }
-}
\ No newline at end of file
+
+    private byte[] encodeEntry(Customer customer, Instant writtenAt) {
+        if (customer == null) {
+            return customerCacheCodec.encodeNotFound(writtenAt);
+        }
+        try {
+            return customerCacheCodec.encode(customer, writtenAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CachedCustomer decodeOrNull(byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return customerCacheCodec.decode(value);
+        } catch (IOException e) {
+            log.error("Error decoding cached customer: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void refreshAheadIfStale(String id, CachedCustomer cached) {
+        Duration age = Duration.between(cached.getWrittenAt(), Instant.now());
+        if (age.toMillis() < ttlMillis * refreshAhead || !refreshing.add(id)) {
+            return;
+        }
+        log.info("Refreshing customer {} ahead of expiry (age {}ms)", id, age.toMillis());
+        Mono.defer(() -> customerClientService.getCustomerById(id))
+                .flatMap(customer -> saveCustomer(id, customer))
+                .onErrorResume(CustomerNotFoundException.class, e -> saveNotFound(id))
+                .doFinally(signal -> refreshing.remove(id))
+                .subscribe(null, error -> log.error("Refresh-ahead failed for customer {}: {}",
+                        id, error.getMessage()));
+    }
+
+    private Duration jitteredTtl() {
+        if (ttlJitter <= 0) {
+            return Duration.ofMillis(ttlMillis);
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-ttlJitter, ttlJitter);
+        return Duration.ofMillis(Math.round(ttlMillis * factor));
+    }
+}
@@ -0,0 +1,138 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.bank.creditservice.model.eligibility.CustomerDebtStatus;
+import com.bank.creditservice.repository.CreditCardRepository;
+import com.bank.creditservice.repository.CreditRepository;
+import com.bank.creditservice.repository.CustomerDebtStatusRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Service
+public class CustomerDebtStatusService {
+    private static final String DEBT_STATUS_KEY_PREFIX = "DebtStatus:";
+    private static final int REBUILD_CONCURRENCY = 16;
+    private final CustomerDebtStatusRepository customerDebtStatusRepository;
+    private final CreditRepository creditRepository;
+    private final CreditCardRepository creditCardRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final Duration redisTtl;
+    private final ConcurrentMap<String, Boolean> refreshesRunning = new ConcurrentHashMap<>(); //Value: run again
+    public CustomerDebtStatusService(CustomerDebtStatusRepository customerDebtStatusRepository,
+                                     CreditRepository creditRepository,
+                                     CreditCardRepository creditCardRepository,
+                                     ReactiveMongoTemplate mongoTemplate,
+                                     ReactiveRedisTemplate<String, String> redisTemplate,
+                                     @Value("${debt-status.redis-ttl-ms:600000}") long redisTtlMillis) {
+        this.customerDebtStatusRepository = customerDebtStatusRepository;
+        this.creditRepository = creditRepository;
+        this.creditCardRepository = creditCardRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.redisTemplate = redisTemplate;
+        this.redisTtl = Duration.ofMillis(redisTtlMillis);
+    }
+
+    public Mono<Boolean> hasOverdueDebt(String customerId) {
+        String key = DEBT_STATUS_KEY_PREFIX + customerId;
+        return redisTemplate.opsForValue().get(key)
+                .map(Boolean::parseBoolean)
+                .onErrorResume(e -> {
+                    log.error("Error reading debt status from Redis for key {}: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> customerDebtStatusRepository.findById(customerId)
+                        .flatMap(status -> mirror(status).thenReturn(status))
+                        .switchIfEmpty(Mono.defer(() -> refresh(customerId)))
+                        .map(CustomerDebtStatus::hasOverdueDebt)));
+    }
+
+    public Mono<CustomerDebtStatus> refresh(String customerId) {
+        Mono<Boolean> hasOverdueCredit = creditRepository
+                .existsByCustomerIdAndCreditStatusAndPaymentStatus(customerId,
+                        CreditStatus.ACTIVE, PaymentStatus.OVERDUE);
+        Mono<Boolean> hasOverdueCreditCard = creditCardRepository
+                .existsByCustomerIdAndStatusAndPaymentStatus(customerId,
+                        "ACTIVE", PaymentStatus.OVERDUE);
+        return Mono.zip(hasOverdueCredit, hasOverdueCreditCard)
+                .map(tuple -> CustomerDebtStatus.builder()
+                        .id(customerId)
+                        .overdueCredit(tuple.getT1())
+                        .overdueCreditCard(tuple.getT2())
+                        .updatedAt(LocalDateTime.now())
+                        .build())
+                .flatMap(customerDebtStatusRepository::save)
+                .flatMap(status -> mirror(status).thenReturn(status))
+                .doOnNext(status -> log.info("Debt status for customer {} refreshed: overdue={}",
+                        customerId, status.hasOverdueDebt()));
+    }
+
+    /**
+     * Refreshes the customer's debt status in the background. Refreshes of one customer run one at a time: a
+     * request that arrives while one is running makes it run once more when it finishes, so the last status
+     * saved is always computed after the last write and an older computation can't overwrite a newer one.
+     */
+    public void scheduleRefresh(String customerId) {
+        if (customerId == null) {
+            return;
+        }
+        AtomicBoolean start = new AtomicBoolean();
+        refreshesRunning.compute(customerId, (id, rerun) -> {
+            start.set(rerun == null);
+            return rerun != null;
+        });
+        if (start.get()) {
+            runRefresh(customerId);
+        }
+    }
+
+    private void runRefresh(String customerId) {
+        refresh(customerId)
+                .doFinally(signal -> {
+                    if (refreshesRunning.compute(customerId, (id, rerun) -> rerun ? false : null) != null) {
+                        runRefresh(customerId);
+                    }
+                })
+                .subscribe(
+                        status -> { },
+                        error -> log.error("Error refreshing debt status for customer {}: {}",
+                                customerId, error.getMessage()));
+    }
+
+    public Mono<Long> rebuild() {
+        log.info("Rebuilding customer debt status projection");
+        return Flux.merge(
+                        mongoTemplate.findDistinct(new Query(), "customerId", Credit.class, String.class),
+                        mongoTemplate.findDistinct(new Query(), "customerId", CreditCard.class, String.class),
+                        customerDebtStatusRepository.findAll().map(CustomerDebtStatus::getId))
+                .distinct()
+                .flatMap(this::refresh, REBUILD_CONCURRENCY)
+                .count()
+                .doOnNext(count -> log.info("Rebuilt debt status projection for {} customers", count));
+    }
+
+    private Mono<Void> mirror(CustomerDebtStatus status) {
+        String key = DEBT_STATUS_KEY_PREFIX + status.getId();
+        return redisTemplate.opsForValue().set(key, String.valueOf(status.hasOverdueDebt()), redisTtl)
+                .doOnError(e -> log.error("Error mirroring debt status to Redis for key {}: {}",
+                        key, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+}
@@ -6,34 +6,37 @@ import com.bank.creditservice.repository.CreditCardRepository;
 import com.bank.creditservice.repository.CreditRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Service
 public class CustomerEligibilityService {
     @Autowired
     private CreditRepository creditRepository;
     @Autowired
     private CreditCardRepository creditCardRepository;
+    @Autowired
+    private CustomerDebtStatusService customerDebtStatusService;
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CustomerEligibilityService.class);
 
     public Mono<Boolean> hasOverdueDebt(String customerId) {
         log.info("Checking if customer {} has overdue debt", customerId);
-        Mono<Boolean> hasOverdueCredit = creditRepository.findByCustomerId(customerId)
-                .filter(credit ->
-                        credit.getCreditStatus() == CreditStatus.ACTIVE &&
-                                credit.getPaymentStatus() == PaymentStatus.OVERDUE)
-                .hasElements()
+        Mono<Boolean> hasOverdueCredit = creditRepository
+                .existsByCustomerIdAndCreditStatusAndPaymentStatus(customerId,
+                        CreditStatus.ACTIVE, PaymentStatus.OVERDUE)
                 .doOnNext(hasOverdue -> {
                     if (hasOverdue) {
                         log.info("Customer {} has overdue credits", customerId);
                     }
                 });
 
-        Mono<Boolean> hasOverdueCreditCard = creditCardRepository.findByCustomerId(customerId)
-                .filter(card ->
-                        "ACTIVE".equals(card.getStatus()) &&
-                                card.getPaymentStatus() == PaymentStatus.OVERDUE)
-                .hasElements()
+        Mono<Boolean> hasOverdueCreditCard = creditCardRepository
+                .existsByCustomerIdAndStatusAndPaymentStatus(customerId,
+                        "ACTIVE", PaymentStatus.OVERDUE)
                 .doOnNext(hasOverdue -> {
                     if (hasOverdue) {
                         log.info("Customer {} has overdue credit cards", customerId);
@@ -45,7 +48,25 @@ public class CustomerEligibilityService {
                 .doOnNext(result -> log.info("Customer {} has overdue debt: {}", customerId, result));
     }
 
+    /**
+     * Batch form of {@link #hasOverdueDebt(String)}: the given customers that have overdue debt, found with one
+     * query per collection.
+     */
+    public Mono<Set<String>> customersWithOverdueDebt(Collection<String> customerIds) {
+        if (customerIds.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return Flux.merge(
+                        creditRepository.findCustomerIdsWithCredits(customerIds,
+                                CreditStatus.ACTIVE, PaymentStatus.OVERDUE),
+                        creditCardRepository.findCustomerIdsWithCreditCards(customerIds,
+                                "ACTIVE", PaymentStatus.OVERDUE))
+                .collect(Collectors.toSet())
+                .doOnNext(overdue -> log.info("{} of {} customers have overdue debt",
+                        overdue.size(), customerIds.size()));
+    }
+
     public Mono<Boolean> isCustomerEligibleForNewProduct(String customerId) {
-        return hasOverdueDebt(customerId).map(hasDebt -> !hasDebt);
+        return customerDebtStatusService.hasOverdueDebt(customerId).map(hasDebt -> !hasDebt);
     }
 }
@@ -0,0 +1,91 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.customer.Customer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.UUID;
+
+@Slf4j
+@Component
+public class CustomerNearCache {
+    static final String INVALIDATION_CHANNEL = "customer-cache-invalidation";
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final Cache<String, Customer> cache;
+    private final String instanceId = UUID.randomUUID().toString();
+    private Disposable invalidationSubscription;
+
+    public CustomerNearCache(ReactiveRedisTemplate<String, String> redisTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${customer-cache.near.max-size:10000}") long maxSize,
+                             @Value("${customer-cache.near.ttl-ms:30000}") long ttlMillis) {
+        this.redisTemplate = redisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "customerNearCache");
+        log.info("Customer near cache initialized with maxSize={} and ttl={}ms", maxSize, ttlMillis);
+    }
+
+    @PostConstruct
+    public void subscribeToInvalidations() {
+        invalidationSubscription = redisTemplate.listenToChannel(INVALIDATION_CHANNEL)
+                .map(ReactiveSubscription.Message::getMessage)
+                .filter(message -> !message.startsWith(instanceId + ":"))
+                .map(message -> message.substring(message.indexOf(':') + 1))
+                .doOnNext(this::invalidate)
+                .doOnError(e -> {
+                    log.error("Lost customer cache invalidation channel, clearing near cache: {}", e.getMessage());
+                    cache.invalidateAll();
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (invalidationSubscription != null) {
+            invalidationSubscription.dispose();
+        }
+    }
+
+    public Customer get(String id) {
+        return cache.getIfPresent(id);
+    }
+
+    public void put(String id, Customer customer) {
+        cache.put(id, customer);
+    }
+
+    public void invalidate(String id) {
+        log.debug("Invalidating customer {} in near cache", id);
+        cache.invalidate(id);
+    }
+
+    public Mono<Void> publishInvalidation(String id) {
+        return redisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId + ":" + id)
+                .doOnError(e -> log.error("Error publishing invalidation for customer {}: {}", id, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    String getInstanceId() {
+        return instanceId;
+    }
+}
@@ -0,0 +1,44 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.customer.Customer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+@Slf4j
+@Component
+public class CustomerRequestCoalescer {
+    private final ConcurrentMap<String, Mono<Customer>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+    public CustomerRequestCoalescer(MeterRegistry meterRegistry) {
+        this.coalescedCounter = Counter.builder("customer.lookup.coalesced")
+                .description("Customer lookups that joined an already pending lookup")
+                .register(meterRegistry);
+    }
+    public Mono<Customer> coalesce(String customerId, Supplier<Mono<Customer>> lookup) {
+        return Mono.defer(() -> {
+            AtomicBoolean started = new AtomicBoolean(false);
+            Mono<Customer> pending = inFlight.computeIfAbsent(customerId, id -> {
+                started.set(true);
+                return lookup.get()
+                        .doFinally(signal -> inFlight.remove(id))
+                        .cache();
+            });
+            if (!started.get()) {
+                log.debug("Joining pending lookup for customer {}", customerId);
+                coalescedCounter.increment();
+            }
+            return pending;
+        });
+    }
+    public double getCoalescedCount() {
+        return coalescedCounter.count();
+    }
+}
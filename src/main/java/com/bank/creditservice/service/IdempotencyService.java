@@ -0,0 +1,151 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.exception.RequestInProgressException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Makes create requests safe to retry. The first request with an idempotency key claims the key in Redis and,
+ * once it succeeds, stores its response there for the TTL; a replay of the key gets that response back without
+ * running the request again. A replay that arrives while the first request is still running fails with
+ * {@link RequestInProgressException}, and a request that fails, returns nothing or is cancelled frees its key so
+ * the client can retry it.
+ * Keys are scoped per endpoint, and reusing a key with a different request body is rejected.
+ * <p>
+ * When Redis cannot be reached requests run without deduplication rather than failing.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    private static final String KEY_PREFIX = "Idempotency:";
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final int MAX_KEY_LENGTH = 255;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper jsonMapper;
+    private final Duration ttl;
+    private final Duration inProgressTtl;
+    public IdempotencyService(ReactiveRedisTemplate<String, String> redisTemplate,
+                              @Value("${idempotency.ttl-ms:86400000}") long ttlMillis,
+                              @Value("${idempotency.in-progress-ttl-ms:60000}") long inProgressTtlMillis) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofMillis(ttlMillis);
+        this.inProgressTtl = Duration.ofMillis(inProgressTtlMillis);
+        this.jsonMapper = new ObjectMapper();
+        this.jsonMapper.registerModule(new JavaTimeModule());
+        this.jsonMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Runs action once per scope and idempotency key and returns its response, or the stored response of the
+     * earlier run. Without a key action simply runs.
+     */
+    public <T> Mono<T> execute(String scope, String idempotencyKey, Object request, Class<T> responseType,
+                               Supplier<Mono<T>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new RuntimeException("Idempotency-Key must be between 1 and "
+                    + MAX_KEY_LENGTH + " characters"));
+        }
+        String key = KEY_PREFIX + scope + ":" + idempotencyKey;
+        return Mono.fromCallable(() -> fingerprint(request))
+                .flatMap(fingerprint -> claim(key)
+                        .flatMap(claimed -> claimed
+                                ? run(key, fingerprint, action)
+                                : replay(key, idempotencyKey, fingerprint, responseType)
+                                        .switchIfEmpty(Mono.defer(() ->
+                                                execute(scope, idempotencyKey, request, responseType, action)))));
+    }
+
+    private Mono<Boolean> claim(String key) {
+        return redisTemplate.opsForValue().setIfAbsent(key, IN_PROGRESS, inProgressTtl)
+                .onErrorResume(e -> {
+                    log.warn("Idempotency store unavailable, running {} without deduplication: {}",
+                            key, e.getMessage());
+                    return Mono.just(true);
+                });
+    }
+
+    /**
+     * Frees the key unless action produced a response: on error, on an empty result, and when the caller cancels
+     * while action still runs. A response is always stored, also when the caller cancels before that finished.
+     */
+    private <T> Mono<T> run(String key, String fingerprint, Supplier<Mono<T>> action) {
+        AtomicReference<T> produced = new AtomicReference<>();
+        return action.get()
+                .doOnNext(produced::set)
+                .flatMap(response -> store(key, fingerprint, response).thenReturn(response))
+                .switchIfEmpty(Mono.defer(() -> release(key).then(Mono.empty())))
+                .onErrorResume(error -> release(key).then(Mono.error(error)))
+                .doOnCancel(() -> {
+                    T response = produced.get();
+                    (response != null ? store(key, fingerprint, response) : release(key)).subscribe();
+                });
+    }
+
+    /**
+     * Empty when the key expired since it was found taken.
+     */
+    private <T> Mono<T> replay(String key, String idempotencyKey, String fingerprint, Class<T> responseType) {
+        return redisTemplate.opsForValue().get(key)
+                .flatMap(value -> {
+                    if (IN_PROGRESS.equals(value)) {
+                        return Mono.error(new RequestInProgressException(idempotencyKey));
+                    }
+                    return Mono.fromCallable(() -> jsonMapper.readTree(value))
+                            .flatMap(stored -> {
+                                if (!fingerprint.equals(stored.path("fingerprint").asText())) {
+                                    return Mono.error(new RuntimeException("Idempotency-Key " + idempotencyKey
+                                            + " was already used for a different request"));
+                                }
+                                log.info("Replaying stored response for {}", key);
+                                return Mono.fromCallable(() ->
+                                        jsonMapper.treeToValue(stored.get("response"), responseType));
+                            });
+                });
+    }
+
+    private Mono<Void> store(String key, String fingerprint, Object response) {
+        return Mono.fromCallable(() -> {
+                    ObjectNode stored = jsonMapper.createObjectNode().put("fingerprint", fingerprint);
+                    stored.set("response", jsonMapper.valueToTree(response));
+                    return jsonMapper.writeValueAsString(stored);
+                })
+                .flatMap(value -> redisTemplate.opsForValue().set(key, value, ttl))
+                .onErrorResume(e -> {
+                    log.error("Error storing idempotent response for {}: {}", key, e.getMessage());
+                    return Mono.just(false);
+                })
+                .then();
+    }
+
+    private Mono<Void> release(String key) {
+        return redisTemplate.opsForValue().delete(key)
+                .onErrorResume(e -> {
+                    log.error("Error releasing idempotency key {}: {}", key, e.getMessage());
+                    return Mono.just(false);
+                })
+                .then();
+    }
+
+    private String fingerprint(Object request) throws JsonProcessingException, NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(jsonMapper.writeValueAsBytes(request));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+}
@@ -0,0 +1,277 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.event.CreditCardEventProducer;
+import com.bank.creditservice.event.CreditEventProducer;
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.bank.creditservice.model.payment.PaymentLedgerEntry;
+import com.bank.creditservice.model.payment.PaymentProductType;
+import com.bank.creditservice.repository.CardAuthorizationRepository;
+import com.bank.creditservice.repository.CreditCardRepository;
+import com.bank.creditservice.repository.CreditRepository;
+import com.bank.creditservice.repository.PaymentLedgerRepository;
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Posts payments to credits and credit cards. A payment is one transaction: the ledger entry is appended, the
+ * product's balance, payment status and due date are written with a compare-and-set on its version, and the
+ * change event goes to the outbox. A write that raced with another one is retried from a fresh read.
+ * <p>
+ * Every payment carries the caller's idempotency key. The ledger allows one entry per product and key, so a
+ * retried request gets the entry of the first one back instead of paying twice, also when both run at once.
+ */
+@Slf4j
+@Service
+public class PaymentService {
+    private static final int CREDIT_PAYMENT_PERIOD_DAYS = 30;
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(10);
+    private final CreditRepository creditRepository;
+    private final CreditCardRepository creditCardRepository;
+    private final CardAuthorizationRepository cardAuthorizationRepository;
+    private final PaymentLedgerRepository paymentLedgerRepository;
+    private final CreditEventProducer creditEventProducer;
+    private final CreditCardEventProducer creditCardEventProducer;
+    private final CustomerDebtStatusService customerDebtStatusService;
+    private final TransactionalOperator transactionalOperator;
+    private final int maxAttempts;
+    public PaymentService(CreditRepository creditRepository,
+                          CreditCardRepository creditCardRepository,
+                          CardAuthorizationRepository cardAuthorizationRepository,
+                          PaymentLedgerRepository paymentLedgerRepository,
+                          CreditEventProducer creditEventProducer,
+                          CreditCardEventProducer creditCardEventProducer,
+                          CustomerDebtStatusService customerDebtStatusService,
+                          TransactionalOperator transactionalOperator,
+                          @Value("${payments.max-attempts:5}") int maxAttempts) {
+        this.creditRepository = creditRepository;
+        this.creditCardRepository = creditCardRepository;
+        this.cardAuthorizationRepository = cardAuthorizationRepository;
+        this.paymentLedgerRepository = paymentLedgerRepository;
+        this.creditEventProducer = creditEventProducer;
+        this.creditCardEventProducer = creditCardEventProducer;
+        this.customerDebtStatusService = customerDebtStatusService;
+        this.transactionalOperator = transactionalOperator;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Mono<PaymentLedgerEntry> payCredit(String creditId, String idempotencyKey, BigDecimal amount) {
+        return post(creditId, idempotencyKey, amount,
+                Mono.defer(() -> applyCreditPayment(creditId, idempotencyKey, amount)));
+    }
+
+    public Mono<PaymentLedgerEntry> payCreditCard(String creditCardId, String idempotencyKey, BigDecimal amount) {
+        return post(creditCardId, idempotencyKey, amount,
+                Mono.defer(() -> applyCreditCardPayment(creditCardId, idempotencyKey, amount)));
+    }
+
+    private Mono<PaymentLedgerEntry> post(String productId, String idempotencyKey, BigDecimal amount,
+                                          Mono<PaymentLedgerEntry> payment) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return Mono.error(new RuntimeException("Idempotency key is required"));
+        }
+        if (amount == null || amount.signum() <= 0) {
+            return Mono.error(new RuntimeException("Payment amount must be positive"));
+        }
+        return paymentLedgerRepository.findByProductIdAndIdempotencyKey(productId, idempotencyKey)
+                .doOnNext(entry -> log.info("Payment {} for {} already posted", idempotencyKey, productId))
+                .switchIfEmpty(Mono.defer(() -> transactionalOperator.transactional(payment)
+                        .retryWhen(Retry.backoff(maxAttempts - 1, RETRY_BACKOFF)
+                                .filter(PaymentService::isRetryable)
+                                .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                        .doOnNext(entry -> {
+                            log.info("Posted payment {} of {} for {}", idempotencyKey, amount, productId);
+                            customerDebtStatusService.scheduleRefresh(entry.getCustomerId());
+                        })
+                        .onErrorResume(DuplicateKeyException.class, e -> paymentLedgerRepository
+                                .findByProductIdAndIdempotencyKey(productId, idempotencyKey))))
+                .flatMap(entry -> entry.getAmount().compareTo(amount) == 0
+                        ? Mono.just(entry)
+                        : Mono.error(new RuntimeException("Idempotency key " + idempotencyKey
+                                + " was already used for a payment of " + entry.getAmount())));
+    }
+
+    private Mono<PaymentLedgerEntry> applyCreditPayment(String creditId, String idempotencyKey, BigDecimal amount) {
+        return creditRepository.findById(creditId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Credit not found")))
+                .flatMap(credit -> {
+                    if (credit.getCreditStatus() != CreditStatus.ACTIVE) {
+                        return Mono.error(new RuntimeException("Credit is not active"));
+                    }
+                    BigDecimal remaining = valueOrZero(credit.getRemainingBalance());
+                    if (amount.compareTo(remaining) > 0) {
+                        return Mono.error(new RuntimeException("Payment exceeds the remaining balance of "
+                                + remaining));
+                    }
+                    LocalDateTime now = LocalDateTime.now();
+                    Credit paid = creditAfterPayment(credit, amount, remaining.subtract(amount), now);
+                    Update update = new Update()
+                            .set("remainingBalance", paid.getRemainingBalance())
+                            .set("minimumPayment", paid.getMinimumPayment())
+                            .set("paymentStatus", paid.getPaymentStatus())
+                            .set("creditStatus", paid.getCreditStatus())
+                            .set("nextPaymentDate", paid.getNextPaymentDate())
+                            .set("modifiedAt", now);
+                    PaymentLedgerEntry entry = PaymentLedgerEntry.builder()
+                            .productType(PaymentProductType.CREDIT)
+                            .productId(creditId)
+                            .customerId(credit.getCustomerId())
+                            .idempotencyKey(idempotencyKey)
+                            .amount(amount)
+                            .balanceAfter(paid.getRemainingBalance())
+                            .paymentStatus(paid.getPaymentStatus())
+                            .nextDueDate(paid.getNextPaymentDate())
+                            .postedAt(now)
+                            .build();
+                    return paymentLedgerRepository.insert(entry)
+                            .flatMap(posted -> creditRepository
+                                    .compareAndUpdate(creditId, credit.getVersion(), update)
+                                    .switchIfEmpty(Mono.error(changedWhilePosting("Credit", creditId)))
+                                    .flatMap(previous -> creditEventProducer.publishCreditUpdated(previous, paid))
+                                    .thenReturn(posted));
+                });
+    }
+
+    private Mono<PaymentLedgerEntry> applyCreditCardPayment(String creditCardId, String idempotencyKey,
+                                                            BigDecimal amount) {
+        return creditCardRepository.findById(creditCardId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Credit card not found")))
+                .zipWith(cardAuthorizationRepository.sumHeldAmounts(creditCardId))
+                .flatMap(cardAndHeld -> {
+                    CreditCard creditCard = cardAndHeld.getT1();
+                    if (!"ACTIVE".equals(creditCard.getStatus())) {
+                        return Mono.error(new RuntimeException("Credit card is not active"));
+                    }
+                    //Open holds are off the available balance but not owed yet, so they can't be paid down
+                    BigDecimal available = valueOrZero(creditCard.getAvailableBalance());
+                    BigDecimal held = cardAndHeld.getT2();
+                    BigDecimal owed = valueOrZero(creditCard.getCreditLimit()).subtract(available).subtract(held);
+                    if (amount.compareTo(owed) > 0) {
+                        return Mono.error(new RuntimeException("Payment exceeds the outstanding balance of "
+                                + owed.max(BigDecimal.ZERO)));
+                    }
+                    LocalDateTime now = LocalDateTime.now();
+                    CreditCard paid = creditCardAfterPayment(creditCard, amount, available.add(amount), held, now);
+                    Update update = new Update()
+                            .set("availableBalance", paid.getAvailableBalance())
+                            .set("minimumPayment", paid.getMinimumPayment())
+                            .set("paymentStatus", paid.getPaymentStatus())
+                            .set("cutoffDate", paid.getCutoffDate())
+                            .set("paymentDueDate", paid.getPaymentDueDate())
+                            .set("modifiedAt", now);
+                    PaymentLedgerEntry entry = PaymentLedgerEntry.builder()
+                            .productType(PaymentProductType.CREDIT_CARD)
+                            .productId(creditCardId)
+                            .customerId(creditCard.getCustomerId())
+                            .idempotencyKey(idempotencyKey)
+                            .amount(amount)
+                            .balanceAfter(paid.getAvailableBalance())
+                            .paymentStatus(paid.getPaymentStatus())
+                            .nextDueDate(paid.getPaymentDueDate())
+                            .postedAt(now)
+                            .build();
+                    return paymentLedgerRepository.insert(entry)
+                            .flatMap(posted -> creditCardRepository
+                                    .compareAndUpdate(creditCardId, creditCard.getVersion(), update)
+                                    .switchIfEmpty(Mono.error(changedWhilePosting("Credit card", creditCardId)))
+                                    .flatMap(previous -> creditCardEventProducer
+                                            .publishCreditCardUpdated(previous, paid))
+                                    .thenReturn(posted));
+                });
+    }
+
+    /**
+     * A payment that clears the balance finishes the credit. One that covers the minimum payment settles the
+     * current installment: the due date moves one period forward and the credit is PENDING again, or stays
+     * OVERDUE while the new due date is still past. Smaller payments only reduce the balance.
+     */
+    private static Credit creditAfterPayment(Credit credit, BigDecimal amount, BigDecimal remaining,
+                                             LocalDateTime now) {
+        Credit.CreditBuilder paid = credit.toBuilder()
+                .remainingBalance(remaining)
+                .modifiedAt(now)
+                .version(nextVersion(credit.getVersion()));
+        if (remaining.signum() == 0) {
+            return paid.minimumPayment(BigDecimal.ZERO)
+                    .paymentStatus(PaymentStatus.FINISHED)
+                    .creditStatus(CreditStatus.FINISHED)
+                    .build();
+        }
+        if (credit.getMinimumPayment() != null && remaining.compareTo(credit.getMinimumPayment()) < 0) {
+            paid.minimumPayment(remaining);
+        }
+        if (covers(amount, credit.getMinimumPayment())) {
+            LocalDateTime dueDate = (credit.getNextPaymentDate() != null ? credit.getNextPaymentDate() : now)
+                    .plusDays(CREDIT_PAYMENT_PERIOD_DAYS);
+            paid.nextPaymentDate(dueDate)
+                    .paymentStatus(dueDate.isAfter(now) ? PaymentStatus.PENDING : PaymentStatus.OVERDUE);
+        }
+        return paid.build();
+    }
+
+    /**
+     * A card with a payment due is PAID once a payment covers its minimum payment or everything it owes, and its
+     * cutoff and due dates move one month forward. Payments to a PAID card only give available balance back.
+     */
+    private static CreditCard creditCardAfterPayment(CreditCard creditCard, BigDecimal amount, BigDecimal available,
+                                                     BigDecimal held, LocalDateTime now) {
+        CreditCard.CreditCardBuilder paid = creditCard.toBuilder()
+                .availableBalance(available)
+                .modifiedAt(now)
+                .version(nextVersion(creditCard.getVersion()));
+        boolean due = creditCard.getPaymentStatus() == PaymentStatus.PENDING
+                || creditCard.getPaymentStatus() == PaymentStatus.OVERDUE;
+        boolean settled = covers(amount, creditCard.getMinimumPayment())
+                || available.add(held).compareTo(valueOrZero(creditCard.getCreditLimit())) >= 0;
+        if (due && settled) {
+            paid.paymentStatus(PaymentStatus.PAID)
+                    .minimumPayment(BigDecimal.ZERO)
+                    .cutoffDate((creditCard.getCutoffDate() != null ? creditCard.getCutoffDate() : now)
+                            .plusMonths(1))
+                    .paymentDueDate((creditCard.getPaymentDueDate() != null ? creditCard.getPaymentDueDate() : now)
+                            .plusMonths(1));
+        }
+        return paid.build();
+    }
+
+    private static boolean covers(BigDecimal amount, BigDecimal minimumPayment) {
+        return minimumPayment == null || amount.compareTo(minimumPayment) >= 0;
+    }
+    private static BigDecimal valueOrZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+    private static Long nextVersion(Long version) {
+        return version != null ? version + 1 : 1L;
+    }
+    private static OptimisticLockingFailureException changedWhilePosting(String product, String productId) {
+        return new OptimisticLockingFailureException(product + " " + productId + " changed while posting a payment");
+    }
+
+    /**
+     * Version conflicts and Mongo's transient transaction errors (write conflicts between concurrent
+     * transactions) are worth another attempt from a fresh read.
+     */
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof TransientDataAccessException) {
+            return true;
+        }
+        Throwable cause = error instanceof MongoException ? error : error.getCause();
+        return cause instanceof MongoException
+                && ((MongoException) cause).hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+    }
+}
@@ -0,0 +1,116 @@
+package com.bank.creditservice.client;
+
+import com.bank.creditservice.dto.VipPymStatusBatchRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * MockWebServer stand-in for the account service contract used by {@link AccountClientService}:
+ * {@code GET /customer/{customerId}}, {@code PUT /{accountId}/vip-pym/status} and the batch
+ * {@code PUT /vip-pym/status}, which answers 404 while {@link #setBatchSupported(boolean)} is off.
+ */
+public class AccountServiceStub extends Dispatcher {
+    private static final String BASE_PATH = "/api/accounts";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int checkingAccounts;
+    private final long latencyMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger singleUpdates = new AtomicInteger();
+    private final Set<String> failingAccounts = ConcurrentHashMap.newKeySet();
+    private final Set<String> skippedInBatch = ConcurrentHashMap.newKeySet();
+    private final List<VipPymStatusBatchRequest> batchRequests = new CopyOnWriteArrayList<>();
+    private volatile boolean batchSupported = true;
+    public AccountServiceStub(int checkingAccounts, long latencyMillis) {
+        this.checkingAccounts = checkingAccounts;
+        this.latencyMillis = latencyMillis;
+    }
+    public static String basePath() {
+        return BASE_PATH;
+    }
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        String path = request.getPath();
+        if ("GET".equals(request.getMethod()) && path.startsWith(BASE_PATH + "/customer/")) {
+            String accounts = IntStream.rangeClosed(1, checkingAccounts)
+                    .mapToObj(i -> "{\"id\":\"acc" + i + "\",\"customerId\":\"customer1\","
+                            + "\"accountType\":\"CHECKING\"}")
+                    .collect(Collectors.joining(",", "[", "]"));
+            return json("{\"status\":200,\"message\":\"OK\",\"data\":" + accounts + "}");
+        }
+        if (path.startsWith(BASE_PATH + "/vip-pym/status")) {
+            return batchUpdate(request);
+        }
+        String accountId = path.substring((BASE_PATH + "/").length(), path.indexOf("/vip-pym"));
+        singleUpdates.incrementAndGet();
+        simulateLatency();
+        if (failingAccounts.contains(accountId)) {
+            return new MockResponse().setResponseCode(500);
+        }
+        return json("{\"status\":200,\"message\":\"OK\",\"data\":{\"id\":\"" + accountId + "\"}}");
+    }
+    private MockResponse batchUpdate(RecordedRequest request) throws InterruptedException {
+        if (!batchSupported) {
+            return new MockResponse().setResponseCode(404);
+        }
+        VipPymStatusBatchRequest batch;
+        try {
+            batch = objectMapper.readValue(request.getBody().readUtf8(), VipPymStatusBatchRequest.class);
+        } catch (IOException e) {
+            return new MockResponse().setResponseCode(400);
+        }
+        batchRequests.add(batch);
+        simulateLatency();
+        String accounts = batch.getAccountIds().stream()
+                .filter(id -> !skippedInBatch.contains(id))
+                .map(id -> "{\"id\":\"" + id + "\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+        return json("{\"status\":200,\"message\":\"OK\",\"data\":" + accounts + "}");
+    }
+    private void simulateLatency() throws InterruptedException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(latencyMillis);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+    private MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+    public void setBatchSupported(boolean batchSupported) {
+        this.batchSupported = batchSupported;
+    }
+    public void failAccount(String accountId) {
+        failingAccounts.add(accountId);
+    }
+    /**
+     * Leaves the account out of batch responses, as if the account service skipped it.
+     */
+    public void skipInBatch(String accountId) {
+        skippedInBatch.add(accountId);
+    }
+    public void resetMaxInFlight() {
+        maxInFlight.set(0);
+    }
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+    public int getSingleUpdates() {
+        return singleUpdates.get();
+    }
+    public List<VipPymStatusBatchRequest> getBatchRequests() {
+        return batchRequests;
+    }
+}
@@ -0,0 +1,56 @@
+package com.bank.creditservice.client;
+
+import com.bank.creditservice.model.customer.Customer;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomerClientServiceBatchTest {
+    private final CustomerServiceStub customerServiceStub = new CustomerServiceStub(
+            new HashSet<>(Arrays.asList("c1", "c2", "c3")));
+    private MockWebServer customerService;
+    private CustomerClientService customerClientService;
+    @BeforeEach
+    void setUp() throws IOException {
+        customerService = new MockWebServer();
+        customerService.setDispatcher(customerServiceStub);
+        customerService.start();
+        customerClientService = new CustomerClientService(WebClient.builder(),
+                customerService.url(CustomerServiceStub.basePath()).toString(), CircuitBreakerRegistry.ofDefaults());
+    }
+    @AfterEach
+    void tearDown() throws IOException {
+        customerService.shutdown();
+    }
+    @Test
+    void getCustomersByIds_BatchSupported_SingleRequest() {
+        StepVerifier.create(customerClientService.getCustomersByIds(Arrays.asList("c1", "c2", "unknown")))
+                .assertNext(customers -> assertEquals(Arrays.asList("c1", "c2"), ids(customers)))
+                .verifyComplete();
+        assertEquals(1, customerServiceStub.getBatchRequests().size());
+        assertEquals(0, customerServiceStub.getSingleLookups());
+    }
+    @Test
+    void getCustomersByIds_BatchNotDeployed_FallsBackToSingleLookups() {
+        customerServiceStub.setBatchSupported(false);
+        StepVerifier.create(customerClientService.getCustomersByIds(Arrays.asList("c1", "c3", "unknown")))
+                .assertNext(customers -> assertEquals(Arrays.asList("c1", "c3"), ids(customers)))
+                .verifyComplete();
+        assertEquals(3, customerServiceStub.getSingleLookups());
+    }
+    private List<String> ids(List<Customer> customers) {
+        return customers.stream().map(Customer::getId).sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,79 @@
+package com.bank.creditservice.client;
+
+import com.bank.creditservice.dto.CustomerBatchRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * MockWebServer stand-in for the customer service contract used by {@link CustomerClientService}:
+ * {@code GET /{id}} and the batch {@code POST /batch}, which answers 404 while
+ * {@link #setBatchSupported(boolean)} is off. Only the ids passed to the constructor exist.
+ */
+public class CustomerServiceStub extends Dispatcher {
+    private static final String BASE_PATH = "/api/customers";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> knownIds;
+    private final AtomicInteger singleLookups = new AtomicInteger();
+    private final List<CustomerBatchRequest> batchRequests = new CopyOnWriteArrayList<>();
+    private volatile boolean batchSupported = true;
+    public CustomerServiceStub(Set<String> knownIds) {
+        this.knownIds = knownIds;
+    }
+    public static String basePath() {
+        return BASE_PATH;
+    }
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        String path = request.getPath();
+        if ("POST".equals(request.getMethod()) && path.equals(BASE_PATH + "/batch")) {
+            return batchLookup(request);
+        }
+        String id = path.substring((BASE_PATH + "/").length());
+        singleLookups.incrementAndGet();
+        if (!knownIds.contains(id)) {
+            return new MockResponse().setResponseCode(404);
+        }
+        return json("{\"status\":200,\"message\":\"OK\",\"data\":" + customer(id) + "}");
+    }
+    private MockResponse batchLookup(RecordedRequest request) {
+        if (!batchSupported) {
+            return new MockResponse().setResponseCode(404);
+        }
+        CustomerBatchRequest batch;
+        try {
+            batch = objectMapper.readValue(request.getBody().readUtf8(), CustomerBatchRequest.class);
+        } catch (IOException e) {
+            return new MockResponse().setResponseCode(400);
+        }
+        batchRequests.add(batch);
+        String customers = batch.getIds().stream()
+                .filter(knownIds::contains)
+                .map(this::customer)
+                .collect(Collectors.joining(",", "[", "]"));
+        return json("{\"status\":200,\"message\":\"OK\",\"data\":" + customers + "}");
+    }
+    private String customer(String id) {
+        return "{\"id\":\"" + id + "\",\"fullName\":\"Customer " + id + "\",\"customerType\":\"PERSONAL\"}";
+    }
+    private MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+    public void setBatchSupported(boolean batchSupported) {
+        this.batchSupported = batchSupported;
+    }
+    public int getSingleLookups() {
+        return singleLookups.get();
+    }
+    public List<CustomerBatchRequest> getBatchRequests() {
+        return batchRequests;
+    }
+}
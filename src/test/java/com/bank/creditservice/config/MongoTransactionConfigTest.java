@@ -0,0 +1,22 @@
+package com.bank.creditservice.config;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MongoTransactionConfigTest {
+    @Test
+    void supportsTransactions_ReplicaSetOrMongos() {
+        assertTrue(MongoTransactionConfig.supportsTransactions(
+                new Document("ismaster", true).append("setName", "rs0")));
+        assertTrue(MongoTransactionConfig.supportsTransactions(
+                new Document("ismaster", true).append("msg", "isdbgrid")));
+    }
+    @Test
+    void supportsTransactions_Standalone_False() {
+        assertFalse(MongoTransactionConfig.supportsTransactions(new Document("ismaster", true)));
+        assertFalse(MongoTransactionConfig.supportsTransactions(null));
+    }
+}
@@ -0,0 +1,74 @@
+package com.bank.creditservice.controller;
+
+import com.bank.creditservice.dto.CardAuthorizationRequest;
+import com.bank.creditservice.model.creditcard.AuthorizationStatus;
+import com.bank.creditservice.model.creditcard.CardAuthorization;
+import com.bank.creditservice.service.CardAuthorizationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CardAuthorizationControllerTest {
+    @Mock
+    private CardAuthorizationService cardAuthorizationService;
+    @InjectMocks
+    private CardAuthorizationController cardAuthorizationController;
+    private WebTestClient webTestClient;
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToController(cardAuthorizationController).build();
+    }
+    @Test
+    void authorize_Approved_ReturnsCreatedHold() {
+        when(cardAuthorizationService.authorize("1", new BigDecimal("25.50"), "order-1"))
+                .thenReturn(Mono.just(CardAuthorization.builder().id("auth1").creditCardId("1")
+                        .amount(new BigDecimal("25.50")).status(AuthorizationStatus.HELD).build()));
+        webTestClient.post()
+                .uri("/api/credit-cards/{creditCardId}/authorizations", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CardAuthorizationRequest(new BigDecimal("25.50"), "order-1"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.data.id").isEqualTo("auth1")
+                .jsonPath("$.data.status").isEqualTo("HELD");
+    }
+    @Test
+    void authorize_Declined_ReturnsBadRequest() {
+        when(cardAuthorizationService.authorize("1", new BigDecimal("25.50"), null))
+                .thenReturn(Mono.error(new RuntimeException("Authorization declined")));
+        webTestClient.post()
+                .uri("/api/credit-cards/{creditCardId}/authorizations", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CardAuthorizationRequest(new BigDecimal("25.50"), null))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Authorization declined");
+    }
+    @Test
+    void capture_WithoutBody_CapturesTheWholeHold() {
+        when(cardAuthorizationService.capture(eq("auth1"), isNull()))
+                .thenReturn(Mono.just(CardAuthorization.builder().id("auth1")
+                        .status(AuthorizationStatus.CAPTURED).build()));
+        webTestClient.post()
+                .uri("/api/credit-cards/authorizations/{authorizationId}/capture", "auth1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.status").isEqualTo("CAPTURED");
+    }
+}
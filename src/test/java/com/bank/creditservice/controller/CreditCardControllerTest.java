@@ -6,6 +6,7 @@ import com.bank.creditservice.model.creditcard.CreditCard;
 import com.bank.creditservice.model.creditcard.CreditCardType;
 import com.bank.creditservice.model.creditcard.PaymentStatus;
 import com.bank.creditservice.service.CreditCardService;
+import com.bank.creditservice.service.IdempotencyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,10 +20,13 @@ import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.function.Supplier;
 @ExtendWith(MockitoExtension.class)
 class CreditCardControllerTest {
     @Mock
     private CreditCardService creditCardService;
+    @Mock
+    private IdempotencyService idempotencyService;
     @InjectMocks
     private CreditCardController creditCardController;
     private CreditCard creditCard;
@@ -38,24 +42,65 @@ class CreditCardControllerTest {
             PaymentStatus.PENDING,
             LocalDateTime.now(),
             LocalDateTime.now(),
-            new BigDecimal("10.00")
+            new BigDecimal("10.00"),
+            0L
         );
     }
     @Test
     void testCreateCreditCard() {
+        when(idempotencyService.execute(eq("credit-card"), isNull(), any(CreditCard.class), eq(CreditCard.class),
+                any())).thenAnswer(invocation -> invocation.<Supplier<Mono<CreditCard>>>getArgument(4).get());
         when(creditCardService.createCreditCard(any(CreditCard.class)))
                 .thenReturn(Mono.just(creditCard));
-        StepVerifier.create(creditCardController.createCreditCard(creditCard))
+        StepVerifier.create(creditCardController.createCreditCard(null, creditCard))
                 .expectNextMatches(response -> response.getStatusCode() == HttpStatus.CREATED &&
                         response.getBody().getData().equals(creditCard))
                 .verifyComplete();
     }
     @Test
+    void testCreateCreditCard_Replayed_ReturnsStoredCardWithoutCreating() {
+        when(idempotencyService.execute(eq("credit-card"), eq("key-1"), any(CreditCard.class), eq(CreditCard.class),
+                any())).thenReturn(Mono.just(creditCard));
+        StepVerifier.create(creditCardController.createCreditCard("key-1", creditCard))
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.CREATED &&
+                        response.getBody().getData().equals(creditCard))
+                .verifyComplete();
+        verifyNoInteractions(creditCardService);
+    }
+    @Test
     void testGetAllCreditCards() {
-        when(creditCardService.getAllCreditCards()).thenReturn(Flux.just(creditCard));
-        StepVerifier.create(creditCardController.getAllCreditCards())
+        when(creditCardService.getCreditCards(null, 101)).thenReturn(Flux.just(creditCard));
+        StepVerifier.create(creditCardController.getAllCreditCards(100, null))
                 .expectNextMatches(response -> response.getStatusCode() == HttpStatus.OK &&
-                        response.getBody().getData().size() == 1)
+                        response.getBody().getData().size() == 1 &&
+                        !response.getHeaders().containsKey(CreditCardController.NEXT_CURSOR_HEADER))
+                .verifyComplete();
+    }
+    @Test
+    void testGetAllCreditCards_WithoutPagingParameters_ReturnsEveryCard() {
+        CreditCard next = creditCard.toBuilder().id("2").build();
+        when(creditCardService.streamCreditCards(null)).thenReturn(Flux.just(creditCard, next));
+        StepVerifier.create(creditCardController.getAllCreditCards(null, null))
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.OK &&
+                        response.getBody().getData().size() == 2 &&
+                        !response.getHeaders().containsKey(CreditCardController.NEXT_CURSOR_HEADER))
+                .verifyComplete();
+        verify(creditCardService, never()).getCreditCards(any(), anyInt());
+    }
+    @Test
+    void testGetAllCreditCards_MorePages_ReturnsNextCursor() {
+        CreditCard next = creditCard.toBuilder().id("2").build();
+        when(creditCardService.getCreditCards("0", 2)).thenReturn(Flux.just(creditCard, next));
+        StepVerifier.create(creditCardController.getAllCreditCards(1, "0"))
+                .expectNextMatches(response -> response.getBody().getData().size() == 1 &&
+                        "1".equals(response.getHeaders().getFirst(CreditCardController.NEXT_CURSOR_HEADER)))
+                .verifyComplete();
+    }
+    @Test
+    void testStreamCreditCards() {
+        when(creditCardService.streamCreditCards("1")).thenReturn(Flux.just(creditCard));
+        StepVerifier.create(creditCardController.streamCreditCards("1"))
+                .expectNext(creditCard)
                 .verifyComplete();
     }
     @Test
@@ -1,29 +1,45 @@
 package com.bank.creditservice.controller;
+import com.bank.creditservice.dto.BatchItemResult;
+import com.bank.creditservice.dto.BulkStatusUpdateRequest;
+import com.bank.creditservice.dto.BulkUpdateSummary;
+import com.bank.creditservice.dto.CreditSummary;
+import com.bank.creditservice.exception.RequestInProgressException;
 import com.bank.creditservice.model.credit.Credit;
 import com.bank.creditservice.model.credit.CreditType;
 import com.bank.creditservice.service.CreditService;
+import com.bank.creditservice.service.IdempotencyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class CreditControllerTest {
     @Mock
     private CreditService creditService;
+    @Mock
+    private IdempotencyService idempotencyService;
     @InjectMocks
     private CreditController creditController;
     private Credit testCredit;
@@ -45,6 +61,7 @@ class CreditControllerTest {
     }
     @Test
     void createCredit_Success() {
+        runWithoutIdempotencyKey();
         when(creditService.createCredit(any(Credit.class)))
                 .thenReturn(Mono.just(testCredit));
         webTestClient.post()
@@ -60,6 +77,7 @@ class CreditControllerTest {
     }
     @Test
     void createCredit_Error() {
+        runWithoutIdempotencyKey();
         when(creditService.createCredit(any(Credit.class)))
                 .thenReturn(Mono.error(new RuntimeException("Error creating credit")));
         webTestClient.post()
@@ -74,14 +92,86 @@ class CreditControllerTest {
                 .jsonPath("$.data").isEqualTo(null);
     }
     @Test
+    void createCredit_SameKeyStillRunning_ReturnsConflict() {
+        when(idempotencyService.execute(eq("credit"), eq("key-1"), any(Credit.class), eq(Credit.class), any()))
+                .thenReturn(Mono.error(new RequestInProgressException("key-1")));
+        webTestClient.post()
+                .uri("/api/credits")
+                .header(CreditController.IDEMPOTENCY_KEY_HEADER, "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(testCredit)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("A request with Idempotency-Key key-1 is still being processed");
+        verifyNoInteractions(creditService);
+    }
+    @Test
+    void createCredits_Batch_ReturnsPerItemResults() {
+        when(creditService.createCredits(anyList()))
+                .thenReturn(Mono.just(List.of(BatchItemResult.created(0, testCredit),
+                        BatchItemResult.<Credit>rejected(1, "Customer not found"))));
+        webTestClient.post()
+                .uri("/api/credits/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(testCredit, createTestCredit()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Credits batch processed: 1 created, 1 rejected")
+                .jsonPath("$.data[0].status").isEqualTo("CREATED")
+                .jsonPath("$.data[0].data.id").isEqualTo(testCredit.getId())
+                .jsonPath("$.data[1].status").isEqualTo("REJECTED")
+                .jsonPath("$.data[1].error").isEqualTo("Customer not found");
+    }
+    @Test
+    void createCredits_EmptyBatch_ReturnsBadRequest() {
+        webTestClient.post()
+                .uri("/api/credits/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of())
+                .exchange()
+                .expectStatus().isBadRequest();
+        verifyNoInteractions(creditService);
+    }
+    @Test
+    void updateStatuses_Success_ReturnsSummary() {
+        when(creditService.updateCreditStatuses(any(BulkStatusUpdateRequest.class)))
+                .thenReturn(Mono.just(new BulkUpdateSummary(3, 2)));
+        webTestClient.patch()
+                .uri("/api/credits/batch/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(BulkStatusUpdateRequest.builder().customerId("customer1").status("DEFAULTED").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Credit statuses updated: 3 matched, 2 modified")
+                .jsonPath("$.data.matched").isEqualTo(3)
+                .jsonPath("$.data.modified").isEqualTo(2);
+    }
+    @Test
+    void updateStatuses_InvalidRequest_ReturnsBadRequest() {
+        when(creditService.updateCreditStatuses(any(BulkStatusUpdateRequest.class)))
+                .thenReturn(Mono.error(new RuntimeException("status or paymentStatus is required")));
+        webTestClient.patch()
+                .uri("/api/credits/batch/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(BulkStatusUpdateRequest.builder().customerId("customer1").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("status or paymentStatus is required");
+    }
+    @Test
     void getAllCredits_Success() {
         List<Credit> credits = Arrays.asList(testCredit);
-        when(creditService.getAllCredits())
+        when(creditService.streamCredits(null))
                 .thenReturn(Flux.fromIterable(credits));
         webTestClient.get()
                 .uri("/api/credits")
                 .exchange()
                 .expectStatus().isOk()
+                .expectHeader().doesNotExist(CreditController.NEXT_CURSOR_HEADER)
                 .expectBody()
                 .jsonPath("$.status").isEqualTo(HttpStatus.OK.value())
                 .jsonPath("$.message").isEqualTo("Credits retrieved successfully")
@@ -89,7 +179,7 @@ class CreditControllerTest {
     }
     @Test
     void getAllCredits_Empty() {
-        when(creditService.getAllCredits())
+        when(creditService.streamCredits(null))
                 .thenReturn(Flux.empty());
         webTestClient.get()
                 .uri("/api/credits")
@@ -102,6 +192,70 @@ class CreditControllerTest {
                 .jsonPath("$.data").isEmpty();
     }
     @Test
+    void getAllCredits_WithoutPagingParameters_ReturnsEveryCredit() {
+        List<Credit> credits = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            Credit credit = createTestCredit();
+            credit.setId(String.format("%03d", i));
+            credits.add(credit);
+        }
+        when(creditService.streamCredits(null))
+                .thenReturn(Flux.fromIterable(credits));
+        webTestClient.get()
+                .uri("/api/credits")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(CreditController.NEXT_CURSOR_HEADER)
+                .expectBody()
+                .jsonPath("$.data.length()").isEqualTo(150);
+        verify(creditService, never()).getCredits(any(), anyInt());
+    }
+    @Test
+    void getAllCredits_LimitOnly_ReturnsFirstPage() {
+        when(creditService.getCredits(null, 11))
+                .thenReturn(Flux.just(testCredit));
+        webTestClient.get()
+                .uri("/api/credits?limit=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(CreditController.NEXT_CURSOR_HEADER)
+                .expectBody()
+                .jsonPath("$.data[0].id").isEqualTo(testCredit.getId());
+    }
+    @Test
+    void getAllCredits_MorePages_ReturnsNextCursor() {
+        Credit next = createTestCredit();
+        next.setId("2");
+        when(creditService.getCredits("0", 2))
+                .thenReturn(Flux.just(testCredit, next));
+        webTestClient.get()
+                .uri("/api/credits?limit=1&after=0")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(CreditController.NEXT_CURSOR_HEADER, "1")
+                .expectBody()
+                .jsonPath("$.data.length()").isEqualTo(1)
+                .jsonPath("$.data[0].id").isEqualTo(testCredit.getId());
+    }
+    @Test
+    void streamCredits_Ndjson_WritesOneCreditPerLine() {
+        Credit next = createTestCredit();
+        next.setId("2");
+        when(creditService.streamCredits(null))
+                .thenReturn(Flux.just(testCredit, next));
+        webTestClient.get()
+                .uri("/api/credits/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Credit.class)
+                .getResponseBody()
+                .map(Credit::getId)
+                .as(StepVerifier::create)
+                .expectNext("1", "2")
+                .verifyComplete();
+    }
+    @Test
     void getCreditById_Success() {
         when(creditService.getCreditById("1"))
                 .thenReturn(Mono.just(testCredit));
@@ -168,6 +322,34 @@ class CreditControllerTest {
                 .jsonPath("$.data").isEqualTo(null);
     }
     @Test
+    void getCreditsByCustomerId_WithFields_ReturnsOnlyThoseFields() {
+        CreditSummary summary = CreditSummary.builder()
+                .id("1")
+                .remainingBalance(new BigDecimal("1000.00"))
+                .build();
+        when(creditService.getCreditSummariesByCustomerId("customer1", Set.of("id", "remainingBalance")))
+                .thenReturn(Flux.just(summary));
+        webTestClient.get()
+                .uri("/api/credits/customer/{customerId}?fields=id,remainingBalance", "customer1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].id").isEqualTo("1")
+                .jsonPath("$.data[0].remainingBalance").isEqualTo(1000.00)
+                .jsonPath("$.data[0].creditType").doesNotExist();
+    }
+    @Test
+    void getCreditsByCustomerId_UnknownField_ReturnsBadRequest() {
+        when(creditService.getCreditSummariesByCustomerId("customer1", Set.of("ssn")))
+                .thenReturn(Flux.error(new RuntimeException("Unknown credit field: ssn")));
+        webTestClient.get()
+                .uri("/api/credits/customer/{customerId}?fields=ssn", "customer1")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Unknown credit field: ssn");
+    }
+    @Test
     void updateCredit_Success() {
         when(creditService.updateCredit(eq("1"), any(Credit.class)))
                 .thenReturn(Mono.just(testCredit));
@@ -198,6 +380,20 @@ class CreditControllerTest {
                 .jsonPath("$.data").isEqualTo(null);
     }
     @Test
+    void updateCredit_StaleVersion_ReturnsConflict() {
+        when(creditService.updateCredit(eq("1"), any(Credit.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("Credit 1 was modified after version 2")));
+        webTestClient.put()
+                .uri("/api/credits/{creditId}", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(testCredit)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(HttpStatus.CONFLICT.value())
+                .jsonPath("$.message").isEqualTo("Credit 1 was modified after version 2");
+    }
+    @Test
     void deleteCredit_Success() {
         when(creditService.deleteCredit("1"))
                 .thenReturn(Mono.empty());
@@ -223,4 +419,8 @@ class CreditControllerTest {
                 .jsonPath("$.message").isEqualTo("Error deleting credit")
                 .jsonPath("$.data").isEqualTo(null);
     }
-}
\ No newline at end of file
+    private void runWithoutIdempotencyKey() {
+        when(idempotencyService.execute(eq("credit"), isNull(), any(Credit.class), eq(Credit.class), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Mono<Credit>>>getArgument(4).get());
+    }
+}
@@ -0,0 +1,75 @@
+package com.bank.creditservice.controller;
+
+import com.bank.creditservice.dto.PaymentRequest;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.bank.creditservice.model.payment.PaymentLedgerEntry;
+import com.bank.creditservice.model.payment.PaymentProductType;
+import com.bank.creditservice.service.PaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentControllerTest {
+    @Mock
+    private PaymentService paymentService;
+    @InjectMocks
+    private PaymentController paymentController;
+    private WebTestClient webTestClient;
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToController(paymentController).build();
+    }
+    @Test
+    void payCredit_Posted_ReturnsCreatedLedgerEntry() {
+        when(paymentService.payCredit("1", "key-1", new BigDecimal("100.00")))
+                .thenReturn(Mono.just(PaymentLedgerEntry.builder().id("p1").productType(PaymentProductType.CREDIT)
+                        .productId("1").amount(new BigDecimal("100.00")).paymentStatus(PaymentStatus.PENDING)
+                        .build()));
+        webTestClient.post()
+                .uri("/api/credits/{creditId}/payments", "1")
+                .header("Idempotency-Key", "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new PaymentRequest(new BigDecimal("100.00")))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.data.id").isEqualTo("p1")
+                .jsonPath("$.data.paymentStatus").isEqualTo("PENDING");
+    }
+    @Test
+    void payCreditCard_Rejected_ReturnsBadRequest() {
+        when(paymentService.payCreditCard("1", "key-1", new BigDecimal("100.00")))
+                .thenReturn(Mono.error(new RuntimeException("Payment exceeds the outstanding balance of 50.00")));
+        webTestClient.post()
+                .uri("/api/credit-cards/{creditCardId}/payments", "1")
+                .header("Idempotency-Key", "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new PaymentRequest(new BigDecimal("100.00")))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Payment exceeds the outstanding balance of 50.00");
+    }
+    @Test
+    void payCredit_MissingIdempotencyKey_ReturnsBadRequest() {
+        webTestClient.post()
+                .uri("/api/credits/{creditId}/payments", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new PaymentRequest(new BigDecimal("100.00")))
+                .exchange()
+                .expectStatus().isBadRequest();
+        verifyNoInteractions(paymentService);
+    }
+}
@@ -2,103 +2,121 @@ package com.bank.creditservice.event;
 
 import com.bank.creditservice.model.creditcard.CreditCard;
 import com.bank.creditservice.model.creditcard.CreditCardType;
+import com.bank.creditservice.model.outbox.OutboxEvent;
+import com.bank.creditservice.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
-import org.springframework.util.concurrent.FailureCallback;
-import org.springframework.util.concurrent.ListenableFuture;
-import org.springframework.util.concurrent.SuccessCallback;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class CreditCardEventProducerTest {
     @Mock
-    private KafkaTemplate<String, CreditCard> kafkaTemplate;
+    private OutboxEventRepository outboxEventRepository;
+    private final CreditProductEventCodec eventCodec = new CreditProductEventCodec();
     private CreditCardEventProducer creditCardEventProducer;
     @BeforeEach
     void setUp() {
-        creditCardEventProducer = new CreditCardEventProducer(kafkaTemplate);
+        creditCardEventProducer = new CreditCardEventProducer(outboxEventRepository, new CreditProductEventMapper(),
+                eventCodec, new LegacyEntityEventCodec(), false);
     }
     @Test
-    void publishCreditCardCreated_Success() {
+    void publishCreditCardCreated_Success() throws IOException {
         // Arrange
         CreditCard creditCard = createCreditCard("123");
-        ListenableFuture<SendResult<String, CreditCard>> future = mock(ListenableFuture.class);
-        when(kafkaTemplate.send("creditcard-created", creditCard.getId(), creditCard))
-                .thenReturn(future);
-        doAnswer(invocation -> {
-            SuccessCallback<SendResult<String, CreditCard>> successCallback = invocation.getArgument(0);
-            FailureCallback failureCallback = invocation.getArgument(1);
-            successCallback.onSuccess(mock(SendResult.class));
-            return null;
-        }).when(future).addCallback(any(SuccessCallback.class), any(FailureCallback.class));
+        when(outboxEventRepository.insert(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
         // Act
-        creditCardEventProducer.publishCreditCardCreated(creditCard);
+        StepVerifier.create(creditCardEventProducer.publishCreditCardCreated(creditCard))
+                .verifyComplete();
         // Assert
-        verify(kafkaTemplate).send("creditcard-created", creditCard.getId(), creditCard);
+        OutboxEvent outboxEvent = captureOutboxEvent();
+        assertEquals("creditcard-created.v2", outboxEvent.getTopic());
+        assertEquals("CreditCard", outboxEvent.getAggregateType());
+        assertEquals("123", outboxEvent.getAggregateId());
+        assertEquals("CREATED", outboxEvent.getEventType());
+        assertNotNull(outboxEvent.getCreatedAt());
+        CreditProductEvent event = eventCodec.decode(outboxEvent.getPayload());
+        assertEquals(CreditProductEventType.CREATED, event.getType());
+        assertEquals("123", event.getProductId());
+        assertEquals(0, new BigDecimal("5000").compareTo(event.getLimit()));
     }
     @Test
-    void publishCreditCardCreated_Error() {
+    void publishCreditCardCreated_LegacyTopicsEnabled_AlsoRecordsEntityJson() throws IOException {
         // Arrange
+        CreditCardEventProducer producer = new CreditCardEventProducer(outboxEventRepository,
+                new CreditProductEventMapper(), eventCodec, new LegacyEntityEventCodec(), true);
         CreditCard creditCard = createCreditCard("123");
-        RuntimeException exception = new RuntimeException("Error sending message");
-        ListenableFuture<SendResult<String, CreditCard>> future = mock(ListenableFuture.class);
-        when(kafkaTemplate.send("creditcard-created", creditCard.getId(), creditCard))
-                .thenReturn(future);
-        doAnswer(invocation -> {
-            SuccessCallback<SendResult<String, CreditCard>> successCallback = invocation.getArgument(0);
-            FailureCallback failureCallback = invocation.getArgument(1);
-            failureCallback.onFailure(exception);
-            return null;
-        }).when(future).addCallback(any(SuccessCallback.class), any(FailureCallback.class));
+        when(outboxEventRepository.insert(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
         // Act
-        creditCardEventProducer.publishCreditCardCreated(creditCard);
+        StepVerifier.create(producer.publishCreditCardCreated(creditCard))
+                .verifyComplete();
         // Assert
-        verify(kafkaTemplate).send("creditcard-created", creditCard.getId(), creditCard);
+        ArgumentCaptor<OutboxEvent> inserted = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository, times(2)).insert(inserted.capture());
+        assertEquals("creditcard-created.v2", inserted.getAllValues().get(0).getTopic());
+        OutboxEvent legacy = inserted.getAllValues().get(1);
+        assertEquals("creditcard-created", legacy.getTopic());
+        assertEquals("CREATED", legacy.getEventType());
+        assertEquals("123", new ObjectMapper().readTree(legacy.getPayload()).get("id").asText());
     }
     @Test
-    void publishCreditCardUpdated_Success() {
+    void publishCreditCardCreated_Error() {
         // Arrange
         CreditCard creditCard = createCreditCard("123");
-        ListenableFuture<SendResult<String, CreditCard>> future = mock(ListenableFuture.class);
-        when(kafkaTemplate.send("creditcard-updated", creditCard.getId(), creditCard))
-                .thenReturn(future);
-        doAnswer(invocation -> {
-            SuccessCallback<SendResult<String, CreditCard>> successCallback = invocation.getArgument(0);
-            FailureCallback failureCallback = invocation.getArgument(1);
-            successCallback.onSuccess(mock(SendResult.class));
-            return null;
-        }).when(future).addCallback(any(SuccessCallback.class), any(FailureCallback.class));
+        when(outboxEventRepository.insert(any(OutboxEvent.class)))
+                .thenReturn(Mono.error(new RuntimeException("Error writing outbox")));
+        // Act & Assert
+        StepVerifier.create(creditCardEventProducer.publishCreditCardCreated(creditCard))
+                .expectErrorMessage("Error writing outbox")
+                .verify();
+    }
+    @Test
+    void publishCreditCardUpdated_BalanceChanged_RecordsOnlyTheChange() throws IOException {
+        // Arrange
+        CreditCard previous = createCreditCard("123");
+        CreditCard creditCard = previous.toBuilder().availableBalance(new BigDecimal("1500")).build();
+        when(outboxEventRepository.insert(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
         // Act
-        creditCardEventProducer.publishCreditCardUpdated(creditCard);
+        StepVerifier.create(creditCardEventProducer.publishCreditCardUpdated(previous, creditCard))
+                .verifyComplete();
         // Assert
-        verify(kafkaTemplate).send("creditcard-updated", creditCard.getId(), creditCard);
+        OutboxEvent outboxEvent = captureOutboxEvent();
+        assertEquals("creditcard-updated.v2", outboxEvent.getTopic());
+        CreditProductEvent event = eventCodec.decode(outboxEvent.getPayload());
+        assertEquals(CreditProductEventType.BALANCE_CHANGED, event.getType());
+        assertEquals(0, new BigDecimal("1500").compareTo(event.getBalance()));
+        assertNull(event.getLimit());
     }
     @Test
-    void publishCreditCardUpdated_Error() {
+    void publishCreditCardUpdated_NothingChanged_RecordsNothing() {
         // Arrange
-        CreditCard creditCard = createCreditCard("123");
-        RuntimeException exception = new RuntimeException("Error sending message");
-        ListenableFuture<SendResult<String, CreditCard>> future = mock(ListenableFuture.class);
-        when(kafkaTemplate.send("creditcard-updated", creditCard.getId(), creditCard))
-                .thenReturn(future);
-        doAnswer(invocation -> {
-            SuccessCallback<SendResult<String, CreditCard>> successCallback = invocation.getArgument(0);
-            FailureCallback failureCallback = invocation.getArgument(1);
-            failureCallback.onFailure(exception);
-            return null;
-        }).when(future).addCallback(any(SuccessCallback.class), any(FailureCallback.class));
+        CreditCard previous = createCreditCard("123");
         // Act
-        creditCardEventProducer.publishCreditCardUpdated(creditCard);
+        StepVerifier.create(creditCardEventProducer.publishCreditCardUpdated(previous, previous.toBuilder().build()))
+                .verifyComplete();
         // Assert
-        verify(kafkaTemplate).send("creditcard-updated", creditCard.getId(), creditCard);
+        verifyNoInteractions(outboxEventRepository);
+    }
+    private OutboxEvent captureOutboxEvent() {
+        ArgumentCaptor<OutboxEvent> outboxEvent = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).insert(outboxEvent.capture());
+        return outboxEvent.getValue();
     }
     private CreditCard createCreditCard(String id) {
         CreditCard creditCard = new CreditCard();
@@ -107,4 +125,4 @@ class CreditCardEventProducerTest {
         creditCard.setCardType(CreditCardType.PERSONAL_CREDIT_CARD);
         return creditCard;
     }
-}
+}
\ No newline at end of file
@@ -2,104 +2,142 @@ package com.bank.creditservice.event;
 
 import com.bank.creditservice.model.credit.Credit;
 import com.bank.creditservice.model.credit.CreditType;
+import com.bank.creditservice.model.outbox.OutboxEvent;
+import com.bank.creditservice.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
-import org.springframework.util.concurrent.FailureCallback;
-import org.springframework.util.concurrent.ListenableFuture;
-import org.springframework.util.concurrent.SuccessCallback;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class CreditEventProducerTest {
     @Mock
-    private KafkaTemplate<String, Credit> kafkaTemplate;
+    private OutboxEventRepository outboxEventRepository;
+    private final CreditProductEventCodec eventCodec = new CreditProductEventCodec();
     private CreditEventProducer creditEventProducer;
     @BeforeEach
     void setUp() {
-        creditEventProducer = new CreditEventProducer(kafkaTemplate);
+        creditEventProducer = new CreditEventProducer(outboxEventRepository, new CreditProductEventMapper(),
+                eventCodec, new LegacyEntityEventCodec(), false);
     }
     @Test
-    void publishCreditCreated_Success() {
+    void publishCreditCreated_Success() throws IOException {
         // Arrange
         Credit credit = createCredit("123");
-        ListenableFuture<SendResult<String, Credit>> future = mock(ListenableFuture.class);
-        when(kafkaTemplate.send("credit-created", credit.getId(), credit))
-                .thenReturn(future);
-        doAnswer(invocation -> {
-            SuccessCallback<SendResult<String, Credit>> successCallback = invocation.getArgument(0);
-            FailureCallback failureCallback = invocation.getArgument(1);
-            successCallback.onSuccess(mock(SendResult.class));
-            return null;
-        }).when(future).addCallback(any(SuccessCallback.class), any(FailureCallback.class));
+        when(outboxEventRepository.insert(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
         // Act
-        creditEventProducer.publishCreditCreated(credit);
+        StepVerifier.create(creditEventProducer.publishCreditCreated(credit))
+                .verifyComplete();
         // Assert
-        verify(kafkaTemplate).send("credit-created", credit.getId(), credit);
+        OutboxEvent outboxEvent = captureOutboxEvent();
+        assertEquals("credit-created.v2", outboxEvent.getTopic());
+        assertEquals("Credit", outboxEvent.getAggregateType());
+        assertEquals("123", outboxEvent.getAggregateId());
+        assertEquals("CREATED", outboxEvent.getEventType());
+        assertNotNull(outboxEvent.getCreatedAt());
+        CreditProductEvent event = eventCodec.decode(outboxEvent.getPayload());
+        assertEquals(CreditProductEventType.CREATED, event.getType());
+        assertEquals("123", event.getProductId());
+        assertEquals(0, new BigDecimal("10000").compareTo(event.getLimit()));
     }
     @Test
-    void publishCreditCreated_Error() {
+    void publishCreditsCreated_Batch_RecordsAllEventsInOneInsert() {
         // Arrange
-        Credit credit = createCredit("123");
-        RuntimeException exception = new RuntimeException("Error sending message");
-        ListenableFuture<SendResult<String, Credit>> future = mock(ListenableFuture.class);
-        when(kafkaTemplate.send("credit-created", credit.getId(), credit))
-                .thenReturn(future);
-        doAnswer(invocation -> {
-            SuccessCallback<SendResult<String, Credit>> successCallback = invocation.getArgument(0);
-            FailureCallback failureCallback = invocation.getArgument(1);
-            failureCallback.onFailure(exception);
-            return null;
-        }).when(future).addCallback(any(SuccessCallback.class), any(FailureCallback.class));
+        when(outboxEventRepository.insert(anyList()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<List<OutboxEvent>>getArgument(0)));
         // Act
-        creditEventProducer.publishCreditCreated(credit);
+        StepVerifier.create(creditEventProducer.publishCreditsCreated(List.of(createCredit("1"), createCredit("2"))))
+                .verifyComplete();
         // Assert
-        verify(kafkaTemplate).send("credit-created", credit.getId(), credit);
+        ArgumentCaptor<List<OutboxEvent>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository).insert(inserted.capture());
+        assertEquals(List.of("1", "2"), inserted.getValue().stream()
+                .map(OutboxEvent::getAggregateId)
+                .collect(Collectors.toList()));
+        assertEquals("CREATED", inserted.getValue().get(1).getEventType());
+        verify(outboxEventRepository, never()).insert(any(OutboxEvent.class));
     }
     @Test
-    void publishCreditUpdated_Success() {
+    void publishCreditCreated_LegacyTopicsEnabled_AlsoRecordsEntityJson() throws IOException {
         // Arrange
+        CreditEventProducer producer = new CreditEventProducer(outboxEventRepository,
+                new CreditProductEventMapper(), eventCodec, new LegacyEntityEventCodec(), true);
         Credit credit = createCredit("123");
-        ListenableFuture<SendResult<String, Credit>> future = mock(ListenableFuture.class);
-        when(kafkaTemplate.send("credit-updated", credit.getId(), credit))
-                .thenReturn(future);
-        doAnswer(invocation -> {
-            SuccessCallback<SendResult<String, Credit>> successCallback = invocation.getArgument(0);
-            FailureCallback failureCallback = invocation.getArgument(1);
-            successCallback.onSuccess(mock(SendResult.class));
-            return null;
-        }).when(future).addCallback(any(SuccessCallback.class), any(FailureCallback.class));
+        when(outboxEventRepository.insert(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
         // Act
-        creditEventProducer.publishCreditUpdated(credit);
+        StepVerifier.create(producer.publishCreditCreated(credit))
+                .verifyComplete();
         // Assert
-        verify(kafkaTemplate).send("credit-updated", credit.getId(), credit);
+        ArgumentCaptor<OutboxEvent> inserted = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository, times(2)).insert(inserted.capture());
+        assertEquals("credit-created.v2", inserted.getAllValues().get(0).getTopic());
+        OutboxEvent legacy = inserted.getAllValues().get(1);
+        assertEquals("credit-created", legacy.getTopic());
+        assertEquals("CREATED", legacy.getEventType());
+        assertEquals("123", new ObjectMapper().readTree(legacy.getPayload()).get("id").asText());
     }
     @Test
-    void publishCreditUpdated_Error() {
+    void publishCreditCreated_Error() {
         // Arrange
         Credit credit = createCredit("123");
-        RuntimeException exception = new RuntimeException("Error sending message");
-        ListenableFuture<SendResult<String, Credit>> future = mock(ListenableFuture.class);
-        when(kafkaTemplate.send("credit-updated", credit.getId(), credit))
-                .thenReturn(future);
-        doAnswer(invocation -> {
-            SuccessCallback<SendResult<String, Credit>> successCallback = invocation.getArgument(0);
-            FailureCallback failureCallback = invocation.getArgument(1);
-            failureCallback.onFailure(exception);
-            return null;
-        }).when(future).addCallback(any(SuccessCallback.class), any(FailureCallback.class));
+        when(outboxEventRepository.insert(any(OutboxEvent.class)))
+                .thenReturn(Mono.error(new RuntimeException("Error writing outbox")));
+        // Act & Assert
+        StepVerifier.create(creditEventProducer.publishCreditCreated(credit))
+                .expectErrorMessage("Error writing outbox")
+                .verify();
+    }
+    @Test
+    void publishCreditUpdated_BalanceChanged_RecordsOnlyTheChange() throws IOException {
+        // Arrange
+        Credit previous = createCredit("123");
+        Credit credit = previous.toBuilder().remainingBalance(new BigDecimal("1500")).build();
+        when(outboxEventRepository.insert(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
         // Act
-        creditEventProducer.publishCreditUpdated(credit);
+        StepVerifier.create(creditEventProducer.publishCreditUpdated(previous, credit))
+                .verifyComplete();
         // Assert
-        verify(kafkaTemplate).send("credit-updated", credit.getId(), credit);
+        OutboxEvent outboxEvent = captureOutboxEvent();
+        assertEquals("credit-updated.v2", outboxEvent.getTopic());
+        CreditProductEvent event = eventCodec.decode(outboxEvent.getPayload());
+        assertEquals(CreditProductEventType.BALANCE_CHANGED, event.getType());
+        assertEquals(0, new BigDecimal("1500").compareTo(event.getBalance()));
+        assertNull(event.getLimit());
+    }
+    @Test
+    void publishCreditUpdated_NothingChanged_RecordsNothing() {
+        // Arrange
+        Credit previous = createCredit("123");
+        // Act
+        StepVerifier.create(creditEventProducer.publishCreditUpdated(previous, previous.toBuilder().build()))
+                .verifyComplete();
+        // Assert
+        verifyNoInteractions(outboxEventRepository);
+    }
+    private OutboxEvent captureOutboxEvent() {
+        ArgumentCaptor<OutboxEvent> outboxEvent = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).insert(outboxEvent.capture());
+        return outboxEvent.getValue();
     }
     private Credit createCredit(String id) {
         Credit credit = new Credit();
@@ -0,0 +1,103 @@
+package com.bank.creditservice.event;
+
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.credit.CreditType;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CreditProductEventCodecTest {
+    private final CreditProductEventCodec codec = new CreditProductEventCodec();
+    private final CreditProductEventMapper mapper = new CreditProductEventMapper();
+    private ObjectMapper jsonMapper;
+    private Credit credit;
+    @BeforeEach
+    void setUp() {
+        //Configured like spring-kafka's JsonSerializer, which used to carry the whole entity
+        jsonMapper = new ObjectMapper();
+        jsonMapper.registerModule(new JavaTimeModule());
+        jsonMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        credit = Credit.builder()
+                .id("64f1c2a9e4b0a1b2c3d4e5f6")
+                .customerId("64f1c2a9e4b0a1b2c3d4e5a1")
+                .creditType(CreditType.PERSONAL)
+                .amount(new BigDecimal("15000.00"))
+                .remainingBalance(new BigDecimal("12450.75"))
+                .interestRate(new BigDecimal("0.0650"))
+                .createdAt(LocalDateTime.of(2024, 1, 15, 9, 30, 12))
+                .modifiedAt(LocalDateTime.of(2024, 3, 2, 17, 5, 44))
+                .paymentStatus(PaymentStatus.PENDING)
+                .creditStatus(CreditStatus.ACTIVE)
+                .nextPaymentDate(LocalDateTime.of(2024, 4, 1, 0, 0))
+                .minimumPayment(new BigDecimal("1500.00"))
+                .build();
+    }
+    @Test
+    void encodeDecode_RoundTrip() throws IOException {
+        CreditProductEvent event = mapper.created(credit);
+        byte[] encoded = codec.encode(event);
+        assertEquals(CreditProductEventCodec.SCHEMA_V1, encoded[0]);
+        assertEquals(event, codec.decode(encoded));
+    }
+    @Test
+    void decode_TrailingFieldsFromNewerWriter_AreIgnored() throws IOException {
+        byte[] array = new CBORMapper().writeValueAsBytes(Arrays.asList(
+                "STATUS_CHANGED", "credit1", "customer1", 1_700_000_000_000L, null,
+                "INACTIVE", null, null, null, null, null, null, "added later"));
+        byte[] encoded = new byte[array.length + 1];
+        encoded[0] = CreditProductEventCodec.SCHEMA_V1;
+        System.arraycopy(array, 0, encoded, 1, array.length);
+        CreditProductEvent decoded = codec.decode(encoded);
+        assertEquals(CreditProductEventType.STATUS_CHANGED, decoded.getType());
+        assertEquals("INACTIVE", decoded.getStatus());
+    }
+    @Test
+    void encode_EnumsByName() throws IOException {
+        byte[] encoded = codec.encode(mapper.created(credit));
+        List<?> array = new CBORMapper().readValue(encoded, 1, encoded.length - 1, List.class);
+        assertEquals("CREATED", array.get(0));
+        assertEquals("PENDING", array.get(6));
+    }
+    @Test
+    void decode_EnumOrdinals_Fail() throws IOException {
+        byte[] array = new CBORMapper().writeValueAsBytes(Arrays.asList(
+                CreditProductEventType.STATUS_CHANGED.ordinal(), "credit1", "customer1", 1_700_000_000_000L, null,
+                null, PaymentStatus.PAID.ordinal()));
+        byte[] encoded = new byte[array.length + 1];
+        encoded[0] = CreditProductEventCodec.SCHEMA_V1;
+        System.arraycopy(array, 0, encoded, 1, array.length);
+        assertThrows(IOException.class, () -> codec.decode(encoded));
+    }
+    @Test
+    void decode_UnknownVersion_Fails() {
+        assertThrows(IOException.class, () -> codec.decode(new byte[]{0x7F, 0x01}));
+        assertThrows(IOException.class, () -> codec.decode(new byte[0]));
+    }
+    @Test
+    void compactEvents_AreSmallerThanEntityJson() throws IOException {
+        Credit paid = credit.toBuilder().paymentStatus(PaymentStatus.PAID).build();
+        CreditProductEvent statusChanged = mapper.changed(credit, paid);
+        int entitySize = jsonMapper.writeValueAsString(paid).getBytes(StandardCharsets.UTF_8).length;
+        int createdSize = codec.encode(mapper.created(credit)).length;
+        int statusChangedSize = codec.encode(statusChanged).length;
+        assertEquals(CreditProductEventType.STATUS_CHANGED, statusChanged.getType());
+        assertTrue(createdSize < entitySize / 2, "created=" + createdSize + " json=" + entitySize);
+        assertTrue(statusChangedSize < entitySize / 4, "status-changed=" + statusChangedSize + " json=" + entitySize);
+    }
+}
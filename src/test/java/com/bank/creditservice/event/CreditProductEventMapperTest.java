@@ -0,0 +1,111 @@
+package com.bank.creditservice.event;
+
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.credit.CreditType;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.CreditCardType;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CreditProductEventMapperTest {
+    private final CreditProductEventMapper mapper = new CreditProductEventMapper();
+    private Credit credit;
+    private CreditCard creditCard;
+    @BeforeEach
+    void setUp() {
+        credit = Credit.builder()
+                .id("credit1")
+                .customerId("customer1")
+                .creditType(CreditType.PERSONAL)
+                .amount(new BigDecimal("10000.00"))
+                .remainingBalance(new BigDecimal("8000.00"))
+                .interestRate(new BigDecimal("0.05"))
+                .paymentStatus(PaymentStatus.PENDING)
+                .creditStatus(CreditStatus.ACTIVE)
+                .nextPaymentDate(LocalDateTime.of(2024, 4, 1, 0, 0))
+                .minimumPayment(new BigDecimal("1000.00"))
+                .build();
+        creditCard = CreditCard.builder()
+                .id("card1")
+                .customerId("customer1")
+                .cardType(CreditCardType.PERSONAL_CREDIT_CARD)
+                .creditLimit(new BigDecimal("5000.00"))
+                .availableBalance(new BigDecimal("3000.00"))
+                .status("ACTIVE")
+                .paymentStatus(PaymentStatus.PENDING)
+                .paymentDueDate(LocalDateTime.of(2024, 4, 15, 0, 0))
+                .minimumPayment(new BigDecimal("200.00"))
+                .build();
+    }
+    @Test
+    void created_CarriesFullState() {
+        CreditProductEvent event = mapper.created(credit);
+        assertEquals(CreditProductEventType.CREATED, event.getType());
+        assertEquals("credit1", event.getProductId());
+        assertEquals("PERSONAL", event.getProductType());
+        assertEquals("ACTIVE", event.getStatus());
+        assertEquals(PaymentStatus.PENDING, event.getPaymentStatus());
+        assertEquals(new BigDecimal("10000.00"), event.getLimit());
+        assertEquals(new BigDecimal("8000.00"), event.getBalance());
+        assertEquals(new BigDecimal("0.05"), event.getInterestRate());
+        assertNotNull(event.getPaymentDueAt());
+    }
+    @Test
+    void changed_StatusOnly_IsStatusChanged() {
+        Credit after = credit.toBuilder().creditStatus(CreditStatus.DEFAULTED).build();
+        CreditProductEvent event = mapper.changed(credit, after);
+        assertEquals(CreditProductEventType.STATUS_CHANGED, event.getType());
+        assertEquals("DEFAULTED", event.getStatus());
+        assertNull(event.getPaymentStatus());
+        assertNull(event.getBalance());
+        assertNull(event.getLimit());
+        assertNull(event.getProductType());
+    }
+    @Test
+    void changed_BalanceOnly_IsBalanceChanged() {
+        CreditCard after = creditCard.toBuilder()
+                .availableBalance(new BigDecimal("2500.00"))
+                .minimumPayment(new BigDecimal("250.00"))
+                .build();
+        CreditProductEvent event = mapper.changed(creditCard, after);
+        assertEquals(CreditProductEventType.BALANCE_CHANGED, event.getType());
+        assertEquals(new BigDecimal("2500.00"), event.getBalance());
+        assertEquals(new BigDecimal("250.00"), event.getMinimumPayment());
+        assertNull(event.getStatus());
+        assertNull(event.getLimit());
+    }
+    @Test
+    void changed_StatusAndBalance_IsUpdated() {
+        Credit after = credit.toBuilder()
+                .paymentStatus(PaymentStatus.PAID)
+                .remainingBalance(new BigDecimal("7000.00"))
+                .build();
+        CreditProductEvent event = mapper.changed(credit, after);
+        assertEquals(CreditProductEventType.UPDATED, event.getType());
+        assertEquals(PaymentStatus.PAID, event.getPaymentStatus());
+        assertEquals(new BigDecimal("7000.00"), event.getBalance());
+        assertNull(event.getInterestRate());
+    }
+    @Test
+    void changed_LimitOnly_IsUpdated() {
+        CreditCard after = creditCard.toBuilder().creditLimit(new BigDecimal("8000.00")).build();
+        CreditProductEvent event = mapper.changed(creditCard, after);
+        assertEquals(CreditProductEventType.UPDATED, event.getType());
+        assertEquals(new BigDecimal("8000.00"), event.getLimit());
+        assertNull(event.getBalance());
+    }
+    @Test
+    void changed_NothingOrOnlyScale_ReturnsNull() {
+        assertNull(mapper.changed(credit, credit.toBuilder().build()));
+        assertNull(mapper.changed(credit, credit.toBuilder().remainingBalance(new BigDecimal("8000")).build()));
+    }
+}
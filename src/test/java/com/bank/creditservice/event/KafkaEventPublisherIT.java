@@ -0,0 +1,93 @@
+package com.bank.creditservice.event;
+
+import com.bank.creditservice.config.KafkaProducerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.condition.EmbeddedKafkaCondition;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Publishes through the real producer, tuned with the THROUGHPUT profile, against an embedded broker.
+ */
+@EmbeddedKafka(partitions = 3, topics = KafkaEventPublisherIT.TOPIC)
+class KafkaEventPublisherIT {
+    static final String TOPIC = "credit-created";
+    private static final int EVENTS = 2_000;
+    private static final int KEYS = 20;
+    private SimpleMeterRegistry meterRegistry;
+    private DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+    private KafkaEventPublisher publisher;
+    @BeforeEach
+    void setUp() {
+        EmbeddedKafkaBroker broker = EmbeddedKafkaCondition.getBroker();
+        Map<String, Object> producerProps = KafkaTestUtils.producerProps(broker);
+        producerProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        producerFactory = KafkaProducerConfig.ProducerProfile.THROUGHPUT.producerFactory(producerProps);
+        meterRegistry = new SimpleMeterRegistry();
+        publisher = new KafkaEventPublisher(new KafkaTemplate<>(producerFactory), meterRegistry, 4_096, 512);
+    }
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+        producerFactory.destroy();
+    }
+    @Test
+    void publish_DeliversEveryEventInOrderPerKey() {
+        Long acknowledged = Flux.range(0, EVENTS)
+                .flatMap(i -> publisher.publish(TOPIC, "credit-" + i % KEYS,
+                        String.valueOf(i).getBytes(StandardCharsets.UTF_8)), 256)
+                .count()
+                .block(Duration.ofSeconds(60));
+        assertEquals(EVENTS, acknowledged.longValue());
+        Map<String, List<Integer>> received = new HashMap<>();
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("publisher-it", "false",
+                EmbeddedKafkaCondition.getBroker());
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            EmbeddedKafkaCondition.getBroker().consumeFromAnEmbeddedTopic(consumer, TOPIC);
+            int count = 0;
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (count < EVENTS && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> record : KafkaTestUtils.getRecords(consumer, 1_000)) {
+                    received.computeIfAbsent(record.key(), key -> new ArrayList<>())
+                            .add(Integer.valueOf(record.value()));
+                    count++;
+                }
+            }
+        }
+        assertEquals(KEYS, received.size());
+        received.forEach((key, values) -> {
+            assertEquals(EVENTS / KEYS, values.size(), key);
+            List<Integer> sorted = new ArrayList<>(values);
+            Collections.sort(sorted);
+            assertEquals(sorted, values, "events for " + key + " arrived out of order");
+        });
+        assertEquals(EVENTS, meterRegistry.get("kafka.publish.latency")
+                .tag("topic", TOPIC).tag("result", "success").timer().count());
+        assertEquals(0, publisher.getFailureRatio());
+    }
+}
@@ -0,0 +1,108 @@
+package com.bank.creditservice.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KafkaEventPublisherTest {
+    private static final byte[] PAYLOAD = {0x01, 0x02, 0x03};
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+    @Test
+    void publish_Acknowledged_CompletesWithResultAndRecordsLatency() {
+        KafkaEventPublisher publisher = new KafkaEventPublisher(kafkaTemplate, meterRegistry, 16, 4);
+        SettableListenableFuture<SendResult<String, byte[]>> future = new SettableListenableFuture<>();
+        when(kafkaTemplate.send("credit-created", "1", PAYLOAD)).thenReturn(future);
+        StepVerifier.create(publisher.publish("credit-created", "1", PAYLOAD))
+                .then(() -> future.set(sendResult("credit-created", "1", PAYLOAD)))
+                .expectNextMatches(result -> result.getRecordMetadata().offset() == 42)
+                .verifyComplete();
+        assertEquals(1, meterRegistry.get("kafka.publish.latency")
+                .tag("topic", "credit-created").tag("result", "success").timer().count());
+        assertEquals(1, meterRegistry.get("kafka.publish.events")
+                .tag("topic", "credit-created").tag("result", "success").counter().count());
+        assertEquals(0, publisher.getFailureRatio());
+    }
+    @Test
+    void publish_SendFails_ErrorsAndCountsFailure() {
+        KafkaEventPublisher publisher = new KafkaEventPublisher(kafkaTemplate, meterRegistry, 16, 4);
+        SettableListenableFuture<SendResult<String, byte[]>> failed = new SettableListenableFuture<>();
+        failed.setException(new TimeoutException("Expiring 1 record(s)"));
+        SettableListenableFuture<SendResult<String, byte[]>> acknowledged = new SettableListenableFuture<>();
+        acknowledged.set(sendResult("credit-updated", "2", PAYLOAD));
+        when(kafkaTemplate.send("credit-updated", "1", PAYLOAD)).thenReturn(failed);
+        when(kafkaTemplate.send("credit-updated", "2", PAYLOAD)).thenReturn(acknowledged);
+        StepVerifier.create(publisher.publish("credit-updated", "1", PAYLOAD))
+                .expectError(TimeoutException.class)
+                .verify();
+        StepVerifier.create(publisher.publish("credit-updated", "2", PAYLOAD))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, meterRegistry.get("kafka.publish.events")
+                .tag("topic", "credit-updated").tag("result", "failure").counter().count());
+        assertEquals(0.5, meterRegistry.get("kafka.publish.failure.ratio").gauge().value());
+    }
+    @Test
+    void publish_SendThrows_PipelineKeepsRunning() {
+        KafkaEventPublisher publisher = new KafkaEventPublisher(kafkaTemplate, meterRegistry, 16, 4);
+        SettableListenableFuture<SendResult<String, byte[]>> acknowledged = new SettableListenableFuture<>();
+        acknowledged.set(sendResult("credit-created", "2", PAYLOAD));
+        when(kafkaTemplate.send("credit-created", "1", PAYLOAD))
+                .thenThrow(new IllegalStateException("Can't serialize"));
+        when(kafkaTemplate.send("credit-created", "2", PAYLOAD)).thenReturn(acknowledged);
+        StepVerifier.create(publisher.publish("credit-created", "1", PAYLOAD))
+                .expectErrorMessage("Can't serialize")
+                .verify();
+        StepVerifier.create(publisher.publish("credit-created", "2", PAYLOAD))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+    @Test
+    void publish_BrokerBehind_LimitsInFlightAndRejectsWhenBufferIsFull() {
+        KafkaEventPublisher publisher = new KafkaEventPublisher(kafkaTemplate, meterRegistry, 8, 1);
+        SettableListenableFuture<SendResult<String, byte[]>> pending = new SettableListenableFuture<>();
+        when(kafkaTemplate.send(eq("credit-created"), anyString(), eq(PAYLOAD))).thenReturn(pending);
+        List<Throwable> errors = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            publisher.publish("credit-created", String.valueOf(i), PAYLOAD).subscribe(null, errors::add);
+        }
+        verify(kafkaTemplate, times(1)).send(eq("credit-created"), anyString(), eq(PAYLOAD));
+        assertTrue(errors.size() > 0 && errors.size() < 32, "rejected " + errors.size());
+        assertTrue(errors.stream().allMatch(e -> e.getMessage().startsWith("Event queue is full")));
+        assertEquals(errors.size(), meterRegistry.get("kafka.publish.events")
+                .tag("result", "rejected").counter().count());
+        assertEquals(32 - errors.size() - 1, meterRegistry.get("kafka.publish.queued").gauge().value());
+    }
+    private SendResult<String, byte[]> sendResult(String topic, String key, byte[] value) {
+        RecordMetadata metadata = new RecordMetadata(new TopicPartition(topic, 0), 0, 42, 0L, 0L, 0, 0);
+        return new SendResult<>(new ProducerRecord<>(topic, key, value), metadata);
+    }
+}
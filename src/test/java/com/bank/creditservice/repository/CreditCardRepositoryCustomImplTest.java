@@ -0,0 +1,108 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CreditCardRepositoryCustomImplTest {
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @InjectMocks
+    private CreditCardRepositoryCustomImpl repository;
+    @Test
+    void reserveBalance_OnlyWhenEnoughIsAvailable() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(CreditCard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        StepVerifier.create(repository.reserveBalance("card1", new BigDecimal("50.00")))
+                .expectNext(true)
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<AggregationUpdate> update = ArgumentCaptor.forClass(AggregationUpdate.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(CreditCard.class));
+        assertEquals(new Document("$gte", List.of(new Document("$toDecimal", "$availableBalance"),
+                new Decimal128(new BigDecimal("50.00")))), query.getValue().getQueryObject().get("$expr"));
+        assertEquals(new Document("$toString", new Document("$add", List.of(
+                        new Document("$toDecimal", "$availableBalance"), new Decimal128(new BigDecimal("-50.00"))))),
+                newBalance(update.getValue()));
+    }
+    @Test
+    void restoreBalance_CappedAtCreditLimit() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(CreditCard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        StepVerifier.create(repository.restoreBalance("card1", new BigDecimal("50.00")))
+                .expectNext(true)
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<AggregationUpdate> update = ArgumentCaptor.forClass(AggregationUpdate.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(CreditCard.class));
+        assertEquals(new Document("id", "card1"), query.getValue().getQueryObject());
+        assertEquals(new Document("$toString", new Document("$min", List.of(
+                        new Document("$toDecimal", "$creditLimit"),
+                        new Document("$add", List.of(new Document("$toDecimal", "$availableBalance"),
+                                new Decimal128(new BigDecimal("50.00"))))))),
+                newBalance(update.getValue()));
+    }
+    @Test
+    void updateFieldsAndLimit_MovesBalanceByTheLimitChange() {
+        CreditCard previous = CreditCard.builder().id("card1").version(3L).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(CreditCard.class))).thenReturn(Mono.just(previous));
+        StepVerifier.create(repository.updateFieldsAndLimit("card1", 3L, new BigDecimal("8000"),
+                        new Update().set("status", "BLOCKED")))
+                .expectNext(previous)
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<AggregationUpdate> update = ArgumentCaptor.forClass(AggregationUpdate.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(),
+                eq(CreditCard.class));
+        assertEquals(new Document("id", "card1").append("version", 3L), query.getValue().getQueryObject());
+        assertEquals(new Document("$toString", new Document("$add", List.of(
+                        new Document("$toDecimal", "$availableBalance"),
+                        new Document("$subtract", List.of(new Decimal128(new BigDecimal("8000")),
+                                new Document("$ifNull", List.of(new Document("$toDecimal", "$creditLimit"),
+                                        Decimal128.POSITIVE_ZERO))))))),
+                newBalance(update.getValue()));
+        List<String> setFields = update.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).stream()
+                .flatMap(stage -> ((Document) stage.get("$set")).keySet().stream())
+                .collect(Collectors.toList());
+        assertEquals(List.of("availableBalance", "creditLimit", "status", "version"), setFields);
+        assertFalse(options.getValue().isReturnNew());
+    }
+    private Object newBalance(AggregationUpdate update) {
+        return update.toPipeline(Aggregation.DEFAULT_CONTEXT).stream()
+                .map(stage -> (Document) stage.get("$set"))
+                .filter(set -> set != null && set.containsKey("availableBalance"))
+                .findFirst()
+                .map(set -> set.get("availableBalance"))
+                .orElse(null);
+    }
+}
@@ -0,0 +1,83 @@
+package com.bank.creditservice.repository;
+
+import com.bank.creditservice.dto.CreditSummary;
+import com.bank.creditservice.model.credit.Credit;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CreditRepositoryCustomImplTest {
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @InjectMocks
+    private CreditRepositoryCustomImpl repository;
+    @Test
+    void findSummariesByCustomerId_ProjectsRequestedFields() {
+        CreditSummary summary = CreditSummary.builder().id("1").build();
+        when(mongoTemplate.getCollectionName(Credit.class)).thenReturn("credits");
+        when(mongoTemplate.find(any(Query.class), eq(CreditSummary.class), eq("credits")))
+                .thenReturn(Flux.just(summary));
+        StepVerifier.create(repository.findSummariesByCustomerId("customer1", List.of("id", "remainingBalance")))
+                .expectNext(summary)
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(CreditSummary.class), eq("credits"));
+        assertEquals(new Document("customerId", "customer1"), query.getValue().getQueryObject());
+        assertEquals(new Document("id", 1).append("remainingBalance", 1), query.getValue().getFieldsObject());
+    }
+    @Test
+    void updateFields_WithExpectedVersion_MatchesVersionAndBumpsIt() {
+        Credit previous = Credit.builder().id("credit1").version(3L).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Credit.class))).thenReturn(Mono.just(previous));
+        StepVerifier.create(repository.updateFields("credit1", 3L,
+                        new Update().set("remainingBalance", new BigDecimal("900.00"))))
+                .expectNext(previous)
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), eq(Credit.class));
+        assertEquals(new Document("id", "credit1").append("version", 3L), query.getValue().getQueryObject());
+        assertEquals(new Document("remainingBalance", new BigDecimal("900.00")),
+                update.getValue().getUpdateObject().get("$set"));
+        assertEquals(new Document("version", 1), update.getValue().getUpdateObject().get("$inc"));
+        assertFalse(options.getValue().isReturnNew());
+    }
+    @Test
+    void updateFields_WithoutExpectedVersion_MatchesIdOnly() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Credit.class))).thenReturn(Mono.empty());
+        StepVerifier.create(repository.updateFields("credit1", null,
+                        new Update().set("minimumPayment", BigDecimal.ONE)))
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class),
+                eq(Credit.class));
+        assertEquals(new Document("id", "credit1"), query.getValue().getQueryObject());
+        assertEquals(new Document("version", 1), update.getValue().getUpdateObject().get("$inc"));
+    }
+}
@@ -0,0 +1,167 @@
+package com.bank.creditservice.scheduled;
+
+import com.bank.creditservice.event.KafkaEventPublisher;
+import com.bank.creditservice.model.outbox.OutboxEvent;
+import com.bank.creditservice.model.outbox.OutboxRelayLease;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.support.SendResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @Mock
+    private KafkaEventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelay outboxRelay;
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outboxRelay = new OutboxRelay(mongoTemplate, eventPublisher, meterRegistry, 100, 30000, 3);
+    }
+    @Test
+    void relay_PublishesEachAggregateInOrderAndRemovesSentEvents() {
+        LocalDateTime createdAt = LocalDateTime.now().minusSeconds(5);
+        holdLease();
+        outbox(event("1", "credit-a", createdAt), event("2", "credit-b", createdAt),
+                event("3", "credit-a", createdAt.plusSeconds(1)));
+        when(eventPublisher.publish(anyString(), anyString(), any(byte[].class))).thenAnswer(invocation -> {
+            published.add(new String(invocation.<byte[]>getArgument(2), StandardCharsets.UTF_8));
+            return Mono.just(mock(SendResult.class));
+        });
+        when(mongoTemplate.remove(any(Query.class), eq(OutboxEvent.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+        StepVerifier.create(outboxRelay.relay())
+                .expectNext(3L)
+                .verifyComplete();
+        assertEquals(3, published.size());
+        assertTrue(published.indexOf("payload-1") < published.indexOf("payload-3"));
+        verify(mongoTemplate, times(3)).remove(any(Query.class), eq(OutboxEvent.class));
+        assertTrue(outboxRelay.getLagMillis() >= 5000);
+        assertEquals(3, meterRegistry.get("outbox.relayed").tag("result", "success").counter().count());
+    }
+    @Test
+    void relay_PublishFails_KeepsEventAndHoldsBackItsAggregate() {
+        LocalDateTime createdAt = LocalDateTime.now();
+        holdLease();
+        outbox(event("1", "credit-a", createdAt), event("2", "credit-b", createdAt),
+                event("3", "credit-a", createdAt.plusSeconds(1)));
+        when(eventPublisher.publish(anyString(), anyString(), any(byte[].class))).thenAnswer(invocation -> {
+            published.add(new String(invocation.<byte[]>getArgument(2), StandardCharsets.UTF_8));
+            return "credit-a".equals(invocation.getArgument(1))
+                    ? Mono.error(new RuntimeException("Broker unavailable"))
+                    : Mono.just(mock(SendResult.class));
+        });
+        when(mongoTemplate.remove(any(Query.class), eq(OutboxEvent.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(OutboxEvent.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        StepVerifier.create(outboxRelay.relay())
+                .expectNext(1L)
+                .verifyComplete();
+        assertEquals(List.of("payload-1", "payload-2"), published.stream().sorted()
+                .collect(Collectors.toList()));
+        ArgumentCaptor<Update> failure = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), failure.capture(), eq(OutboxEvent.class));
+        assertEquals(1, ((Document) failure.getValue().getUpdateObject().get("$inc")).get("attempts"));
+        assertFalse(((Document) failure.getValue().getUpdateObject().get("$set")).containsKey("parkedAt"));
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(OutboxEvent.class));
+    }
+    @Test
+    void relay_LastAttemptFails_ParksEventOutOfLaterBatches() {
+        holdLease();
+        OutboxEvent poisoned = event("1", "credit-a", LocalDateTime.now());
+        poisoned.setAttempts(2);
+        outbox(poisoned);
+        when(eventPublisher.publish(anyString(), anyString(), any(byte[].class)))
+                .thenReturn(Mono.error(new RuntimeException("Record rejected by serializer")));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(OutboxEvent.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        StepVerifier.create(outboxRelay.relay())
+                .expectNext(0L)
+                .verifyComplete();
+        ArgumentCaptor<Update> failure = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), failure.capture(), eq(OutboxEvent.class));
+        assertTrue(((Document) failure.getValue().getUpdateObject().get("$set")).containsKey("parkedAt"));
+        assertEquals(1, meterRegistry.get("outbox.parked").counter().count());
+        ArgumentCaptor<Query> batch = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(batch.capture(), eq(OutboxEvent.class));
+        assertEquals(new Document("parkedAt", null), batch.getValue().getQueryObject());
+    }
+    @Test
+    void relay_LeaseHeldByAnotherInstance_DoesNothing() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(OutboxRelayLease.class))).thenReturn(Mono.error(new DuplicateKeyException("lease taken")));
+        StepVerifier.create(outboxRelay.relay())
+                .expectNext(0L)
+                .verifyComplete();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(OutboxEvent.class));
+        verifyNoInteractions(eventPublisher);
+    }
+    @Test
+    void relay_EmptyOutbox_ResetsLag() {
+        holdLease();
+        when(mongoTemplate.find(any(Query.class), eq(OutboxEvent.class))).thenReturn(Flux.empty());
+        StepVerifier.create(outboxRelay.relay())
+                .expectNext(0L)
+                .verifyComplete();
+        assertEquals(0, outboxRelay.getLagMillis());
+    }
+    private void holdLease() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(OutboxRelayLease.class))).thenAnswer(invocation -> {
+                    Document set = (Document) invocation.<Update>getArgument(1).getUpdateObject().get("$set");
+                    return Mono.just(OutboxRelayLease.builder()
+                            .id("outbox-relay")
+                            .owner((String) set.get("owner"))
+                            .leaseUntil((LocalDateTime) set.get("leaseUntil"))
+                            .build());
+                });
+    }
+    private void outbox(OutboxEvent... events) {
+        when(mongoTemplate.find(any(Query.class), eq(OutboxEvent.class))).thenReturn(Flux.just(events));
+    }
+    private OutboxEvent event(String id, String aggregateId, LocalDateTime createdAt) {
+        return OutboxEvent.builder()
+                .id(id)
+                .aggregateType("Credit")
+                .aggregateId(aggregateId)
+                .topic("credit-updated")
+                .eventType("STATUS_CHANGED")
+                .payload(("payload-" + id).getBytes(StandardCharsets.UTF_8))
+                .createdAt(createdAt)
+                .build();
+    }
+}
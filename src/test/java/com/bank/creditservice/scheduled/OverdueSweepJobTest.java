@@ -0,0 +1,221 @@
+package com.bank.creditservice.scheduled;
+
+import com.bank.creditservice.model.job.OverdueSweepCheckpoint;
+import com.bank.creditservice.model.job.SweepPartitionStatus;
+import com.bank.creditservice.repository.OverdueSweepCheckpointRepository;
+import com.bank.creditservice.service.CustomerDebtStatusService;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OverdueSweepJobTest {
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @Mock
+    private OverdueSweepCheckpointRepository checkpointRepository;
+    @Mock
+    private CustomerDebtStatusService customerDebtStatusService;
+    private OverdueSweepJob overdueSweepJob;
+    private LocalDateTime asOf;
+    @BeforeEach
+    void setUp() {
+        overdueSweepJob = new OverdueSweepJob(mongoTemplate, checkpointRepository, customerDebtStatusService,
+                3, 30, 2, 600000, 3);
+        asOf = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+    }
+    @Test
+    void newCheckpoint_PartitionsAreContiguousAndLastIsOpenEnded() {
+        OverdueSweepCheckpoint first = overdueSweepJob.newCheckpoint("2024-01-31", asOf,
+                OverdueSweepTarget.CREDITS, 0);
+        OverdueSweepCheckpoint second = overdueSweepJob.newCheckpoint("2024-01-31", asOf,
+                OverdueSweepTarget.CREDITS, 1);
+        OverdueSweepCheckpoint last = overdueSweepJob.newCheckpoint("2024-01-31", asOf,
+                OverdueSweepTarget.CREDITS, 2);
+        assertEquals("2024-01-31:CREDITS:0", first.getId());
+        assertEquals(asOf, first.getDueTo());
+        assertEquals(first.getDueFrom(), second.getDueTo());
+        assertEquals(second.getDueFrom(), last.getDueTo());
+        assertNull(last.getDueFrom());
+        assertEquals(SweepPartitionStatus.PENDING, last.getStatus());
+    }
+    @Test
+    void run_ExistingRun_ClaimsOnlyUnfinishedPartitions() {
+        OverdueSweepCheckpoint unfinished = overdueSweepJob.newCheckpoint("2024-01-31", asOf,
+                OverdueSweepTarget.CREDIT_CARDS, 1);
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        List<Document> releases = new ArrayList<>();
+        when(checkpointRepository.insert(any(OverdueSweepCheckpoint.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("already planned")));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(OverdueSweepCheckpoint.class))).thenAnswer(invocation -> {
+                    Document set = (Document) invocation.<Update>getArgument(1).getUpdateObject().get("$set");
+                    if (set.containsKey("owner")) {
+                        if (claimed.getAndSet(true)) {
+                            return Mono.empty();
+                        }
+                        unfinished.setStatus(SweepPartitionStatus.RUNNING);
+                        unfinished.setAttempts(1);
+                        return Mono.just(unfinished);
+                    }
+                    releases.add(set);
+                    unfinished.setStatus((SweepPartitionStatus) set.get("status"));
+                    unfinished.setScanned((Long) set.get("scanned"));
+                    unfinished.setUpdated((Long) set.get("updated"));
+                    return Mono.just(unfinished);
+                });
+        when(mongoTemplate.findDistinct(any(Query.class), eq("customerId"), any(), eq(String.class)))
+                .thenReturn(Flux.just("customer1"));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), any(Class.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)));
+        when(customerDebtStatusService.refresh("customer1")).thenReturn(Mono.empty());
+        when(checkpointRepository.findByRunIdOrderByTargetAscPartitionAsc("2024-01-31"))
+                .thenAnswer(invocation -> Flux.just(unfinished));
+        StepVerifier.create(overdueSweepJob.run(asOf))
+                .assertNext(status -> {
+                    assertEquals(1, status.getCompletedPartitions());
+                    assertEquals(4, status.getScanned());
+                    assertEquals(4, status.getUpdated());
+                })
+                .verifyComplete();
+        verify(checkpointRepository, times(6)).insert(any(OverdueSweepCheckpoint.class));
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateMulti(any(Query.class), updates.capture(), any(Class.class));
+        for (Update update : updates.getAllValues()) {
+            //Bumped like every other write, so a concurrent optimistic save of the same document fails and retries
+            assertEquals(1, ((Document) update.getUpdateObject().get("$inc")).get("version"));
+        }
+        assertEquals(1, releases.size());
+        assertEquals(SweepPartitionStatus.COMPLETED, releases.get(0).get("status"));
+    }
+    @Test
+    void run_PartitionFails_ReleasesItAsFailedForAnotherAttempt() {
+        OverdueSweepCheckpoint partition = overdueSweepJob.newCheckpoint("2024-01-31", asOf,
+                OverdueSweepTarget.CREDITS, 0);
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        List<Document> releases = new ArrayList<>();
+        when(checkpointRepository.insert(any(OverdueSweepCheckpoint.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(OverdueSweepCheckpoint.class))).thenAnswer(invocation -> {
+                    Document set = (Document) invocation.<Update>getArgument(1).getUpdateObject().get("$set");
+                    if (set.containsKey("owner")) {
+                        return claimed.getAndSet(true) ? Mono.empty() : Mono.just(partition);
+                    }
+                    releases.add(set);
+                    partition.setStatus((SweepPartitionStatus) set.get("status"));
+                    return Mono.just(partition);
+                });
+        when(mongoTemplate.findDistinct(any(Query.class), eq("customerId"), any(), eq(String.class)))
+                .thenReturn(Flux.error(new RuntimeException("Mongo unavailable")));
+        when(checkpointRepository.findByRunIdOrderByTargetAscPartitionAsc("2024-01-31"))
+                .thenAnswer(invocation -> Flux.just(partition));
+        StepVerifier.create(overdueSweepJob.run(asOf))
+                .assertNext(status -> assertEquals(0, status.getCompletedPartitions()))
+                .verifyComplete();
+        assertEquals(1, releases.size());
+        assertEquals(SweepPartitionStatus.FAILED, releases.get(0).get("status"));
+        assertEquals("Mongo unavailable", releases.get(0).get("lastError"));
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), any(Class.class));
+    }
+    @Test
+    void run_PartitionOutlastsLease_RenewsLeaseUntilDone() {
+        OverdueSweepCheckpoint partition = claimedPartition();
+        AtomicInteger renewals = new AtomicInteger();
+        List<Document> releases = new ArrayList<>();
+        givenSinglePartitionRun(partition, new ArrayList<>(), set -> {
+            renewals.incrementAndGet();
+            return Mono.just(partition);
+        }, releases);
+        when(mongoTemplate.findDistinct(any(Query.class), eq("customerId"), any(), eq(String.class)))
+                .thenAnswer(invocation -> Flux.just("customer1").delaySubscription(Duration.ofMinutes(25)));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), any(Class.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(customerDebtStatusService.refresh("customer1")).thenReturn(Mono.empty());
+        StepVerifier.withVirtualTime(() -> overdueSweepJob.run(asOf))
+                .thenAwait(Duration.ofMinutes(30))
+                .assertNext(status -> assertEquals(1, status.getCompletedPartitions()))
+                .verifyComplete();
+        assertEquals(7, renewals.get());
+        assertEquals(1, releases.size());
+        assertEquals(SweepPartitionStatus.COMPLETED, releases.get(0).get("status"));
+    }
+    @Test
+    void run_LeaseExpiredAndReclaimed_StopsSweepingPartition() {
+        OverdueSweepCheckpoint partition = claimedPartition();
+        List<Query> claims = new ArrayList<>();
+        List<Document> releases = new ArrayList<>();
+        givenSinglePartitionRun(partition, claims, set -> Mono.empty(), releases);
+        when(mongoTemplate.findDistinct(any(Query.class), eq("customerId"), any(), eq(String.class)))
+                .thenAnswer(invocation -> Flux.just("customer1").delaySubscription(Duration.ofMinutes(25)));
+        StepVerifier.withVirtualTime(() -> overdueSweepJob.run(asOf))
+                .thenAwait(Duration.ofMinutes(30))
+                .assertNext(status -> assertEquals(0, status.getCompletedPartitions()))
+                .verifyComplete();
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), any(Class.class));
+        assertEquals(1, releases.size());
+        assertEquals(SweepPartitionStatus.FAILED, releases.get(0).get("status"));
+        List<?> claimable = (List<?>) claims.get(0).getQueryObject().get("$or");
+        Document expiredLease = (Document) claimable.get(1);
+        assertEquals(SweepPartitionStatus.RUNNING, expiredLease.get("status"));
+        assertTrue(((Document) expiredLease.get("leaseUntil")).containsKey("$lt"));
+        assertEquals(new Document("$lt", 3), expiredLease.get("attempts"));
+    }
+    private OverdueSweepCheckpoint claimedPartition() {
+        OverdueSweepCheckpoint partition = overdueSweepJob.newCheckpoint("2024-01-31", asOf,
+                OverdueSweepTarget.CREDITS, 0);
+        partition.setStatus(SweepPartitionStatus.RUNNING);
+        partition.setAttempts(1);
+        return partition;
+    }
+    private void givenSinglePartitionRun(OverdueSweepCheckpoint partition, List<Query> claims,
+                                         Function<Document, Mono<OverdueSweepCheckpoint>> renew,
+                                         List<Document> releases) {
+        when(checkpointRepository.insert(any(OverdueSweepCheckpoint.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(OverdueSweepCheckpoint.class))).thenAnswer(invocation -> {
+                    Document set = (Document) invocation.<Update>getArgument(1).getUpdateObject().get("$set");
+                    if (set.containsKey("owner")) {
+                        claims.add(invocation.getArgument(0));
+                        return claims.size() == 1 ? Mono.just(partition) : Mono.empty();
+                    }
+                    if (!set.containsKey("status")) {
+                        return renew.apply(set);
+                    }
+                    releases.add(set);
+                    partition.setStatus((SweepPartitionStatus) set.get("status"));
+                    return Mono.just(partition);
+                });
+        when(checkpointRepository.findByRunIdOrderByTargetAscPartitionAsc("2024-01-31"))
+                .thenAnswer(invocation -> Flux.just(partition));
+    }
+}
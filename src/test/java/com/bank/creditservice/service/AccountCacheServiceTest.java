@@ -0,0 +1,88 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.account.Account;
+import com.bank.creditservice.model.account.AccountType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountCacheServiceTest {
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    private SimpleMeterRegistry meterRegistry;
+    private AccountCacheService accountCacheService;
+    private Account testAccount;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountCacheService = new AccountCacheService(redisTemplate, meterRegistry, 60000);
+        testAccount = new Account();
+        testAccount.setId("account1");
+        testAccount.setCustomerId("customer1");
+        testAccount.setAccountType(AccountType.CHECKING);
+        testAccount.setPymAccount(true);
+    }
+    @Test
+    void saveAndGetAccounts_RoundTripsThroughRedisWithTtl() {
+        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.set(eq("Accounts:customer1"), valueCaptor.capture(), eq(Duration.ofMinutes(1))))
+                .thenReturn(Mono.just(Boolean.TRUE));
+        StepVerifier.create(accountCacheService.saveAccounts("customer1", Collections.singletonList(testAccount)))
+                .verifyComplete();
+        when(valueOperations.get("Accounts:customer1")).thenAnswer(invocation -> Mono.just(valueCaptor.getValue()));
+        StepVerifier.create(accountCacheService.getAccounts("customer1"))
+                .assertNext(accounts -> {
+                    assertEquals(1, accounts.size());
+                    assertEquals("account1", accounts.get(0).getId());
+                    assertEquals(AccountType.CHECKING, accounts.get(0).getAccountType());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getAccounts_RecordsHitsAndMisses() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("Accounts:customer1")).thenReturn(Mono.just("[{\"id\":\"account1\"}]"));
+        when(valueOperations.get("Accounts:customer2")).thenReturn(Mono.empty());
+        StepVerifier.create(accountCacheService.getAccounts("customer1")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(accountCacheService.getAccounts("customer1")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(accountCacheService.getAccounts("customer2")).verifyComplete();
+        assertEquals(2, meterRegistry.get("cache.gets").tag("result", "hit").counter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("result", "miss").counter().count());
+        assertEquals(2.0 / 3, meterRegistry.get("cache.hit.ratio").gauge().value(), 0.0001);
+    }
+    @Test
+    void getAccounts_RedisError_TreatedAsMiss() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenReturn(Mono.error(new RuntimeException("Redis down")));
+        StepVerifier.create(accountCacheService.getAccounts("customer1"))
+                .verifyComplete();
+        assertEquals(1, meterRegistry.get("cache.gets").tag("result", "miss").counter().count());
+    }
+    @Test
+    void evictAccounts_DeletesKeyAndSwallowsErrors() {
+        when(redisTemplate.delete("Accounts:customer1")).thenReturn(Mono.error(new RuntimeException("Redis down")));
+        StepVerifier.create(accountCacheService.evictAccounts("customer1"))
+                .verifyComplete();
+        verify(redisTemplate).delete("Accounts:customer1");
+    }
+}
@@ -0,0 +1,242 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.creditcard.AuthorizationStatus;
+import com.bank.creditservice.model.creditcard.CardAuthorization;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.repository.CardAuthorizationRepository;
+import com.bank.creditservice.repository.CreditCardRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardAuthorizationServiceTest {
+    private static final String DECLINED = "Authorization declined: insufficient available balance or card not active";
+    @Mock
+    private CreditCardRepository creditCardRepository;
+    @Mock
+    private CardAuthorizationRepository cardAuthorizationRepository;
+    @Mock
+    private TransactionalOperator transactionalOperator;
+    private SimpleMeterRegistry meterRegistry;
+    private CardAuthorizationService cardAuthorizationService;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cardAuthorizationService = new CardAuthorizationService(creditCardRepository, cardAuthorizationRepository,
+                transactionalOperator, meterRegistry, 200);
+        lenient().when(transactionalOperator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(cardAuthorizationRepository.insert(anyList())).thenAnswer(invocation ->
+                Flux.fromIterable(invocation.<List<CardAuthorization>>getArgument(0)));
+    }
+    @Test
+    void authorize_BalanceCovers_HoldsFunds() {
+        when(creditCardRepository.reserveBalance("card1", new BigDecimal("50.00"))).thenReturn(Mono.just(true));
+        StepVerifier.create(cardAuthorizationService.authorize("card1", new BigDecimal("50.00"), "order-1"))
+                .assertNext(hold -> {
+                    assertEquals("card1", hold.getCreditCardId());
+                    assertEquals(AuthorizationStatus.HELD, hold.getStatus());
+                    assertEquals("order-1", hold.getReference());
+                })
+                .verifyComplete();
+        verify(cardAuthorizationRepository).insert(anyList());
+    }
+    @Test
+    void authorize_BalanceTooLow_Declines() {
+        when(creditCardRepository.reserveBalance("card1", new BigDecimal("50.00"))).thenReturn(Mono.just(false));
+        StepVerifier.create(cardAuthorizationService.authorize("card1", new BigDecimal("50.00"), null))
+                .expectErrorMessage(DECLINED)
+                .verify();
+        verify(cardAuthorizationRepository, never()).insert(anyList());
+        verify(creditCardRepository, never()).findById(any(String.class));
+    }
+    @Test
+    void authorize_NonPositiveAmount_Error() {
+        StepVerifier.create(cardAuthorizationService.authorize("card1", BigDecimal.ZERO, null))
+                .expectErrorMessage("Authorization amount must be positive")
+                .verify();
+        verifyNoInteractions(creditCardRepository);
+    }
+    @Test
+    void authorize_HotCard_CommitsQueuedHoldsTogether() {
+        Sinks.One<Boolean> firstCommit = Sinks.one();
+        when(creditCardRepository.reserveBalance(eq("card1"), any(BigDecimal.class))).thenAnswer(invocation ->
+                invocation.<BigDecimal>getArgument(1).compareTo(BigDecimal.TEN) == 0
+                        ? firstCommit.asMono()
+                        : Mono.just(true));
+        List<CardAuthorization> holds = new CopyOnWriteArrayList<>();
+        for (String amount : List.of("10", "20", "30", "40")) {
+            cardAuthorizationService.authorize("card1", new BigDecimal(amount), null).subscribe(holds::add);
+        }
+        assertEquals(0, holds.size());
+        firstCommit.tryEmitValue(true);
+        assertEquals(4, holds.size());
+        verify(creditCardRepository).reserveBalance("card1", new BigDecimal("90"));
+        verify(cardAuthorizationRepository, times(2)).insert(anyList());
+        DistributionSummary batchSizes = meterRegistry.get("card.authorization.batch.size").summary();
+        assertEquals(2, batchSizes.count());
+        assertEquals(3, batchSizes.max());
+    }
+    @Test
+    void authorize_QueuedTotalDoesNotFit_ApprovesThoseThatFitInArrivalOrder() {
+        Sinks.One<Boolean> firstCommit = Sinks.one();
+        CreditCard card = CreditCard.builder().id("card1").status("ACTIVE").availableBalance(new BigDecimal("90"))
+                .build();
+        when(creditCardRepository.reserveBalance(eq("card1"), any(BigDecimal.class))).thenAnswer(invocation -> {
+            BigDecimal amount = invocation.getArgument(1);
+            if (amount.compareTo(BigDecimal.TEN) == 0) {
+                return firstCommit.asMono();
+            }
+            return Mono.just(amount.compareTo(new BigDecimal("90")) <= 0);
+        });
+        when(creditCardRepository.findById("card1")).thenReturn(Mono.just(card));
+        Map<String, String> outcomes = new ConcurrentHashMap<>();
+        for (String amount : List.of("10", "60", "50", "30")) {
+            cardAuthorizationService.authorize("card1", new BigDecimal(amount), amount)
+                    .subscribe(hold -> outcomes.put(amount, "approved"), error -> outcomes.put(amount, "declined"));
+        }
+        firstCommit.tryEmitValue(true);
+        assertEquals(Map.of("10", "approved", "60", "approved", "50", "declined", "30", "approved"), outcomes);
+        verify(creditCardRepository).reserveBalance("card1", new BigDecimal("140"));
+        verify(creditCardRepository).reserveBalance("card1", new BigDecimal("90"));
+    }
+    @Test
+    void capture_PartialAmount_GivesTheRestBack() {
+        CardAuthorization hold = CardAuthorization.builder().id("auth1").creditCardId("card1")
+                .amount(new BigDecimal("100")).status(AuthorizationStatus.HELD).build();
+        CardAuthorization captured = CardAuthorization.builder().id("auth1").creditCardId("card1")
+                .amount(new BigDecimal("100")).capturedAmount(new BigDecimal("70"))
+                .status(AuthorizationStatus.CAPTURED).build();
+        when(cardAuthorizationRepository.findById("auth1")).thenReturn(Mono.just(hold));
+        when(cardAuthorizationRepository.settle("auth1", AuthorizationStatus.CAPTURED, new BigDecimal("70")))
+                .thenReturn(Mono.just(captured));
+        when(creditCardRepository.restoreBalance("card1", new BigDecimal("30"))).thenReturn(Mono.just(true));
+        StepVerifier.create(cardAuthorizationService.capture("auth1", new BigDecimal("70")))
+                .expectNext(captured)
+                .verifyComplete();
+    }
+    @Test
+    void capture_MoreThanHeld_Error() {
+        when(cardAuthorizationRepository.findById("auth1")).thenReturn(Mono.just(CardAuthorization.builder()
+                .id("auth1").creditCardId("card1").amount(new BigDecimal("100")).build()));
+        StepVerifier.create(cardAuthorizationService.capture("auth1", new BigDecimal("120")))
+                .expectErrorMessage("Capture amount must be between 0 and 100")
+                .verify();
+        verify(cardAuthorizationRepository, never()).settle(any(), any(), any());
+    }
+    @Test
+    void release_AlreadySettled_Error() {
+        when(cardAuthorizationRepository.settle("auth1", AuthorizationStatus.RELEASED, BigDecimal.ZERO))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(cardAuthorizationService.release("auth1"))
+                .expectErrorMessage("Authorization not found or already settled")
+                .verify();
+        verifyNoInteractions(creditCardRepository);
+    }
+    /**
+     * One hot card with more authorizations queued behind a pending commit than its balance covers. The queue
+     * drains in max-batch-size commits, exactly the covered number is approved and the balance ends at zero.
+     */
+    @Test
+    void authorize_HotCardBacklog_CommitsInBatchesAndApprovesExactlyWhatFits() {
+        int queued = 500;
+        AtomicReference<BigDecimal> balance = new AtomicReference<>(BigDecimal.valueOf(400));
+        Sinks.One<Boolean> firstCommit = Sinks.one();
+        AtomicBoolean gated = new AtomicBoolean();
+        Function<BigDecimal, Boolean> reserve = amount -> {
+            if (balance.get().compareTo(amount) < 0) {
+                return false;
+            }
+            balance.set(balance.get().subtract(amount));
+            return true;
+        };
+        when(creditCardRepository.reserveBalance(eq("card1"), any(BigDecimal.class))).thenAnswer(invocation -> {
+            BigDecimal amount = invocation.getArgument(1);
+            return gated.compareAndSet(false, true)
+                    ? firstCommit.asMono().map(applied -> reserve.apply(amount))
+                    : Mono.fromCallable(() -> reserve.apply(amount));
+        });
+        when(creditCardRepository.findById("card1")).thenAnswer(invocation -> Mono.fromCallable(() ->
+                CreditCard.builder().id("card1").status("ACTIVE").availableBalance(balance.get()).build()));
+        AtomicInteger approvedCount = new AtomicInteger();
+        AtomicInteger declinedCount = new AtomicInteger();
+        for (int i = 0; i <= queued; i++) {
+            cardAuthorizationService.authorize("card1", BigDecimal.ONE, "order-" + i)
+                    .subscribe(hold -> approvedCount.incrementAndGet(), error -> declinedCount.incrementAndGet());
+        }
+        assertEquals(0, approvedCount.get() + declinedCount.get());
+        firstCommit.tryEmitValue(true);
+        assertEquals(400, approvedCount.get());
+        assertEquals(queued + 1 - 400, declinedCount.get());
+        assertEquals(0, balance.get().signum());
+        //1 alone, then 200 + 200 + 100 from the backlog; the last batch finds nothing left and inserts nothing
+        DistributionSummary batchSizes = meterRegistry.get("card.authorization.batch.size").summary();
+        assertEquals(4, batchSizes.count());
+        assertEquals(200, batchSizes.max());
+        verify(creditCardRepository, times(2)).reserveBalance("card1", BigDecimal.valueOf(200));
+        verify(creditCardRepository).reserveBalance("card1", BigDecimal.valueOf(199));
+        verify(cardAuthorizationRepository, times(3)).insert(anyList());
+    }
+    /**
+     * Many callers authorizing on one card while its queue keeps emptying out: only one commit for the card may
+     * run at a time, otherwise the reservations conflict with each other.
+     */
+    @Test
+    void authorize_ConcurrentCallers_OneCommitPerCardAtATime() throws InterruptedException {
+        int threads = 8;
+        int perThread = 200;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(creditCardRepository.reserveBalance(eq("card1"), any(BigDecimal.class))).thenAnswer(invocation ->
+                Mono.fromCallable(() -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max) > 0)
+                        .delayElement(Duration.ofMillis(1))
+                        .doOnNext(reserved -> inFlight.decrementAndGet()));
+        CountDownLatch done = new CountDownLatch(threads * perThread);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    cardAuthorizationService.authorize("card1", BigDecimal.ONE, null)
+                            .subscribe(hold -> done.countDown(), error -> done.countDown());
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(1, maxInFlight.get());
+        assertEquals(threads * perThread, (int) meterRegistry.get("card.authorizations").tag("result", "approved")
+                .counter().count());
+    }
+}
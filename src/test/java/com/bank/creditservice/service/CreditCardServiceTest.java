@@ -1,7 +1,10 @@
 package com.bank.creditservice.service;
 import com.bank.creditservice.client.AccountClientService;
 import com.bank.creditservice.client.CustomerClientService;
+import com.bank.creditservice.dto.BatchItemResult;
+import com.bank.creditservice.dto.BulkStatusUpdateRequest;
 import com.bank.creditservice.event.CreditCardEventProducer;
+import com.bank.creditservice.exception.CustomerNotFoundException;
 import com.bank.creditservice.model.account.Account;
 import com.bank.creditservice.model.account.AccountType;
 import com.bank.creditservice.model.creditcard.CreditCard;
@@ -10,22 +13,40 @@ import com.bank.creditservice.model.creditcard.PaymentStatus;
 import com.bank.creditservice.model.customer.Customer;
 import com.bank.creditservice.model.customer.CustomerType;
 import com.bank.creditservice.repository.CreditCardRepository;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,6 +63,14 @@ class CreditCardServiceTest {
     private AccountClientService accountClientService;
     @Mock
     private CustomerEligibilityService customerEligibilityService;
+    @Mock
+    private CustomerDebtStatusService customerDebtStatusService;
+    @Mock
+    private AccountCacheService accountCacheService;
+    @Mock
+    private TransactionalOperator transactionalOperator;
+    @Spy
+    private CustomerRequestCoalescer customerRequestCoalescer = new CustomerRequestCoalescer(new SimpleMeterRegistry());
     @InjectMocks
     private CreditCardService creditCardService;
     private CreditCard testCreditCard;
@@ -52,6 +81,13 @@ class CreditCardServiceTest {
         testCreditCard = createTestCreditCard();
         testCustomer = createTestCustomer();
         testAccount = createTestAccount();
+        lenient().when(accountCacheService.getAccounts(anyString())).thenReturn(Mono.empty());
+        lenient().when(accountCacheService.saveAccounts(anyString(), any())).thenReturn(Mono.empty());
+        lenient().when(accountCacheService.evictAccounts(anyString())).thenReturn(Mono.empty());
+        lenient().when(transactionalOperator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(creditCardEventProducer.publishCreditCardCreated(any())).thenReturn(Mono.empty());
+        lenient().when(creditCardEventProducer.publishCreditCardUpdated(any(), any())).thenReturn(Mono.empty());
     }
     private CreditCard createTestCreditCard() {
         CreditCard creditCard = new CreditCard();
@@ -79,6 +115,53 @@ class CreditCardServiceTest {
         return account;
     }
     @Test
+    void createCreditCards_SameCustomer_UpdatesVipStatusOnceAndInsertsInOneCall() {
+        CreditCard secondCard = createTestCreditCard();
+        secondCard.setId(null);
+        CreditCard businessCard = createTestCreditCard();
+        businessCard.setId(null);
+        businessCard.setCardType(CreditCardType.BUSINESS_CREDIT_CARD);
+        when(customerEligibilityService.customersWithOverdueDebt(anyCollection())).thenReturn(Mono.just(Set.of()));
+        when(customerCacheService.getCustomers(anyCollection()))
+                .thenReturn(Mono.just(Map.of("customer1", testCustomer)));
+        when(accountClientService.getAccountsByCustomer("customer1"))
+                .thenReturn(Mono.just(Collections.singletonList(testAccount)));
+        when(accountClientService.updateVipPymStatus(anyString(), anyBoolean(), anyString()))
+                .thenReturn(Mono.just(testAccount));
+        when(customerClientService.updateVipPymStatus(anyString(), anyBoolean()))
+                .thenReturn(Mono.just(testCustomer));
+        when(creditCardRepository.insert(anyList())).thenAnswer(invocation -> Flux.fromIterable(
+                invocation.<List<CreditCard>>getArgument(0)));
+        when(creditCardEventProducer.publishCreditCardsCreated(anyList())).thenReturn(Mono.empty());
+        StepVerifier.create(creditCardService.createCreditCards(List.of(testCreditCard, secondCard, businessCard)))
+                .assertNext(results -> {
+                    assertEquals(BatchItemResult.Status.CREATED, results.get(0).getStatus());
+                    assertEquals(BatchItemResult.Status.CREATED, results.get(1).getStatus());
+                    assertEquals("Customer type does not match credit card type", results.get(2).getError());
+                    assertEquals(PaymentStatus.PAID, results.get(1).getData().getPaymentStatus());
+                })
+                .verifyComplete();
+        verify(accountClientService, times(1)).updateVipPymStatus(eq("account1"), eq(true), eq("VIP"));
+        verify(customerClientService, times(1)).updateVipPymStatus(eq("customer1"), eq(true));
+        verify(creditCardRepository).insert(List.of(testCreditCard, secondCard));
+        verify(creditCardRepository, never()).save(any(CreditCard.class));
+    }
+    @Test
+    void createCreditCards_VipUpdateFails_RejectsThatCustomersCards() {
+        when(customerEligibilityService.customersWithOverdueDebt(anyCollection())).thenReturn(Mono.just(Set.of()));
+        when(customerCacheService.getCustomers(anyCollection()))
+                .thenReturn(Mono.just(Map.of("customer1", testCustomer)));
+        when(accountClientService.getAccountsByCustomer("customer1"))
+                .thenReturn(Mono.just(Collections.singletonList(testAccount)));
+        when(accountClientService.updateVipPymStatus(anyString(), anyBoolean(), anyString()))
+                .thenReturn(Mono.error(new RuntimeException("Account service unavailable")));
+        StepVerifier.create(creditCardService.createCreditCards(List.of(testCreditCard)))
+                .assertNext(results -> assertEquals("Error updating VIP/PYM status: Account service unavailable",
+                        results.get(0).getError()))
+                .verifyComplete();
+        verify(creditCardRepository, never()).insert(anyList());
+    }
+    @Test
     void createCreditCard_PersonalCustomerWithSavingsAccount_Success() {
         when(customerEligibilityService.hasOverdueDebt(anyString())).thenReturn(Mono.just(false));
         when(customerCacheService.getCustomer(anyString())).thenReturn(Mono.empty());
@@ -158,6 +241,49 @@ class CreditCardServiceTest {
         verify(customerClientService).updateVipPymStatus(eq("customer1"), eq(true));
     }
     @Test
+    void createCreditCard_CachedAccounts_SkipsAccountServiceLookupAndEvictsAfterUpdate() {
+        testCustomer.setCustomerType(CustomerType.BUSINESS);
+        testCreditCard.setCardType(CreditCardType.BUSINESS_CREDIT_CARD);
+        testAccount.setAccountType(AccountType.CHECKING);
+        when(customerEligibilityService.hasOverdueDebt(anyString())).thenReturn(Mono.just(false));
+        when(customerCacheService.getCustomer(anyString())).thenReturn(Mono.just(testCustomer));
+        when(accountCacheService.getAccounts("customer1"))
+                .thenReturn(Mono.just(Collections.singletonList(testAccount)));
+        when(accountClientService.updateVipPymStatus(anyString(), anyBoolean(), anyString()))
+                .thenReturn(Mono.just(testAccount));
+        when(customerClientService.updateVipPymStatus(anyString(), anyBoolean()))
+                .thenReturn(Mono.just(testCustomer));
+        when(creditCardRepository.save(any(CreditCard.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        StepVerifier.create(creditCardService.createCreditCard(testCreditCard))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(accountClientService, never()).getAccountsByCustomer(anyString());
+        verify(accountCacheService, never()).saveAccounts(anyString(), any());
+        verify(accountCacheService).evictAccounts("customer1");
+    }
+    @Test
+    void createCreditCard_CustomerCachedAsNotFound_SkipsCustomerService() {
+        when(customerEligibilityService.hasOverdueDebt(anyString())).thenReturn(Mono.just(false));
+        when(customerCacheService.getCustomer("customer1"))
+                .thenReturn(Mono.error(new CustomerNotFoundException("customer1")));
+        StepVerifier.create(creditCardService.createCreditCard(testCreditCard))
+                .verifyComplete();
+        verify(customerClientService, never()).getCustomerById(anyString());
+        verify(creditCardRepository, never()).save(any(CreditCard.class));
+    }
+    @Test
+    void createCreditCard_UnknownCustomer_CachesNotFound() {
+        when(customerEligibilityService.hasOverdueDebt(anyString())).thenReturn(Mono.just(false));
+        when(customerCacheService.getCustomer("customer1")).thenReturn(Mono.empty());
+        when(customerClientService.getCustomerById("customer1"))
+                .thenReturn(Mono.error(new CustomerNotFoundException("customer1")));
+        when(customerCacheService.saveNotFound("customer1")).thenReturn(Mono.empty());
+        StepVerifier.create(creditCardService.createCreditCard(testCreditCard))
+                .verifyComplete();
+        verify(customerCacheService).saveNotFound("customer1");
+    }
+    @Test
     void createCreditCard_CustomerHasOverdueDebt_Error() {
         when(customerEligibilityService.hasOverdueDebt(anyString())).thenReturn(Mono.just(true));
         StepVerifier.create(creditCardService.createCreditCard(testCreditCard))
@@ -223,14 +349,89 @@ class CreditCardServiceTest {
     }
     @Test
     void updateCreditCard_Success() {
-        CreditCard updatedCard = createTestCreditCard();
-        updatedCard.setCreditLimit(new BigDecimal("10000"));
-        when(creditCardRepository.findById(anyString())).thenReturn(Mono.just(testCreditCard));
-        when(creditCardRepository.save(any(CreditCard.class))).thenReturn(Mono.just(updatedCard));
-        StepVerifier.create(creditCardService.updateCreditCard("1", updatedCard))
-                .expectNext(updatedCard)
+        CreditCard changes = new CreditCard();
+        changes.setCreditLimit(new BigDecimal("10000"));
+        testCreditCard.setAvailableBalance(new BigDecimal("3000"));
+        when(creditCardRepository.updateFieldsAndLimit(eq("1"), isNull(), eq(new BigDecimal("10000")),
+                any(Update.class))).thenReturn(Mono.just(testCreditCard));
+        StepVerifier.create(creditCardService.updateCreditCard("1", changes))
+                .assertNext(card -> {
+                    assertEquals(new BigDecimal("10000"), card.getCreditLimit());
+                    assertEquals(new BigDecimal("8000"), card.getAvailableBalance());
+                    assertEquals("ACTIVE", card.getStatus());
+                    assertEquals(1L, card.getVersion());
+                })
+                .verifyComplete();
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(creditCardRepository).updateFieldsAndLimit(eq("1"), isNull(), eq(new BigDecimal("10000")),
+                update.capture());
+        assertEquals(Set.of("modifiedAt"), ((Document) update.getValue().getUpdateObject().get("$set")).keySet());
+        verify(creditCardRepository, never()).updateFields(any(), any(), any());
+        verify(creditCardRepository, never()).save(any(CreditCard.class));
+        verify(creditCardEventProducer).publishCreditCardUpdated(eq(testCreditCard), any());
+    }
+    @Test
+    void updateCreditCard_AvailableBalanceInBody_IsNotWritten() {
+        CreditCard changes = new CreditCard();
+        changes.setStatus("BLOCKED");
+        changes.setAvailableBalance(new BigDecimal("999999"));
+        when(creditCardRepository.updateFields(eq("1"), isNull(), any(Update.class)))
+                .thenReturn(Mono.just(testCreditCard));
+        StepVerifier.create(creditCardService.updateCreditCard("1", changes))
+                .assertNext(card -> {
+                    assertEquals(new BigDecimal("5000"), card.getAvailableBalance());
+                    assertEquals("BLOCKED", card.getStatus());
+                })
                 .verifyComplete();
-        verify(creditCardEventProducer).publishCreditCardUpdated(any());
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(creditCardRepository).updateFields(eq("1"), isNull(), update.capture());
+        assertEquals(Set.of("modifiedAt", "status"),
+                ((Document) update.getValue().getUpdateObject().get("$set")).keySet());
+    }
+    @Test
+    void updateCreditCard_StaleVersion_Conflict() {
+        CreditCard changes = new CreditCard();
+        changes.setStatus("BLOCKED");
+        changes.setVersion(7L);
+        when(creditCardRepository.updateFields(eq("1"), eq(7L), any(Update.class))).thenReturn(Mono.empty());
+        when(creditCardRepository.existsById("1")).thenReturn(Mono.just(true));
+        StepVerifier.create(creditCardService.updateCreditCard("1", changes))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+        verify(creditCardEventProducer, never()).publishCreditCardUpdated(any(), any());
+    }
+    @Test
+    void updateCreditCardStatuses_CustomerFilter_UpdatesAndPublishesInOneChunk() {
+        testCreditCard.setPaymentStatus(PaymentStatus.PENDING);
+        BulkStatusUpdateRequest request = BulkStatusUpdateRequest.builder()
+                .customerId("customer1")
+                .paymentStatus(PaymentStatus.OVERDUE)
+                .build();
+        when(creditCardRepository.findStatusesMatching(any(Criteria.class), isNull(), eq(1000)))
+                .thenReturn(Flux.just(testCreditCard));
+        when(creditCardRepository.updateAllMatching(eq(List.of("1")), any(Criteria.class), any(Update.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(creditCardEventProducer.publishCreditCardsUpdated(anyList(), anyList())).thenReturn(Mono.empty());
+        StepVerifier.create(creditCardService.updateCreditCardStatuses(request))
+                .assertNext(summary -> {
+                    assertEquals(1, summary.getMatched());
+                    assertEquals(1, summary.getModified());
+                })
+                .verifyComplete();
+        ArgumentCaptor<List<CreditCard>> updated = ArgumentCaptor.forClass(List.class);
+        verify(creditCardEventProducer).publishCreditCardsUpdated(eq(List.of(testCreditCard)), updated.capture());
+        assertEquals(PaymentStatus.OVERDUE, updated.getValue().get(0).getPaymentStatus());
+        assertEquals("ACTIVE", updated.getValue().get(0).getStatus());
+        verify(customerDebtStatusService).scheduleRefresh("customer1");
+    }
+    @Test
+    void updateCreditCardStatuses_NoTarget_Error() {
+        StepVerifier.create(creditCardService.updateCreditCardStatuses(BulkStatusUpdateRequest.builder()
+                        .ids(List.of("1"))
+                        .build()))
+                .expectErrorMessage("status or paymentStatus is required")
+                .verify();
+        verifyNoInteractions(creditCardRepository);
     }
     @Test
     void deleteCreditCard_LastCardPersonalCustomer_Success() {
@@ -308,9 +509,17 @@ class CreditCardServiceTest {
         verify(accountClientService, never()).updateVipPymStatus(anyString(), anyBoolean(), anyString());
     }
     @Test
-    void getAllCreditCards_Success() {
-        when(creditCardRepository.findAll()).thenReturn(Flux.just(testCreditCard));
-        StepVerifier.create(creditCardService.getAllCreditCards())
+    void getCreditCards_FirstPage_ReadsFromTheStart() {
+        when(creditCardRepository.findAllBy(PageRequest.of(0, 10, Sort.by("id"))))
+                .thenReturn(Flux.just(testCreditCard));
+        StepVerifier.create(creditCardService.getCreditCards(null, 10))
+                .expectNext(testCreditCard)
+                .verifyComplete();
+    }
+    @Test
+    void streamCreditCards_FromTheStart_ReadsAllInIdOrder() {
+        when(creditCardRepository.findAllBy(Sort.by("id"))).thenReturn(Flux.just(testCreditCard));
+        StepVerifier.create(creditCardService.streamCreditCards(null))
                 .expectNext(testCreditCard)
                 .verifyComplete();
     }
@@ -0,0 +1,129 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.client.AccountClientService;
+import com.bank.creditservice.client.AccountServiceStub;
+import com.bank.creditservice.client.CustomerClientService;
+import com.bank.creditservice.event.CreditCardEventProducer;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.customer.Customer;
+import com.bank.creditservice.model.customer.CustomerType;
+import com.bank.creditservice.repository.CreditCardRepository;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the BUSINESS delete flow against a MockWebServer stand-in of the account service where every
+ * VIP/PYM update is slow, checking how many updates are in flight at once and when the batch endpoint is used.
+ */
+class CreditCardServiceVipPymFanOutTest {
+    private static final int CHECKING_ACCOUNTS = 8;
+    private static final long UPDATE_LATENCY_MS = 100;
+    private final AccountServiceStub accountServiceStub = new AccountServiceStub(CHECKING_ACCOUNTS, UPDATE_LATENCY_MS);
+    private MockWebServer accountService;
+    private CreditCardService creditCardService;
+    @BeforeEach
+    void setUp() throws IOException {
+        accountService = new MockWebServer();
+        accountService.setDispatcher(accountServiceStub);
+        accountService.start();
+        AccountClientService accountClientService = new AccountClientService(WebClient.builder(),
+                accountService.url(AccountServiceStub.basePath()).toString(), CircuitBreakerRegistry.ofDefaults());
+        Customer customer = new Customer();
+        customer.setId("customer1");
+        customer.setCustomerType(CustomerType.BUSINESS);
+        CreditCard creditCard = new CreditCard();
+        creditCard.setId("1");
+        creditCard.setCustomerId("customer1");
+        CreditCardRepository creditCardRepository = mock(CreditCardRepository.class);
+        when(creditCardRepository.findById("1")).thenReturn(Mono.just(creditCard));
+        when(creditCardRepository.deleteById("1")).thenReturn(Mono.empty());
+        when(creditCardRepository.findByCustomerId("customer1")).thenReturn(Flux.empty());
+        CustomerCacheService customerCacheService = mock(CustomerCacheService.class);
+        when(customerCacheService.getCustomer("customer1")).thenReturn(Mono.just(customer));
+        CustomerClientService customerClientService = mock(CustomerClientService.class);
+        when(customerClientService.updateVipPymStatus(anyString(), anyBoolean())).thenReturn(Mono.just(customer));
+        AccountCacheService accountCacheService = mock(AccountCacheService.class);
+        when(accountCacheService.getAccounts("customer1")).thenReturn(Mono.empty());
+        when(accountCacheService.saveAccounts(anyString(), any())).thenReturn(Mono.empty());
+        when(accountCacheService.evictAccounts("customer1")).thenReturn(Mono.empty());
+        creditCardService = new CreditCardService(creditCardRepository, customerClientService, customerCacheService,
+                mock(CreditCardEventProducer.class), accountClientService, mock(CustomerEligibilityService.class),
+                new CustomerRequestCoalescer(new SimpleMeterRegistry()), mock(CustomerDebtStatusService.class),
+                accountCacheService, mock(TransactionalOperator.class));
+    }
+    @AfterEach
+    void tearDown() throws IOException {
+        accountService.shutdown();
+    }
+    @Test
+    void deleteCreditCard_NoBatchEndpoint_UpdatesAccountsWithBoundedConcurrency() {
+        accountServiceStub.setBatchSupported(false);
+        deleteWithConcurrency(1);
+        assertEquals(1, accountServiceStub.getMaxInFlight());
+        deleteWithConcurrency(4);
+        assertEquals(4, accountServiceStub.getMaxInFlight());
+        assertEquals(2 * CHECKING_ACCOUNTS, accountServiceStub.getSingleUpdates());
+        assertTrue(accountServiceStub.getBatchRequests().isEmpty());
+    }
+    @Test
+    void deleteCreditCard_BatchSupported_SendsOneRequestForAllAccounts() {
+        StepVerifier.create(creditCardService.deleteCreditCard("1"))
+                .verifyComplete();
+        assertEquals(1, accountServiceStub.getBatchRequests().size());
+        assertEquals(CHECKING_ACCOUNTS, accountServiceStub.getBatchRequests().get(0).getAccountIds().size());
+        assertEquals("PYM", accountServiceStub.getBatchRequests().get(0).getType());
+        assertEquals(0, accountServiceStub.getSingleUpdates());
+    }
+    @Test
+    void deleteCreditCard_BatchSkipsAccounts_UpdatesThoseOneByOne() {
+        accountServiceStub.skipInBatch("acc3");
+        accountServiceStub.skipInBatch("acc6");
+        StepVerifier.create(creditCardService.deleteCreditCard("1"))
+                .verifyComplete();
+        assertEquals(1, accountServiceStub.getBatchRequests().size());
+        assertEquals(2, accountServiceStub.getSingleUpdates());
+    }
+    @Test
+    void deleteCreditCard_SomeUpdatesFail_AttemptsAllAndAggregatesErrors() {
+        accountServiceStub.setBatchSupported(false);
+        accountServiceStub.failAccount("acc2");
+        accountServiceStub.failAccount("acc5");
+        ReflectionTestUtils.setField(creditCardService, "vipPymMaxConcurrency", 4);
+        StepVerifier.create(creditCardService.deleteCreditCard("1"))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error.getMessage().contains("2 account(s)"), error.getMessage());
+                    assertTrue(error.getMessage().contains("acc2"));
+                    assertTrue(error.getMessage().contains("acc5"));
+                    assertEquals(2, error.getSuppressed().length);
+                })
+                .verify(Duration.ofSeconds(10));
+        assertEquals(CHECKING_ACCOUNTS, accountServiceStub.getSingleUpdates());
+    }
+    private void deleteWithConcurrency(int maxConcurrency) {
+        ReflectionTestUtils.setField(creditCardService, "vipPymMaxConcurrency", maxConcurrency);
+        accountServiceStub.resetMaxInFlight();
+        StepVerifier.create(creditCardService.deleteCreditCard("1"))
+                .verifyComplete();
+    }
+}
@@ -1,6 +1,9 @@
 package com.bank.creditservice.service;
 
 import com.bank.creditservice.client.CustomerClientService;
+import com.bank.creditservice.dto.BatchItemResult;
+import com.bank.creditservice.dto.BulkStatusUpdateRequest;
+import com.bank.creditservice.dto.CreditSummary;
 import com.bank.creditservice.event.CreditEventProducer;
 import com.bank.creditservice.model.credit.Credit;
 import com.bank.creditservice.model.credit.CreditStatus;
@@ -9,18 +12,39 @@ import com.bank.creditservice.model.creditcard.PaymentStatus;
 import com.bank.creditservice.model.customer.Customer;
 import com.bank.creditservice.model.customer.CustomerType;
 import com.bank.creditservice.repository.CreditRepository;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +59,12 @@ public class CreditServiceTest {
     private CreditEventProducer creditEventProducer;
     @Mock
     private CustomerEligibilityService customerEligibilityService;
+    @Mock
+    private CustomerDebtStatusService customerDebtStatusService;
+    @Mock
+    private TransactionalOperator transactionalOperator;
+    @Spy
+    private CustomerRequestCoalescer customerRequestCoalescer = new CustomerRequestCoalescer(new SimpleMeterRegistry());
     @InjectMocks
     private CreditService creditService;
     private Customer personalCustomer;
@@ -43,6 +73,8 @@ public class CreditServiceTest {
     private Credit businessCredit;
     @BeforeEach
     void setUp() {
+        lenient().when(transactionalOperator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
         personalCustomer = new Customer();
         personalCustomer.setId("personal123");
         personalCustomer.setFullName("John Doe");
@@ -77,7 +109,7 @@ public class CreditServiceTest {
             savedCredit.setId("generated-id");
             return Mono.just(savedCredit);
         });
-        doNothing().when(creditEventProducer).publishCreditCreated(any(Credit.class));
+        when(creditEventProducer.publishCreditCreated(any(Credit.class))).thenReturn(Mono.empty());
         // Act & Assert
         StepVerifier.create(creditService.createCredit(personalCredit))
                 .assertNext(credit -> {
@@ -102,7 +134,7 @@ public class CreditServiceTest {
             savedCredit.setId("generated-id");
             return Mono.just(savedCredit);
         });
-        doNothing().when(creditEventProducer).publishCreditCreated(any(Credit.class));
+        when(creditEventProducer.publishCreditCreated(any(Credit.class))).thenReturn(Mono.empty());
         // Act & Assert
         StepVerifier.create(creditService.createCredit(businessCredit))
                 .assertNext(credit -> {
@@ -170,7 +202,7 @@ public class CreditServiceTest {
             savedCredit.setId("generated-id");
             return Mono.just(savedCredit);
         });
-        doNothing().when(creditEventProducer).publishCreditCreated(any(Credit.class));
+        when(creditEventProducer.publishCreditCreated(any(Credit.class))).thenReturn(Mono.empty());
         // Act & Assert
         StepVerifier.create(creditService.createCredit(personalCredit))
                 .assertNext(credit -> {
@@ -180,16 +212,140 @@ public class CreditServiceTest {
                 .verifyComplete();
     }
     @Test
-    void getAllCredits_ReturnsAllCredits() {
+    void createCredits_MixedBatch_InsertsAcceptedOnesInOneCall() {
+        // Arrange
+        Credit secondPersonal = new Credit();
+        secondPersonal.setCustomerId("personal123");
+        secondPersonal.setCreditType(CreditType.PERSONAL);
+        secondPersonal.setAmount(new BigDecimal("200.00"));
+        Credit mismatched = new Credit();
+        mismatched.setCustomerId("business456");
+        mismatched.setCreditType(CreditType.PERSONAL);
+        mismatched.setAmount(new BigDecimal("300.00"));
+        Credit unknownCustomer = new Credit();
+        unknownCustomer.setCustomerId("ghost");
+        unknownCustomer.setCreditType(CreditType.PERSONAL);
+        unknownCustomer.setAmount(new BigDecimal("400.00"));
+        List<Credit> batch = List.of(personalCredit, secondPersonal, businessCredit, mismatched, unknownCustomer);
+        when(customerEligibilityService.customersWithOverdueDebt(anyCollection())).thenReturn(Mono.just(Set.of()));
+        when(customerCacheService.getCustomers(anyCollection())).thenReturn(Mono.just(
+                Map.of("personal123", personalCustomer, "business456", businessCustomer)));
+        when(creditRepository.findCustomerIdsWithCredits(anyCollection())).thenReturn(Flux.empty());
+        when(creditRepository.insert(anyList())).thenAnswer(invocation -> Flux.fromIterable(
+                invocation.<List<Credit>>getArgument(0)));
+        when(creditEventProducer.publishCreditsCreated(anyList())).thenReturn(Mono.empty());
+        // Act & Assert
+        StepVerifier.create(creditService.createCredits(batch))
+                .assertNext(results -> {
+                    assertEquals(5, results.size());
+                    assertEquals(BatchItemResult.Status.CREATED, results.get(0).getStatus());
+                    assertEquals(CreditStatus.ACTIVE, results.get(0).getData().getCreditStatus());
+                    assertEquals("Personal customer can only have one active credit", results.get(1).getError());
+                    assertEquals(BatchItemResult.Status.CREATED, results.get(2).getStatus());
+                    assertEquals("Customer type does not match credit type", results.get(3).getError());
+                    assertEquals("Customer not found", results.get(4).getError());
+                })
+                .verifyComplete();
+        verify(creditRepository).insert(List.of(personalCredit, businessCredit));
+        verify(creditEventProducer).publishCreditsCreated(List.of(personalCredit, businessCredit));
+        verify(customerCacheService, never()).getCustomer(anyString());
+        verify(creditRepository, never()).save(any(Credit.class));
+    }
+    @Test
+    void createCredits_OverdueCustomer_RejectsWithoutSaving() {
+        // Arrange
+        when(customerEligibilityService.customersWithOverdueDebt(anyCollection()))
+                .thenReturn(Mono.just(Set.of("business456")));
+        when(customerCacheService.getCustomers(anyCollection()))
+                .thenReturn(Mono.just(Map.of("business456", businessCustomer)));
+        when(creditRepository.findCustomerIdsWithCredits(anyCollection())).thenReturn(Flux.empty());
+        // Act & Assert
+        StepVerifier.create(creditService.createCredits(List.of(businessCredit)))
+                .assertNext(results -> assertEquals("Customer has overdue debt and cannot create a new credit",
+                        results.get(0).getError()))
+                .verifyComplete();
+        verify(creditRepository, never()).insert(anyList());
+    }
+    @Test
+    void updateCreditStatuses_MatchingCredits_UpdatesAndPublishesInOneChunk() {
+        // Arrange
+        personalCredit.setCreditStatus(CreditStatus.ACTIVE);
+        businessCredit.setCreditStatus(CreditStatus.ACTIVE);
+        BulkStatusUpdateRequest request = BulkStatusUpdateRequest.builder()
+                .currentStatus("ACTIVE")
+                .status("DEFAULTED")
+                .build();
+        when(creditRepository.findStatusesMatching(any(Criteria.class), isNull(), eq(1000)))
+                .thenReturn(Flux.just(personalCredit, businessCredit));
+        when(creditRepository.updateAllMatching(eq(List.of("credit123", "credit456")), any(Criteria.class),
+                any(Update.class))).thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)));
+        when(creditEventProducer.publishCreditsUpdated(anyList(), anyList())).thenReturn(Mono.empty());
+        // Act & Assert
+        StepVerifier.create(creditService.updateCreditStatuses(request))
+                .assertNext(summary -> {
+                    assertEquals(2, summary.getMatched());
+                    assertEquals(2, summary.getModified());
+                })
+                .verifyComplete();
+        ArgumentCaptor<List<Credit>> updated = ArgumentCaptor.forClass(List.class);
+        verify(creditEventProducer).publishCreditsUpdated(eq(List.of(personalCredit, businessCredit)),
+                updated.capture());
+        assertTrue(updated.getValue().stream().allMatch(credit -> credit.getCreditStatus() == CreditStatus.DEFAULTED));
+        verify(customerDebtStatusService).scheduleRefresh("personal123");
+        verify(customerDebtStatusService).scheduleRefresh("business456");
+    }
+    @Test
+    void updateCreditStatuses_NoSelector_ReturnsError() {
+        // Act & Assert
+        StepVerifier.create(creditService.updateCreditStatuses(BulkStatusUpdateRequest.builder()
+                        .status("DEFAULTED")
+                        .build()))
+                .expectErrorMessage("ids or at least one filter field is required")
+                .verify();
+        verifyNoInteractions(creditRepository);
+    }
+    @Test
+    void updateCreditStatuses_UnknownStatus_ReturnsError() {
+        // Act & Assert
+        StepVerifier.create(creditService.updateCreditStatuses(BulkStatusUpdateRequest.builder()
+                        .ids(List.of("credit123"))
+                        .status("CLOSED_FOREVER")
+                        .build()))
+                .expectErrorMessage("Unknown credit status")
+                .verify();
+        verifyNoInteractions(creditRepository);
+    }
+    @Test
+    void getCredits_FirstPage_ReadsFromTheStart() {
         // Arrange
-        when(creditRepository.findAll()).thenReturn(Flux.just(personalCredit, businessCredit));
+        when(creditRepository.findAllBy(PageRequest.of(0, 2, Sort.by("id"))))
+                .thenReturn(Flux.just(personalCredit, businessCredit));
         // Act & Assert
-        StepVerifier.create(creditService.getAllCredits())
+        StepVerifier.create(creditService.getCredits(null, 2))
                 .expectNext(personalCredit)
                 .expectNext(businessCredit)
                 .verifyComplete();
     }
     @Test
+    void getCredits_AfterCursor_ReadsIdsAfterIt() {
+        // Arrange
+        when(creditRepository.findByIdGreaterThan("credit123", PageRequest.of(0, 2, Sort.by("id"))))
+                .thenReturn(Flux.just(businessCredit));
+        // Act & Assert
+        StepVerifier.create(creditService.getCredits("credit123", 2))
+                .expectNext(businessCredit)
+                .verifyComplete();
+    }
+    @Test
+    void streamCredits_AfterCursor_ReadsIdsAfterIt() {
+        // Arrange
+        when(creditRepository.findByIdGreaterThan("credit123", Sort.by("id"))).thenReturn(Flux.just(businessCredit));
+        // Act & Assert
+        StepVerifier.create(creditService.streamCredits("credit123"))
+                .expectNext(businessCredit)
+                .verifyComplete();
+    }
+    @Test
     void getCreditsByCustomerId_CustomerHasCredits_ReturnsCredits() {
         // Arrange
         when(creditRepository.findByCustomerId("personal123")).thenReturn(Flux.just(personalCredit));
@@ -209,6 +365,36 @@ public class CreditServiceTest {
                 .verify();
     }
     @Test
+    void getCreditSummariesByCustomerId_RequestedFields_ProjectsOnlyThose() {
+        // Arrange
+        CreditSummary summary = CreditSummary.builder().id("credit123").remainingBalance(BigDecimal.TEN).build();
+        when(creditRepository.findSummariesByCustomerId("personal123", Set.of("id", "remainingBalance")))
+                .thenReturn(Flux.just(summary));
+        // Act & Assert
+        StepVerifier.create(creditService.getCreditSummariesByCustomerId("personal123",
+                        Set.of("id", "remainingBalance")))
+                .expectNext(summary)
+                .verifyComplete();
+    }
+    @Test
+    void getCreditSummariesByCustomerId_NoFields_ProjectsTheWholeSummary() {
+        // Arrange
+        when(creditRepository.findSummariesByCustomerId("personal123", CreditSummary.FIELDS))
+                .thenReturn(Flux.just(CreditSummary.builder().id("credit123").build()));
+        // Act & Assert
+        StepVerifier.create(creditService.getCreditSummariesByCustomerId("personal123", Set.of()))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+    @Test
+    void getCreditSummariesByCustomerId_UnknownField_ReturnsError() {
+        // Act & Assert
+        StepVerifier.create(creditService.getCreditSummariesByCustomerId("personal123", Set.of("id", "ssn")))
+                .expectErrorMessage("Unknown credit field: ssn")
+                .verify();
+        verify(creditRepository, never()).findSummariesByCustomerId(anyString(), any());
+    }
+    @Test
     void getCreditById_CreditExists_ReturnsCredit() {
         // Arrange
         when(creditRepository.findById("credit123")).thenReturn(Mono.just(personalCredit));
@@ -228,7 +414,7 @@ public class CreditServiceTest {
                 .verify();
     }
     @Test
-    void updateCredit_CreditExists_ReturnsUpdatedCredit() {
+    void updateCredit_CreditExists_SetsOnlySuppliedFieldsInOneCall() {
         // Arrange
         Credit existingCredit = new Credit();
         existingCredit.setId("credit123");
@@ -239,38 +425,56 @@ public class CreditServiceTest {
         existingCredit.setInterestRate(new BigDecimal("0.05"));
         existingCredit.setCreditStatus(CreditStatus.ACTIVE);
         existingCredit.setPaymentStatus(PaymentStatus.PENDING);
+        existingCredit.setVersion(4L);
         Credit updatedCreditDetails = new Credit();
-        updatedCreditDetails.setAmount(new BigDecimal("1200.00"));
-        updatedCreditDetails.setRemainingBalance(new BigDecimal("1000.00"));
-        updatedCreditDetails.setInterestRate(new BigDecimal("0.06"));
+        updatedCreditDetails.setRemainingBalance(new BigDecimal("600.00"));
         updatedCreditDetails.setPaymentStatus(PaymentStatus.PAID);
-        when(creditRepository.findById("credit123")).thenReturn(Mono.just(existingCredit));
-        when(creditRepository.save(any(Credit.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
-        doNothing().when(creditEventProducer).publishCreditUpdated(any(Credit.class));
+        when(creditRepository.updateFields(eq("credit123"), isNull(), any(Update.class)))
+                .thenReturn(Mono.just(existingCredit));
+        when(creditEventProducer.publishCreditUpdated(any(Credit.class), any(Credit.class))).thenReturn(Mono.empty());
         // Act & Assert
         StepVerifier.create(creditService.updateCredit("credit123", updatedCreditDetails))
                 .assertNext(credit -> {
-                    assert credit.getId().equals("credit123");
-                    assert credit.getAmount().equals(new BigDecimal("1200.00"));
-                    assert credit.getRemainingBalance().equals(new BigDecimal("1000.00"));
-                    assert credit.getInterestRate().equals(new BigDecimal("0.06"));
-                    assert credit.getPaymentStatus() == PaymentStatus.PAID;
-                    assert credit.getCreditStatus() == CreditStatus.ACTIVE;
-                    assert credit.getModifiedAt() != null;
+                    assertEquals("credit123", credit.getId());
+                    assertEquals(new BigDecimal("1000.00"), credit.getAmount());
+                    assertEquals(new BigDecimal("600.00"), credit.getRemainingBalance());
+                    assertEquals(PaymentStatus.PAID, credit.getPaymentStatus());
+                    assertEquals(CreditStatus.ACTIVE, credit.getCreditStatus());
+                    assertEquals(5L, credit.getVersion());
+                    assertNotNull(credit.getModifiedAt());
                 })
                 .verifyComplete();
-        verify(creditEventProducer, times(1)).publishCreditUpdated(any(Credit.class));
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(creditRepository).updateFields(eq("credit123"), isNull(), update.capture());
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(Set.of("modifiedAt", "remainingBalance", "paymentStatus"), set.keySet());
+        verify(creditRepository, never()).save(any(Credit.class));
+        verify(creditEventProducer, times(1)).publishCreditUpdated(eq(existingCredit), any(Credit.class));
+    }
+    @Test
+    void updateCredit_StaleVersion_ReturnsConflict() {
+        // Arrange
+        Credit updatedCreditDetails = new Credit();
+        updatedCreditDetails.setPaymentStatus(PaymentStatus.PAID);
+        updatedCreditDetails.setVersion(3L);
+        when(creditRepository.updateFields(eq("credit123"), eq(3L), any(Update.class))).thenReturn(Mono.empty());
+        when(creditRepository.existsById("credit123")).thenReturn(Mono.just(true));
+        // Act & Assert
+        StepVerifier.create(creditService.updateCredit("credit123", updatedCreditDetails))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+        verify(creditEventProducer, never()).publishCreditUpdated(any(Credit.class), any(Credit.class));
     }
     @Test
     void updateCredit_CreditDoesNotExist_ReturnsError() {
         // Arrange
-        when(creditRepository.findById("nonexistent")).thenReturn(Mono.empty());
+        when(creditRepository.updateFields(eq("nonexistent"), isNull(), any(Update.class))).thenReturn(Mono.empty());
         // Act & Assert
         StepVerifier.create(creditService.updateCredit("nonexistent", personalCredit))
                 .expectErrorMatches(error -> error instanceof RuntimeException &&
                         error.getMessage().contains("Credit not found"))
                 .verify();
-        verify(creditEventProducer, never()).publishCreditUpdated(any(Credit.class));
+        verify(creditEventProducer, never()).publishCreditUpdated(any(Credit.class), any(Credit.class));
     }
     @Test
     void deleteCredit_CreditExists_DeletesCredit() {
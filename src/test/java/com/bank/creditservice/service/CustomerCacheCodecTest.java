@@ -0,0 +1,79 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.customer.Customer;
+import com.bank.creditservice.model.customer.CustomerType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerCacheCodecTest {
+    private final CustomerCacheCodec codec = new CustomerCacheCodec();
+    private ObjectMapper jsonMapper;
+    private Customer customer;
+    @BeforeEach
+    void setUp() {
+        jsonMapper = new ObjectMapper();
+        jsonMapper.registerModule(new JavaTimeModule());
+        jsonMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        customer = Customer.builder()
+                .id("64f1c2a9e4b0a1b2c3d4e5f6")
+                .fullName("Maria Fernanda Quispe Huaman")
+                .documentNumber("45879632")
+                .customerType(CustomerType.BUSINESS)
+                .email("maria.quispe@example.com")
+                .phone("+51987654321")
+                .createdAt(LocalDateTime.of(2023, 5, 14, 10, 30, 15))
+                .modifiedAt(LocalDateTime.of(2024, 2, 1, 8, 0))
+                .status("ACTIVE")
+                .isPym(true)
+                .build();
+    }
+    @Test
+    void encodeDecode_RoundTrip() throws IOException {
+        Instant writtenAt = Instant.ofEpochMilli(1_700_000_000_123L);
+        byte[] encoded = codec.encode(customer, writtenAt);
+        assertEquals(CustomerCacheCodec.FORMAT_CBOR_V2, encoded[0]);
+        CachedCustomer decoded = codec.decode(encoded);
+        assertEquals(customer, decoded.getCustomer());
+        assertEquals(writtenAt, decoded.getWrittenAt());
+        assertFalse(decoded.isNotFound());
+    }
+    @Test
+    void encodeDecode_NotFoundMarker() throws IOException {
+        Instant writtenAt = Instant.ofEpochMilli(1_700_000_000_123L);
+        CachedCustomer decoded = codec.decode(codec.encodeNotFound(writtenAt));
+        assertTrue(decoded.isNotFound());
+        assertEquals(writtenAt, decoded.getWrittenAt());
+    }
+    @Test
+    void decode_LegacyJsonValue() throws IOException {
+        byte[] legacy = jsonMapper.writeValueAsString(customer).getBytes(StandardCharsets.UTF_8);
+        CachedCustomer decoded = codec.decode(legacy);
+        assertEquals(customer, decoded.getCustomer());
+        assertEquals(Instant.EPOCH, decoded.getWrittenAt());
+    }
+    @Test
+    void decode_UnknownFormat_Fails() {
+        assertThrows(IOException.class, () -> codec.decode(new byte[]{0x7F, 0x01}));
+        assertThrows(IOException.class, () -> codec.decode(new byte[0]));
+        assertThrows(IOException.class, () -> codec.decode(new byte[]{CustomerCacheCodec.FORMAT_NOT_FOUND, 0x01}));
+    }
+    @Test
+    void binaryPayload_IsSmallerThanJson() throws IOException {
+        int jsonSize = jsonMapper.writeValueAsString(customer).getBytes(StandardCharsets.UTF_8).length;
+        byte[] binary = codec.encode(customer, Instant.now());
+        assertTrue(binary.length < jsonSize, "cbor=" + binary.length + " json=" + jsonSize);
+    }
+}
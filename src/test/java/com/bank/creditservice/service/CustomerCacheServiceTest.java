@@ -1,19 +1,36 @@
 package com.bank.creditservice.service;
+import com.bank.creditservice.client.CustomerClientService;
+import com.bank.creditservice.exception.CustomerNotFoundException;
 import com.bank.creditservice.model.customer.Customer;
 import com.bank.creditservice.model.customer.CustomerType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveRedisCallback;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -22,13 +39,21 @@ class CustomerCacheServiceTest {
     @Mock
     private ReactiveRedisTemplate<String, String> redisTemplate;
     @Mock
-    private ReactiveValueOperations<String, String> valueOperations;
+    private ReactiveRedisTemplate<String, byte[]> binaryRedisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, byte[]> valueOperations;
+    @Mock
+    private CustomerClientService customerClientService;
+    private final CustomerCacheCodec customerCacheCodec = new CustomerCacheCodec();
     private CustomerCacheService customerCacheService;
+    private CustomerNearCache customerNearCache;
     private ObjectMapper objectMapper;
     private Customer testCustomer;
     @BeforeEach
     void setUp() {
-        customerCacheService = new CustomerCacheService(redisTemplate);
+        customerNearCache = new CustomerNearCache(redisTemplate, new SimpleMeterRegistry(), 100, 30000);
+        customerCacheService = new CustomerCacheService(binaryRedisTemplate, customerCacheCodec, customerNearCache,
+                customerClientService);
         testCustomer = new Customer();
         testCustomer.setId("1");
         testCustomer.setFullName("Test Customer");
@@ -38,19 +63,21 @@ class CustomerCacheServiceTest {
     }
     @Test
     void saveCustomer_Success() throws Exception {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        String expectedJson = objectMapper.writeValueAsString(testCustomer);
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
         String expectedKey = "Customer:1";
-        when(valueOperations.set(anyString(), anyString()))
+        when(valueOperations.set(anyString(), any(byte[].class), any(Duration.class)))
                 .thenReturn(Mono.just(Boolean.TRUE));
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(1L));
         StepVerifier.create(customerCacheService.saveCustomer(testCustomer.getId(), testCustomer))
                 .verifyComplete();
         ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(valueOperations).set(keyCaptor.capture(), valueCaptor.capture());
+        ArgumentCaptor<byte[]> valueCaptor = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<Duration> ttlCaptor = ArgumentCaptor.forClass(Duration.class);
+        verify(valueOperations).set(keyCaptor.capture(), valueCaptor.capture(), ttlCaptor.capture());
         assert keyCaptor.getValue().equals(expectedKey);
-        assert objectMapper.readTree(valueCaptor.getValue())
-                .equals(objectMapper.readTree(expectedJson));
+        assert valueCaptor.getValue()[0] == CustomerCacheCodec.FORMAT_CBOR_V2;
+        assert customerCacheCodec.decode(valueCaptor.getValue()).getCustomer().equals(testCustomer);
+        assert ttlCaptor.getValue().toMillis() >= 3_240_000 && ttlCaptor.getValue().toMillis() <= 3_960_000;
     }
     @Test
     void saveCustomer_NullId_ReturnsError() {
@@ -60,11 +87,10 @@ class CustomerCacheServiceTest {
     }
     @Test
     void getCustomer_Success() throws Exception {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        String customerJson = objectMapper.writeValueAsString(testCustomer);
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
         String expectedKey = "Customer:1";
         when(valueOperations.get(eq(expectedKey)))
-                .thenReturn(Mono.just(customerJson));
+                .thenReturn(Mono.just(customerCacheCodec.encode(testCustomer, Instant.now())));
         StepVerifier.create(customerCacheService.getCustomer("1"))
                 .expectNextMatches(customer ->
                         customer.getId().equals(testCustomer.getId()) &&
@@ -73,6 +99,35 @@ class CustomerCacheServiceTest {
                 .verifyComplete();
     }
     @Test
+    void getCustomer_EmitsOnRedisThreadWithoutHoppingSchedulers() throws Exception {
+        Scheduler redisEventLoop = Schedulers.newSingle("redis-event-loop");
+        try {
+            Set<String> subscribeThreads = ConcurrentHashMap.newKeySet();
+            byte[] encoded = customerCacheCodec.encode(testCustomer, Instant.now());
+            when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.get(eq("Customer:1"))).thenReturn(Mono.just(encoded)
+                    .doOnSubscribe(s -> subscribeThreads.add(Thread.currentThread().getName()))
+                    .publishOn(redisEventLoop));
+            String testThread = Thread.currentThread().getName();
+            StepVerifier.create(customerCacheService.getCustomer("1")
+                            .map(customer -> Thread.currentThread().getName()))
+                    .assertNext(emitThread -> assertTrue(emitThread.startsWith("redis-event-loop"), emitThread))
+                    .verifyComplete();
+            assertEquals(Collections.singleton(testThread), subscribeThreads);
+        } finally {
+            redisEventLoop.dispose();
+        }
+    }
+    @Test
+    void getCustomer_LegacyJsonEntry_StillReadable() throws Exception {
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(eq("Customer:1")))
+                .thenReturn(Mono.just(objectMapper.writeValueAsBytes(testCustomer)));
+        StepVerifier.create(customerCacheService.getCustomer("1"))
+                .expectNext(testCustomer)
+                .verifyComplete();
+    }
+    @Test
     void getCustomer_NullId_ReturnsError() {
         StepVerifier.create(customerCacheService.getCustomer(null))
                 .expectError(IllegalArgumentException.class)
@@ -80,31 +135,31 @@ class CustomerCacheServiceTest {
     }
     @Test
     void getCustomer_NotFound_ReturnsEmpty() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(anyString()))
                 .thenReturn(Mono.empty());
         StepVerifier.create(customerCacheService.getCustomer("1"))
                 .verifyComplete();
     }
     @Test
-    void getCustomer_InvalidJson_ReturnsEmpty() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    void getCustomer_InvalidPayload_ReturnsEmpty() {
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(anyString()))
-                .thenReturn(Mono.just("invalid json"));
+                .thenReturn(Mono.just("invalid json".getBytes(StandardCharsets.UTF_8)));
         StepVerifier.create(customerCacheService.getCustomer("1"))
                 .verifyComplete();
     }
     @Test
     void getCustomer_Timeout_ReturnsEmpty() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(anyString()))
-                .thenReturn(Mono.<String>never());
+                .thenReturn(Mono.<byte[]>never());
         StepVerifier.create(customerCacheService.getCustomer("1"))
                 .verifyComplete();
     }
     @Test
     void getCustomer_RedisError_ReturnsEmpty() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(anyString()))
                 .thenReturn(Mono.error(new RuntimeException("Redis connection error")));
         StepVerifier.create(customerCacheService.getCustomer("1"))
@@ -112,8 +167,8 @@ class CustomerCacheServiceTest {
     }
     @Test
     void saveCustomer_RedisError_PropagatesError() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.set(anyString(), anyString()))
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.set(anyString(), any(byte[].class), any(Duration.class)))
                 .thenReturn(Mono.error(new RuntimeException("Redis error")));
         StepVerifier.create(customerCacheService.saveCustomer("1", testCustomer))
                 .expectError(RuntimeException.class)
@@ -121,10 +176,116 @@ class CustomerCacheServiceTest {
     }
     @Test
     void getCustomer_TimeoutException_ReturnsEmpty() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(anyString()))
                 .thenReturn(Mono.error(new TimeoutException("Operation timed out")));
         StepVerifier.create(customerCacheService.getCustomer("1"))
                 .verifyComplete();
     }
-}
\ No newline at end of file
+    @Test
+    void saveCustomer_PopulatesNearCacheAndPublishesInvalidation() {
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.set(anyString(), any(byte[].class), any(Duration.class)))
+                .thenReturn(Mono.just(Boolean.TRUE));
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(1L));
+        StepVerifier.create(customerCacheService.saveCustomer("1", testCustomer))
+                .verifyComplete();
+        assert customerNearCache.get("1") == testCustomer;
+        verify(redisTemplate).convertAndSend(eq(CustomerNearCache.INVALIDATION_CHANNEL),
+                eq(customerNearCache.getInstanceId() + ":1"));
+    }
+    @Test
+    void getCustomer_NearCacheHit_SkipsRedis() throws Exception {
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(eq("Customer:1")))
+                .thenReturn(Mono.just(customerCacheCodec.encode(testCustomer, Instant.now())));
+        StepVerifier.create(customerCacheService.getCustomer("1"))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(customerCacheService.getCustomer("1"))
+                .expectNextMatches(customer -> customer.getId().equals("1"))
+                .verifyComplete();
+        verify(valueOperations, times(1)).get(anyString());
+    }
+    @Test
+    void getCustomer_NotFoundMarker_FailsWithoutCallingCustomerService() {
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(eq("Customer:1")))
+                .thenReturn(Mono.just(customerCacheCodec.encodeNotFound(Instant.now())));
+        StepVerifier.create(customerCacheService.getCustomer("1"))
+                .expectError(CustomerNotFoundException.class)
+                .verify();
+        verifyNoInteractions(customerClientService);
+    }
+    @Test
+    void saveNotFound_UsesNegativeTtlAndInvalidatesEveryNearCache() {
+        customerNearCache.put("1", testCustomer);
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.set(eq("Customer:1"), any(byte[].class), eq(Duration.ofSeconds(30))))
+                .thenReturn(Mono.just(Boolean.TRUE));
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(1L));
+        StepVerifier.create(customerCacheService.saveNotFound("1"))
+                .verifyComplete();
+        assert customerNearCache.get("1") == null;
+        verify(redisTemplate).convertAndSend(anyString(), eq(customerNearCache.getInstanceId() + ":1"));
+    }
+    @Test
+    void getCustomer_StaleEntry_ServedImmediatelyAndRefreshedInBackground() throws Exception {
+        Customer refreshed = Customer.builder().id("1").fullName("Renamed Customer")
+                .customerType(CustomerType.PERSONAL).build();
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(eq("Customer:1")))
+                .thenReturn(Mono.just(customerCacheCodec.encode(testCustomer,
+                        Instant.now().minus(Duration.ofMinutes(50)))));
+        when(customerClientService.getCustomerById("1")).thenReturn(Mono.just(refreshed));
+        when(valueOperations.set(eq("Customer:1"), any(byte[].class), any(Duration.class)))
+                .thenReturn(Mono.just(Boolean.TRUE));
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(1L));
+        StepVerifier.create(customerCacheService.getCustomer("1"))
+                .expectNextMatches(customer -> customer.getFullName().equals("Test Customer"))
+                .verifyComplete();
+        verify(customerClientService, timeout(1000)).getCustomerById("1");
+        verify(valueOperations, timeout(1000)).set(eq("Customer:1"), any(byte[].class), any(Duration.class));
+    }
+    @Test
+    void getCustomer_FreshEntry_NotRefreshed() throws Exception {
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(eq("Customer:1")))
+                .thenReturn(Mono.just(customerCacheCodec.encode(testCustomer, Instant.now())));
+        StepVerifier.create(customerCacheService.getCustomer("1"))
+                .expectNextCount(1)
+                .verifyComplete();
+        verifyNoInteractions(customerClientService);
+    }
+    @Test
+    void getCustomers_OneMgetAndOneBatchForMissesOnly() throws Exception {
+        Customer cached = Customer.builder().id("1").fullName("Cached").build();
+        Customer fetched = Customer.builder().id("2").fullName("Fetched").build();
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(Arrays.asList("Customer:1", "Customer:2", "Customer:3", "Customer:4")))
+                .thenReturn(Mono.just(Arrays.asList(customerCacheCodec.encode(cached, Instant.now()), null,
+                        customerCacheCodec.encodeNotFound(Instant.now()), null)));
+        when(customerClientService.getCustomersByIds(Arrays.asList("2", "4")))
+                .thenReturn(Mono.just(Collections.singletonList(fetched)));
+        when(binaryRedisTemplate.execute(any(ReactiveRedisCallback.class))).thenReturn(Flux.empty());
+        StepVerifier.create(customerCacheService.getCustomers(Arrays.asList("1", "2", "3", "4", "2")))
+                .assertNext(customers -> {
+                    assertEquals(2, customers.size());
+                    assertEquals("Cached", customers.get("1").getFullName());
+                    assertEquals("Fetched", customers.get("2").getFullName());
+                })
+                .verifyComplete();
+        verify(valueOperations, never()).get(anyString());
+        verify(customerClientService, never()).getCustomerById(anyString());
+        verify(binaryRedisTemplate, times(1)).execute(any(ReactiveRedisCallback.class));
+        assert customerNearCache.get("2") == fetched;
+    }
+    @Test
+    void getCustomers_AllInNearCache_SkipsRedis() {
+        customerNearCache.put("1", testCustomer);
+        StepVerifier.create(customerCacheService.getCustomers(Collections.singletonList("1")))
+                .assertNext(customers -> assertEquals(testCustomer, customers.get("1")))
+                .verifyComplete();
+        verifyNoInteractions(binaryRedisTemplate, customerClientService);
+    }
+}
@@ -0,0 +1,163 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.bank.creditservice.model.eligibility.CustomerDebtStatus;
+import com.bank.creditservice.repository.CreditCardRepository;
+import com.bank.creditservice.repository.CreditRepository;
+import com.bank.creditservice.repository.CustomerDebtStatusRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerDebtStatusServiceTest {
+    @Mock
+    private CustomerDebtStatusRepository customerDebtStatusRepository;
+    @Mock
+    private CreditRepository creditRepository;
+    @Mock
+    private CreditCardRepository creditCardRepository;
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    private CustomerDebtStatusService customerDebtStatusService;
+    @BeforeEach
+    void setUp() {
+        customerDebtStatusService = new CustomerDebtStatusService(customerDebtStatusRepository,
+                creditRepository, creditCardRepository, mongoTemplate, redisTemplate, 600000);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+    private void givenOverdueProducts(String customerId, boolean hasOverdueCredit, boolean hasOverdueCard) {
+        when(creditRepository.existsByCustomerIdAndCreditStatusAndPaymentStatus(
+                customerId, CreditStatus.ACTIVE, PaymentStatus.OVERDUE))
+                .thenReturn(Mono.just(hasOverdueCredit));
+        when(creditCardRepository.existsByCustomerIdAndStatusAndPaymentStatus(
+                customerId, "ACTIVE", PaymentStatus.OVERDUE))
+                .thenReturn(Mono.just(hasOverdueCard));
+        when(customerDebtStatusRepository.save(any(CustomerDebtStatus.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(valueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+    }
+    @Test
+    void hasOverdueDebt_RedisHit_SkipsMongo() {
+        when(valueOperations.get("DebtStatus:customer1")).thenReturn(Mono.just("true"));
+        StepVerifier.create(customerDebtStatusService.hasOverdueDebt("customer1"))
+                .expectNext(true)
+                .verifyComplete();
+        verify(customerDebtStatusRepository, never()).findById(anyString());
+        verifyNoInteractions(creditRepository, creditCardRepository);
+    }
+    @Test
+    void hasOverdueDebt_ProjectionHit_MirrorsToRedis() {
+        when(valueOperations.get("DebtStatus:customer1")).thenReturn(Mono.empty());
+        when(customerDebtStatusRepository.findById("customer1"))
+                .thenReturn(Mono.just(CustomerDebtStatus.builder().id("customer1").overdueCreditCard(true).build()));
+        when(valueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        StepVerifier.create(customerDebtStatusService.hasOverdueDebt("customer1"))
+                .expectNext(true)
+                .verifyComplete();
+        verify(valueOperations).set(eq("DebtStatus:customer1"), eq("true"), any(Duration.class));
+        verifyNoInteractions(creditRepository, creditCardRepository);
+    }
+    @Test
+    void hasOverdueDebt_NoProjection_ComputesAndStores() {
+        when(valueOperations.get("DebtStatus:customer1")).thenReturn(Mono.empty());
+        when(customerDebtStatusRepository.findById("customer1")).thenReturn(Mono.empty());
+        givenOverdueProducts("customer1", false, false);
+        StepVerifier.create(customerDebtStatusService.hasOverdueDebt("customer1"))
+                .expectNext(false)
+                .verifyComplete();
+        verify(customerDebtStatusRepository).save(any(CustomerDebtStatus.class));
+        verify(valueOperations).set(eq("DebtStatus:customer1"), eq("false"), any(Duration.class));
+    }
+    @Test
+    void hasOverdueDebt_RedisError_FallsBackToProjection() {
+        when(valueOperations.get("DebtStatus:customer1"))
+                .thenReturn(Mono.error(new RuntimeException("Redis connection error")));
+        when(customerDebtStatusRepository.findById("customer1"))
+                .thenReturn(Mono.just(CustomerDebtStatus.builder().id("customer1").build()));
+        when(valueOperations.set(anyString(), anyString(), any(Duration.class)))
+                .thenReturn(Mono.error(new RuntimeException("Redis connection error")));
+        StepVerifier.create(customerDebtStatusService.hasOverdueDebt("customer1"))
+                .expectNext(false)
+                .verifyComplete();
+    }
+    @Test
+    void refresh_OverdueCredit_StoresOverdueStatus() {
+        givenOverdueProducts("customer1", true, false);
+        StepVerifier.create(customerDebtStatusService.refresh("customer1"))
+                .expectNextMatches(status -> status.getId().equals("customer1") &&
+                        status.isOverdueCredit() &&
+                        !status.isOverdueCreditCard() &&
+                        status.hasOverdueDebt())
+                .verifyComplete();
+    }
+    @Test
+    void scheduleRefresh_WritesDuringRefresh_RefreshOnceMoreAfterIt() {
+        Sinks.One<Boolean> staleRead = Sinks.one();
+        when(creditRepository.existsByCustomerIdAndCreditStatusAndPaymentStatus(
+                "customer1", CreditStatus.ACTIVE, PaymentStatus.OVERDUE))
+                .thenReturn(staleRead.asMono(), Mono.just(false));
+        when(creditCardRepository.existsByCustomerIdAndStatusAndPaymentStatus(
+                "customer1", "ACTIVE", PaymentStatus.OVERDUE))
+                .thenReturn(Mono.just(false));
+        when(customerDebtStatusRepository.save(any(CustomerDebtStatus.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(valueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        customerDebtStatusService.scheduleRefresh("customer1");
+        customerDebtStatusService.scheduleRefresh("customer1");
+        customerDebtStatusService.scheduleRefresh("customer1");
+        verify(creditRepository, times(1)).existsByCustomerIdAndCreditStatusAndPaymentStatus(
+                "customer1", CreditStatus.ACTIVE, PaymentStatus.OVERDUE);
+        staleRead.tryEmitValue(true);
+        ArgumentCaptor<CustomerDebtStatus> saved = ArgumentCaptor.forClass(CustomerDebtStatus.class);
+        verify(customerDebtStatusRepository, times(2)).save(saved.capture());
+        assertTrue(saved.getAllValues().get(0).hasOverdueDebt());
+        assertFalse(saved.getAllValues().get(1).hasOverdueDebt());
+        customerDebtStatusService.scheduleRefresh("customer1");
+        verify(customerDebtStatusRepository, times(3)).save(any(CustomerDebtStatus.class));
+    }
+    @Test
+    void rebuild_RefreshesEveryKnownCustomerOnce() {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("customerId"), eq(Credit.class), eq(String.class)))
+                .thenReturn(Flux.just("customer1", "customer2"));
+        when(mongoTemplate.findDistinct(any(Query.class), eq("customerId"), eq(CreditCard.class), eq(String.class)))
+                .thenReturn(Flux.just("customer2"));
+        when(customerDebtStatusRepository.findAll())
+                .thenReturn(Flux.just(CustomerDebtStatus.builder().id("customer3").build()));
+        givenOverdueProducts("customer1", false, false);
+        givenOverdueProducts("customer2", true, false);
+        givenOverdueProducts("customer3", false, false);
+        StepVerifier.create(customerDebtStatusService.rebuild())
+                .expectNext(3L)
+                .verifyComplete();
+        verify(customerDebtStatusRepository, times(3)).save(any(CustomerDebtStatus.class));
+    }
+}
@@ -0,0 +1,73 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.customer.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerNearCacheTest {
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerNearCache customerNearCache;
+    private Customer testCustomer;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        customerNearCache = new CustomerNearCache(redisTemplate, meterRegistry, 100, 30000);
+        testCustomer = new Customer();
+        testCustomer.setId("1");
+    }
+    @AfterEach
+    void tearDown() {
+        customerNearCache.unsubscribe();
+    }
+    @Test
+    void get_AfterPut_ReturnsCustomerAndRecordsHit() {
+        assertNull(customerNearCache.get("1"));
+        customerNearCache.put("1", testCustomer);
+        assertEquals(testCustomer, customerNearCache.get("1"));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+    @Test
+    void subscribeToInvalidations_RemoteMessage_InvalidatesEntry() {
+        customerNearCache.put("1", testCustomer);
+        doReturn(Flux.just(new ReactiveSubscription.ChannelMessage<>(
+                CustomerNearCache.INVALIDATION_CHANNEL, "other-instance:1")))
+                .when(redisTemplate).listenToChannel(anyString());
+        customerNearCache.subscribeToInvalidations();
+        assertNull(customerNearCache.get("1"));
+    }
+    @Test
+    void subscribeToInvalidations_OwnMessage_KeepsEntry() {
+        customerNearCache.put("1", testCustomer);
+        doReturn(Flux.just(new ReactiveSubscription.ChannelMessage<>(
+                CustomerNearCache.INVALIDATION_CHANNEL, customerNearCache.getInstanceId() + ":1")))
+                .when(redisTemplate).listenToChannel(anyString());
+        customerNearCache.subscribeToInvalidations();
+        assertEquals(testCustomer, customerNearCache.get("1"));
+    }
+    @Test
+    void publishInvalidation_RedisError_CompletesEmpty() {
+        when(redisTemplate.convertAndSend(anyString(), anyString()))
+                .thenReturn(Mono.error(new RuntimeException("Redis error")));
+        StepVerifier.create(customerNearCache.publishInvalidation("1"))
+                .verifyComplete();
+    }
+}
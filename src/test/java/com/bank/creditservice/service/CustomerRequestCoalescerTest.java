@@ -0,0 +1,67 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.model.customer.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomerRequestCoalescerTest {
+    private CustomerRequestCoalescer customerRequestCoalescer;
+    private Customer testCustomer;
+    @BeforeEach
+    void setUp() {
+        customerRequestCoalescer = new CustomerRequestCoalescer(new SimpleMeterRegistry());
+        testCustomer = new Customer();
+        testCustomer.setId("customer1");
+    }
+    @Test
+    void coalesce_ConcurrentLookups_ShareSingleCall() {
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<Customer> response = Sinks.one();
+        Mono<Customer> first = customerRequestCoalescer.coalesce("customer1", () -> {
+            calls.incrementAndGet();
+            return response.asMono();
+        });
+        Mono<Customer> second = customerRequestCoalescer.coalesce("customer1", () -> {
+            calls.incrementAndGet();
+            return response.asMono();
+        });
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> response.tryEmitValue(testCustomer))
+                .expectNextMatches(tuple -> tuple.getT1() == testCustomer && tuple.getT2() == testCustomer)
+                .verifyComplete();
+        assertEquals(1, calls.get());
+        assertEquals(1.0, customerRequestCoalescer.getCoalescedCount());
+    }
+    @Test
+    void coalesce_AfterCompletion_StartsNewLookup() {
+        AtomicInteger calls = new AtomicInteger();
+        StepVerifier.create(customerRequestCoalescer.coalesce("customer1", () -> {
+            calls.incrementAndGet();
+            return Mono.just(testCustomer);
+        })).expectNext(testCustomer).verifyComplete();
+        StepVerifier.create(customerRequestCoalescer.coalesce("customer1", () -> {
+            calls.incrementAndGet();
+            return Mono.just(testCustomer);
+        })).expectNext(testCustomer).verifyComplete();
+        assertEquals(2, calls.get());
+        assertEquals(0.0, customerRequestCoalescer.getCoalescedCount());
+    }
+    @Test
+    void coalesce_FailedLookup_IsNotCached() {
+        StepVerifier.create(customerRequestCoalescer.coalesce("customer1",
+                () -> Mono.error(new RuntimeException("Customer service down"))))
+                .expectError(RuntimeException.class)
+                .verify();
+        StepVerifier.create(customerRequestCoalescer.coalesce("customer1", () -> Mono.just(testCustomer)))
+                .expectNext(testCustomer)
+                .verifyComplete();
+    }
+}
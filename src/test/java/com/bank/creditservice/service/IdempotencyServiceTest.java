@@ -0,0 +1,169 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.exception.RequestInProgressException;
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger runs = new AtomicInteger();
+    private IdempotencyService idempotencyService;
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(redisTemplate, 86_400_000, 60_000);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> Mono.fromCallable(() -> redis.putIfAbsent(invocation.getArgument(0),
+                        invocation.getArgument(1)) == null));
+        lenient().when(valueOperations.set(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> Mono.fromCallable(() -> {
+                    redis.put(invocation.getArgument(0), invocation.getArgument(1));
+                    return true;
+                }));
+        lenient().when(valueOperations.get(anyString()))
+                .thenAnswer(invocation -> Mono.justOrEmpty(redis.get(invocation.<String>getArgument(0))));
+        lenient().when(valueOperations.delete(anyString()))
+                .thenAnswer(invocation -> Mono.fromCallable(() -> redis.remove(invocation.getArgument(0)) != null));
+    }
+    @Test
+    void execute_Replay_ReturnsStoredResponseWithoutRunningAgain() {
+        Credit request = request();
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request, Credit.class, create(request)))
+                .expectNextMatches(credit -> "c1".equals(credit.getId()))
+                .verifyComplete();
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class, create(request)))
+                .assertNext(credit -> {
+                    assertEquals("c1", credit.getId());
+                    assertEquals(0, new BigDecimal("1000.00").compareTo(credit.getAmount()));
+                    assertEquals(CreditStatus.ACTIVE, credit.getCreditStatus());
+                    assertEquals(LocalDateTime.of(2026, 1, 31, 9, 0), credit.getNextPaymentDate());
+                })
+                .verifyComplete();
+        assertEquals(1, runs.get());
+        assertTrue(redis.containsKey("Idempotency:credit:key-1"));
+    }
+    @Test
+    void execute_SameKeyWhileFirstRequestRuns_Conflict() {
+        Sinks.One<Credit> firstRequest = Sinks.one();
+        idempotencyService.execute("credit", "key-1", request(), Credit.class, firstRequest::asMono).subscribe();
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class, create(request())))
+                .expectError(RequestInProgressException.class)
+                .verify();
+        assertEquals(0, runs.get());
+    }
+    @Test
+    void execute_RequestFails_FreesKeyForRetry() {
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class,
+                        () -> Mono.error(new RuntimeException("Customer service unavailable"))))
+                .expectErrorMessage("Customer service unavailable")
+                .verify();
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class, create(request())))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, runs.get());
+    }
+    @Test
+    void execute_RequestReturnsNothing_FreesKeyForRetry() {
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class, Mono::empty))
+                .verifyComplete();
+        assertFalse(redis.containsKey("Idempotency:credit:key-1"));
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class, create(request())))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, runs.get());
+    }
+    @Test
+    void execute_CallerCancelsWhileRequestRuns_FreesKeyForRetry() {
+        Sinks.One<Credit> firstRequest = Sinks.one();
+        Disposable subscription = idempotencyService.execute("credit", "key-1", request(), Credit.class,
+                firstRequest::asMono).subscribe();
+        assertTrue(redis.containsKey("Idempotency:credit:key-1"));
+        subscription.dispose();
+        assertFalse(redis.containsKey("Idempotency:credit:key-1"));
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class, create(request())))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, runs.get());
+    }
+    @Test
+    void execute_KeyReusedWithDifferentBody_Error() {
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class, create(request())))
+                .expectNextCount(1)
+                .verifyComplete();
+        Credit other = request().toBuilder().amount(new BigDecimal("5000.00")).build();
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", other, Credit.class, create(other)))
+                .expectErrorMessage("Idempotency-Key key-1 was already used for a different request")
+                .verify();
+        assertEquals(1, runs.get());
+    }
+    @Test
+    void execute_WithoutKey_RunsEveryTime() {
+        StepVerifier.create(idempotencyService.execute("credit", null, request(), Credit.class, create(request())))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(idempotencyService.execute("credit", null, request(), Credit.class, create(request())))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(2, runs.get());
+        verifyNoInteractions(redisTemplate);
+    }
+    @Test
+    void execute_RedisDown_RunsWithoutDeduplication() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenReturn(Mono.error(new RedisConnectionFailureException("Connection refused")));
+        StepVerifier.create(idempotencyService.execute("credit", "key-1", request(), Credit.class, create(request())))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, runs.get());
+    }
+    private Supplier<Mono<Credit>> create(Credit request) {
+        return () -> Mono.fromCallable(() -> {
+            runs.incrementAndGet();
+            return request.toBuilder()
+                    .id("c1")
+                    .creditStatus(CreditStatus.ACTIVE)
+                    .nextPaymentDate(LocalDateTime.of(2026, 1, 31, 9, 0))
+                    .version(0L)
+                    .build();
+        });
+    }
+    private Credit request() {
+        return Credit.builder()
+                .customerId("cust1")
+                .amount(new BigDecimal("1000.00"))
+                .interestRate(new BigDecimal("0.05"))
+                .build();
+    }
+}
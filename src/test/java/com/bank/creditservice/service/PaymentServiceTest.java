@@ -0,0 +1,286 @@
+package com.bank.creditservice.service;
+
+import com.bank.creditservice.event.CreditCardEventProducer;
+import com.bank.creditservice.event.CreditEventProducer;
+import com.bank.creditservice.model.credit.Credit;
+import com.bank.creditservice.model.credit.CreditStatus;
+import com.bank.creditservice.model.creditcard.CreditCard;
+import com.bank.creditservice.model.creditcard.PaymentStatus;
+import com.bank.creditservice.model.payment.PaymentLedgerEntry;
+import com.bank.creditservice.model.payment.PaymentProductType;
+import com.bank.creditservice.repository.CardAuthorizationRepository;
+import com.bank.creditservice.repository.CreditCardRepository;
+import com.bank.creditservice.repository.CreditRepository;
+import com.bank.creditservice.repository.PaymentLedgerRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentServiceTest {
+    @Mock
+    private CreditRepository creditRepository;
+    @Mock
+    private CreditCardRepository creditCardRepository;
+    @Mock
+    private CardAuthorizationRepository cardAuthorizationRepository;
+    @Mock
+    private PaymentLedgerRepository paymentLedgerRepository;
+    @Mock
+    private CreditEventProducer creditEventProducer;
+    @Mock
+    private CreditCardEventProducer creditCardEventProducer;
+    @Mock
+    private CustomerDebtStatusService customerDebtStatusService;
+    @Mock
+    private TransactionalOperator transactionalOperator;
+    private PaymentService paymentService;
+    private final LocalDateTime dueDate = LocalDateTime.now().plusDays(2);
+    @BeforeEach
+    void setUp() {
+        paymentService = new PaymentService(creditRepository, creditCardRepository, cardAuthorizationRepository,
+                paymentLedgerRepository, creditEventProducer, creditCardEventProducer, customerDebtStatusService,
+                transactionalOperator, 3);
+        lenient().when(transactionalOperator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(cardAuthorizationRepository.sumHeldAmounts(anyString())).thenReturn(Mono.just(BigDecimal.ZERO));
+        lenient().when(paymentLedgerRepository.insert(any(PaymentLedgerEntry.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        lenient().when(creditEventProducer.publishCreditUpdated(any(Credit.class), any(Credit.class)))
+                .thenReturn(Mono.empty());
+        lenient().when(creditCardEventProducer.publishCreditCardUpdated(any(CreditCard.class), any(CreditCard.class)))
+                .thenReturn(Mono.empty());
+    }
+    @Test
+    void payCredit_CoversMinimumPayment_RollsDueDateAndAppendsLedgerEntry() {
+        Credit credit = credit("1000.00", PaymentStatus.PENDING, 3L);
+        notPostedYet("c1");
+        when(creditRepository.findById("c1")).thenReturn(Mono.just(credit));
+        when(creditRepository.compareAndUpdate(eq("c1"), eq(3L), any(Update.class))).thenReturn(Mono.just(credit));
+        StepVerifier.create(paymentService.payCredit("c1", "key-1", new BigDecimal("100.00")))
+                .assertNext(entry -> {
+                    assertEquals(PaymentProductType.CREDIT, entry.getProductType());
+                    assertEquals(new BigDecimal("900.00"), entry.getBalanceAfter());
+                    assertEquals(PaymentStatus.PENDING, entry.getPaymentStatus());
+                    assertEquals(dueDate.plusDays(30), entry.getNextDueDate());
+                })
+                .verifyComplete();
+        Document set = setOf(creditUpdate("c1", 3L));
+        assertEquals(new BigDecimal("900.00"), set.get("remainingBalance"));
+        assertEquals(dueDate.plusDays(30), set.get("nextPaymentDate"));
+        assertEquals(PaymentStatus.PENDING, set.get("paymentStatus"));
+        ArgumentCaptor<Credit> paid = ArgumentCaptor.forClass(Credit.class);
+        verify(creditEventProducer).publishCreditUpdated(eq(credit), paid.capture());
+        assertEquals(4L, paid.getValue().getVersion().longValue());
+        verify(customerDebtStatusService).scheduleRefresh("cust1");
+    }
+    @Test
+    void payCredit_ClearsBalance_FinishesCredit() {
+        Credit credit = credit("50.00", PaymentStatus.OVERDUE, 1L);
+        notPostedYet("c1");
+        when(creditRepository.findById("c1")).thenReturn(Mono.just(credit));
+        when(creditRepository.compareAndUpdate(eq("c1"), eq(1L), any(Update.class))).thenReturn(Mono.just(credit));
+        StepVerifier.create(paymentService.payCredit("c1", "key-1", new BigDecimal("50.00")))
+                .assertNext(entry -> assertEquals(PaymentStatus.FINISHED, entry.getPaymentStatus()))
+                .verifyComplete();
+        Document set = setOf(creditUpdate("c1", 1L));
+        assertEquals(CreditStatus.FINISHED, set.get("creditStatus"));
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) set.get("remainingBalance")));
+    }
+    @Test
+    void payCredit_BelowMinimumPayment_KeepsDueDateAndStatus() {
+        Credit credit = credit("1000.00", PaymentStatus.OVERDUE, 1L);
+        notPostedYet("c1");
+        when(creditRepository.findById("c1")).thenReturn(Mono.just(credit));
+        when(creditRepository.compareAndUpdate(eq("c1"), eq(1L), any(Update.class))).thenReturn(Mono.just(credit));
+        StepVerifier.create(paymentService.payCredit("c1", "key-1", new BigDecimal("10.00")))
+                .assertNext(entry -> {
+                    assertEquals(PaymentStatus.OVERDUE, entry.getPaymentStatus());
+                    assertEquals(dueDate, entry.getNextDueDate());
+                    assertEquals(new BigDecimal("990.00"), entry.getBalanceAfter());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void payCredit_ExceedsRemainingBalance_Error() {
+        notPostedYet("c1");
+        when(creditRepository.findById("c1")).thenReturn(Mono.just(credit("50.00", PaymentStatus.PENDING, 1L)));
+        StepVerifier.create(paymentService.payCredit("c1", "key-1", new BigDecimal("60.00")))
+                .expectErrorMessage("Payment exceeds the remaining balance of 50.00")
+                .verify();
+        verify(paymentLedgerRepository, never()).insert(any(PaymentLedgerEntry.class));
+        verify(creditRepository, never()).compareAndUpdate(anyString(), any(), any(Update.class));
+    }
+    @Test
+    void payCredit_KeyAlreadyPosted_ReturnsFirstEntryWithoutPaying() {
+        PaymentLedgerEntry posted = posted("c1", "100.00");
+        when(paymentLedgerRepository.findByProductIdAndIdempotencyKey("c1", "key-1")).thenReturn(Mono.just(posted));
+        StepVerifier.create(paymentService.payCredit("c1", "key-1", new BigDecimal("100.00")))
+                .expectNext(posted)
+                .verifyComplete();
+        verifyNoInteractions(creditRepository, creditEventProducer, customerDebtStatusService);
+    }
+    @Test
+    void payCredit_KeyReusedForAnotherAmount_Error() {
+        when(paymentLedgerRepository.findByProductIdAndIdempotencyKey("c1", "key-1"))
+                .thenReturn(Mono.just(posted("c1", "100.00")));
+        StepVerifier.create(paymentService.payCredit("c1", "key-1", new BigDecimal("150.00")))
+                .expectErrorMessage("Idempotency key key-1 was already used for a payment of 100.00")
+                .verify();
+        verifyNoInteractions(creditRepository);
+    }
+    @Test
+    void payCredit_ConcurrentWrite_RetriesFromFreshRead() {
+        Credit stale = credit("1000.00", PaymentStatus.PENDING, 3L);
+        Credit fresh = stale.toBuilder().remainingBalance(new BigDecimal("800.00")).version(4L).build();
+        notPostedYet("c1");
+        when(creditRepository.findById("c1")).thenReturn(Mono.just(stale), Mono.just(fresh));
+        when(creditRepository.compareAndUpdate(eq("c1"), eq(3L), any(Update.class))).thenReturn(Mono.empty());
+        when(creditRepository.compareAndUpdate(eq("c1"), eq(4L), any(Update.class))).thenReturn(Mono.just(fresh));
+        StepVerifier.create(paymentService.payCredit("c1", "key-1", new BigDecimal("100.00")))
+                .assertNext(entry -> assertEquals(new BigDecimal("700.00"), entry.getBalanceAfter()))
+                .verifyComplete();
+        verify(creditEventProducer, times(1)).publishCreditUpdated(any(Credit.class), any(Credit.class));
+    }
+    @Test
+    void payCredit_SameKeyPostedConcurrently_ReturnsTheOtherEntry() {
+        PaymentLedgerEntry posted = posted("c1", "100.00");
+        when(paymentLedgerRepository.findByProductIdAndIdempotencyKey("c1", "key-1"))
+                .thenReturn(Mono.empty(), Mono.just(posted));
+        when(creditRepository.findById("c1")).thenReturn(Mono.just(credit("1000.00", PaymentStatus.PENDING, 3L)));
+        when(paymentLedgerRepository.insert(any(PaymentLedgerEntry.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+        StepVerifier.create(paymentService.payCredit("c1", "key-1", new BigDecimal("100.00")))
+                .expectNext(posted)
+                .verifyComplete();
+        verify(creditRepository, never()).compareAndUpdate(anyString(), any(), any(Update.class));
+    }
+    @Test
+    void payCredit_MissingKey_Error() {
+        StepVerifier.create(paymentService.payCredit("c1", " ", new BigDecimal("100.00")))
+                .expectErrorMessage("Idempotency key is required")
+                .verify();
+        verifyNoInteractions(paymentLedgerRepository, creditRepository);
+    }
+    @Test
+    void payCreditCard_CoversMinimumPayment_MarksPaidAndMovesCycle() {
+        CreditCard creditCard = creditCard("400.00", PaymentStatus.PENDING);
+        notPostedYet("card1");
+        when(creditCardRepository.findById("card1")).thenReturn(Mono.just(creditCard));
+        when(creditCardRepository.compareAndUpdate(eq("card1"), eq(2L), any(Update.class)))
+                .thenReturn(Mono.just(creditCard));
+        StepVerifier.create(paymentService.payCreditCard("card1", "key-1", new BigDecimal("100.00")))
+                .assertNext(entry -> {
+                    assertEquals(PaymentProductType.CREDIT_CARD, entry.getProductType());
+                    assertEquals(new BigDecimal("500.00"), entry.getBalanceAfter());
+                    assertEquals(PaymentStatus.PAID, entry.getPaymentStatus());
+                    assertEquals(dueDate.plusMonths(1), entry.getNextDueDate());
+                })
+                .verifyComplete();
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(creditCardRepository).compareAndUpdate(eq("card1"), eq(2L), update.capture());
+        assertEquals(new BigDecimal("500.00"), setOf(update.getValue()).get("availableBalance"));
+        verify(creditCardEventProducer).publishCreditCardUpdated(eq(creditCard), any(CreditCard.class));
+    }
+    @Test
+    void payCreditCard_ExceedsOutstandingBalance_Error() {
+        notPostedYet("card1");
+        when(creditCardRepository.findById("card1")).thenReturn(Mono.just(creditCard("950.00", PaymentStatus.PAID)));
+        StepVerifier.create(paymentService.payCreditCard("card1", "key-1", new BigDecimal("100.00")))
+                .expectErrorMessage("Payment exceeds the outstanding balance of 50.00")
+                .verify();
+        verify(paymentLedgerRepository, never()).insert(any(PaymentLedgerEntry.class));
+    }
+    @Test
+    void payCreditCard_OpenHold_NotCountedAsOwed() {
+        notPostedYet("card1");
+        when(creditCardRepository.findById("card1")).thenReturn(Mono.just(creditCard("600.00", PaymentStatus.PAID)));
+        when(cardAuthorizationRepository.sumHeldAmounts("card1")).thenReturn(Mono.just(new BigDecimal("300.00")));
+        StepVerifier.create(paymentService.payCreditCard("card1", "key-1", new BigDecimal("150.00")))
+                .expectErrorMessage("Payment exceeds the outstanding balance of 100.00")
+                .verify();
+        verify(paymentLedgerRepository, never()).insert(any(PaymentLedgerEntry.class));
+    }
+    @Test
+    void payCreditCard_OpenHold_PaysOffWhatIsOwed() {
+        CreditCard creditCard = creditCard("650.00", PaymentStatus.PENDING);
+        notPostedYet("card1");
+        when(creditCardRepository.findById("card1")).thenReturn(Mono.just(creditCard));
+        when(cardAuthorizationRepository.sumHeldAmounts("card1")).thenReturn(Mono.just(new BigDecimal("300.00")));
+        when(creditCardRepository.compareAndUpdate(eq("card1"), eq(2L), any(Update.class)))
+                .thenReturn(Mono.just(creditCard));
+        StepVerifier.create(paymentService.payCreditCard("card1", "key-1", new BigDecimal("50.00")))
+                .assertNext(entry -> {
+                    //Below the minimum payment, but together with the holds it brings the card back to its limit
+                    assertEquals(new BigDecimal("700.00"), entry.getBalanceAfter());
+                    assertEquals(PaymentStatus.PAID, entry.getPaymentStatus());
+                })
+                .verifyComplete();
+    }
+    private void notPostedYet(String productId) {
+        when(paymentLedgerRepository.findByProductIdAndIdempotencyKey(productId, "key-1")).thenReturn(Mono.empty());
+    }
+    private Update creditUpdate(String creditId, Long version) {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(creditRepository).compareAndUpdate(eq(creditId), eq(version), update.capture());
+        return update.getValue();
+    }
+    private static Document setOf(Update update) {
+        return (Document) update.getUpdateObject().get("$set");
+    }
+    private Credit credit(String remainingBalance, PaymentStatus paymentStatus, Long version) {
+        return Credit.builder()
+                .id("c1")
+                .customerId("cust1")
+                .amount(new BigDecimal("1000.00"))
+                .remainingBalance(new BigDecimal(remainingBalance))
+                .minimumPayment(new BigDecimal("100.00"))
+                .paymentStatus(paymentStatus)
+                .creditStatus(CreditStatus.ACTIVE)
+                .nextPaymentDate(dueDate)
+                .version(version)
+                .build();
+    }
+    private CreditCard creditCard(String availableBalance, PaymentStatus paymentStatus) {
+        return CreditCard.builder()
+                .id("card1")
+                .customerId("cust1")
+                .creditLimit(new BigDecimal("1000.00"))
+                .availableBalance(new BigDecimal(availableBalance))
+                .status("ACTIVE")
+                .paymentStatus(paymentStatus)
+                .minimumPayment(new BigDecimal("60.00"))
+                .cutoffDate(dueDate.minusDays(20))
+                .paymentDueDate(dueDate)
+                .version(2L)
+                .build();
+    }
+    private PaymentLedgerEntry posted(String productId, String amount) {
+        return PaymentLedgerEntry.builder()
+                .id("p1")
+                .productType(PaymentProductType.CREDIT)
+                .productId(productId)
+                .customerId("cust1")
+                .idempotencyKey("key-1")
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}